@@ -1,16 +1,36 @@
 package com.kenzie.appserver;
 
 
+import com.kenzie.appserver.config.ExecutorServiceConfig;
+import com.kenzie.appserver.service.warmup.ListingWarmUp;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 @Component
 public class ApplicationStartUpListener {
+    private final ListingWarmUp listingWarmUp;
+    private final TaskExecutor executor;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public ApplicationStartUpListener(ListingWarmUp listingWarmUp,
+                                      @Qualifier(ExecutorServiceConfig.SCAN_EXECUTOR) TaskExecutor executor) {
+        this.listingWarmUp = listingWarmUp;
+        this.executor = executor;
+    }
 
     @EventListener
     public void onApplicationEvent(ContextRefreshedEvent event) {
         // Perform any application start-up tasks
+        if (started.compareAndSet(false, true)) {
+            // Warm the cache and load the listing index in the background; searches use DynamoDB until it is ready,
+            // and the readiness probe stays out of service until the warm-up finishes or runs out of time
+            executor.execute(listingWarmUp::run);
+        }
     }
 }
@@ -1,9 +1,12 @@
 package com.kenzie.appserver.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.task.TaskExecutor;
 
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -13,7 +16,50 @@ public class CacheConfig {
     // Create a Cache here if needed
 
     @Bean
-    public CacheStore myCache() {
-        return new CacheStore(120, TimeUnit.SECONDS);
+    public CacheStore myCache(@Value("${listing.cache.backend:heap}") String backend,
+                              @Value("${listing.cache.maximumWeight:33554432}") long maximumWeight,
+                              @Value("${listing.cache.offHeap.maxListings:200000}") int offHeapMaxListings,
+                              @Value("${listing.cache.refreshAfterWriteSeconds:60}") long refreshAfterWriteSeconds,
+                              @Value("${listing.cache.expireAfterWriteSeconds:300}") long expireAfterWriteSeconds,
+                              @Value("${listing.cache.missExpireAfterWriteSeconds:30}") long missExpireAfterWriteSeconds,
+                              TaskExecutor executor) {
+        switch (backend) {
+            case "heap":
+                // Weighed in approximate bytes, so the default holds about 100,000 listings
+                return new CaffeineCacheStore(maximumWeight, refreshAfterWriteSeconds, expireAfterWriteSeconds,
+                        missExpireAfterWriteSeconds, TimeUnit.SECONDS, executor);
+            case "offHeap":
+                // Each listing takes a 256 byte slot, so the default takes about 50MB of direct memory when full
+                return new OffHeapCacheStore(offHeapMaxListings, refreshAfterWriteSeconds, expireAfterWriteSeconds,
+                        missExpireAfterWriteSeconds, TimeUnit.SECONDS, executor);
+            default:
+                throw new IllegalArgumentException("Unknown listing.cache.backend " + backend
+                        + ", expected heap or offHeap");
+        }
+    }
+
+    @Bean
+    public CacheInvalidationBroadcaster cacheInvalidationBroadcaster(
+            @Value("${listing.cache.invalidation.transport:loopback}") String transport,
+            @Value("${listing.cache.invalidation.multicastGroup:239.255.27.1}") String multicastGroup,
+            @Value("${listing.cache.invalidation.multicastPort:4446}") int multicastPort) throws IOException {
+        switch (transport) {
+            case "loopback":
+                // No peers, for a single instance
+                return new LoopbackCacheInvalidationBroadcaster();
+            case "multicast":
+                return new MulticastCacheInvalidationBroadcaster(multicastGroup, multicastPort);
+            default:
+                throw new IllegalArgumentException("Unknown listing.cache.invalidation.transport " + transport
+                        + ", expected loopback or multicast");
+        }
+    }
+
+    @Bean
+    public QueryResultCache queryResultCache(
+            @Value("${listing.queryCache.maximumWeight:100000}") long maximumWeight,
+            @Value("${listing.queryCache.eventuallyConsistentExpireAfterWriteSeconds:5}") long expireAfterWrite) {
+        // Weighed in listings, so the default holds about 100,000 listings across every cached search
+        return new QueryResultCache(maximumWeight, expireAfterWrite, TimeUnit.SECONDS);
     }
 }
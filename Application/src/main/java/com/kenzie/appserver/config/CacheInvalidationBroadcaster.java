@@ -0,0 +1,46 @@
+package com.kenzie.appserver.config;
+
+import java.io.Closeable;
+import java.util.UUID;
+
+/**
+ * Tells the other instances of the service that a listing was written, so each can drop what it cached about the
+ * listing instead of serving it until it expires. Which transport carries the messages is picked by
+ * listing.cache.invalidation.transport: {@link LoopbackCacheInvalidationBroadcaster} keeps them inside the process,
+ * {@link MulticastCacheInvalidationBroadcaster} sends them as UDP multicast datagrams to every instance on the network.
+ *
+ * Delivery is best effort. A message that is lost leaves the listing cached on that peer until it is refreshed or
+ * expires, so the cache's expiry still bounds how stale a listing can be.
+ */
+public interface CacheInvalidationBroadcaster extends Closeable {
+
+    /**
+     * Receives the writes made by other instances. Messages published by this instance are not delivered back to it.
+     */
+    @FunctionalInterface
+    interface Listener {
+        /**
+         * @param sender the id of the instance that made the write
+         * @param version the version the writer's cache took for the write; versions are only ordered among the
+         *                writes of one sender
+         */
+        void onInvalidation(UUID sender, String listingNumber, long version);
+    }
+
+    /**
+     * Tells every other instance that the listing was written or deleted. Never throws; a message that cannot be
+     * sent is logged and dropped.
+     */
+    void publish(String listingNumber, long version);
+
+    /**
+     * @return the id this instance's messages are sent under
+     */
+    UUID instanceId();
+
+    void subscribe(Listener listener);
+
+    @Override
+    default void close() {
+    }
+}
@@ -1,34 +1,83 @@
 package com.kenzie.appserver.config;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.kenzie.appserver.service.model.Listing;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
-import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
-public class CacheStore {
-    private Cache<String, Listing> cache;
+/**
+ * Caches listings by listing number in front of the table. Which backend holds them is picked by
+ * listing.cache.backend: {@link CaffeineCacheStore} keeps them as objects on the heap, {@link OffHeapCacheStore}
+ * keeps them encoded in direct memory.
+ *
+ * Loading is single flight: the first caller to miss a listing reads it, and every caller that misses the same
+ * listing while that read is in flight waits for it and shares its result instead of reading the table again. Those
+ * waits are counted as coalesced loads.
+ *
+ * Writes put the listing they saved straight into the cache, so reading a listing back after a write never costs a
+ * table read. Every write takes a version before it saves, and a cached listing is only replaced by a write with a
+ * later version, so a slow write that started first cannot overwrite the listing of a write that started after it.
+ * Loads only fill an empty entry and refreshes keep the version of the entry they replace, so neither can undo a
+ * write either. An evict takes a version too and leaves it behind as a tombstone until the entry would have expired,
+ * so a write that took its version before a delete but saved after it cannot bring the deleted listing back.
+ *
+ * A listing number with no listing is remembered for a short while too, so repeated lookups of a number that does
+ * not exist are answered without reading the table. Adding or evicting a listing forgets that it was missing.
+ *
+ * Each backend registers its hits, misses and evictions with the meter registry, which Spring binds every
+ * {@link MeterBinder} bean to, under the cache name "listings", along with the heap it uses per cached listing.
+ */
+public interface CacheStore extends MeterBinder {
+    String CACHE_NAME = "listings";
+    String MISSES_CACHE_NAME = "missingListings";
+    long MAXIMUM_MISSES = 100000;
+    long MAXIMUM_TOMBSTONES = 100000;
+    String COALESCED_LOADS_METER = "cache.loads.coalesced";
+    String HEAP_BYTES_PER_LISTING_METER = "cache.heap.bytesPerListing";
 
-    public CacheStore(int expiry, TimeUnit timeUnit) {
-        // initializing the cache
-        this.cache = CacheBuilder.newBuilder()
-                .expireAfterWrite(expiry, timeUnit)
-                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
-                .build();
-    }
+    /**
+     * Sets how a listing is read on a miss or a refresh.
+     * @param loader reads the listing, returning null if there is none; a null is not cached
+     */
+    void setLoader(Function<String, Listing> loader);
 
-    public Listing get(String key) {
-        // Retrieve and return the listing
-        return cache.getIfPresent(key);
-    }
+    /**
+     * @return the cached listing, or null if it is not cached
+     */
+    Listing get(String key);
+
+    /**
+     * Returns the cached listing, or loads and caches it. Concurrent calls for the same key share one load.
+     * @return the listing, or null if there is none or it was recently found missing
+     */
+    Listing load(String key);
+
+    /**
+     * Drops the cached listing and rejects writes whose version was taken before this call.
+     */
+    void evict(String key);
+
+    /**
+     * @return the version of a write that is about to save a listing, later than that of every write before it
+     */
+    long nextVersion();
+
+    /**
+     * Caches a listing that has just been saved, unless a write with a later version has already cached its own or
+     * the listing was evicted after this write took its version.
+     * @param version the version the write took with {@link #nextVersion} before it saved
+     */
+    void write(String key, Listing value, long version);
 
-    public void evict(String key) {
-        // Invalidate/evict the listing from cache
-        cache.invalidate(key);
+    default void add(String key, Listing value) {
+        write(key, value, nextVersion());
     }
 
-    public void add(String key, Listing value) {
-        // Add listing to cache
-        cache.put(key, value);
+    /**
+     * Caches a listing read outside the cache, such as by a scan of the table. Like a load it has no version, so it
+     * never replaces a listing a write has cached.
+     */
+    default void preload(String key, Listing value) {
+        write(key, value, 0);
     }
 }
@@ -0,0 +1,225 @@
+package com.kenzie.appserver.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.kenzie.appserver.service.model.Listing;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A {@link CacheStore} holding the listings as objects on the heap. The cache is bounded by the approximate heap size
+ * of the listings it holds, and Caffeine's W-TinyLFU policy only admits a new listing over the one it would evict when
+ * the new one has been asked for more often, so a crawler walking through many listing numbers once cannot push out
+ * the popular ones.
+ *
+ * A listing read more than the refresh age ago is still returned, and a reload is started on the executor so the
+ * next caller sees the fresh copy without waiting on DynamoDB. A listing nobody asks for is dropped after the hard
+ * expiry, which bounds how stale a returned listing can be.
+ *
+ * Caffeine records the hits, misses, evictions and load times of the listings, under "listings", and of the missing
+ * listing numbers, under "missingListings".
+ */
+public class CaffeineCacheStore implements CacheStore {
+    // The Listing and its boxed fields, three String headers and the cache entry itself
+    static final int LISTING_OVERHEAD_BYTES = 200;
+
+    private final LoadingCache<String, Versioned> cache;
+    private final Cache<String, Boolean> misses;
+    // The version each listing was last evicted at, checked by writes under the same compute as the entry
+    private final Cache<String, Long> tombstones;
+    private final AtomicLong versions = new AtomicLong();
+    // Bumped by every write and evict, so a lookup that overlapped a create does not remember the listing as missing
+    private final StripedStamps stamps = new StripedStamps();
+    private volatile Function<String, Listing> loader = key -> null;
+    // The listing numbers being read on a miss; refreshes are left out, since nobody waits for them
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    /**
+     * @param maximumWeight the largest approximate heap size of the cached listings, in bytes
+     * @param refreshAfterWrite how long a listing is returned before a read starts reloading it
+     * @param expireAfterWrite how long a listing stays cached after it was loaded, at most
+     * @param missExpireAfterWrite how long a listing number is remembered as missing
+     * @param executor runs the reloads
+     */
+    public CaffeineCacheStore(long maximumWeight, long refreshAfterWrite, long expireAfterWrite,
+                              long missExpireAfterWrite, TimeUnit timeUnit, Executor executor) {
+        this(maximumWeight, refreshAfterWrite, expireAfterWrite, missExpireAfterWrite, timeUnit, executor,
+                Ticker.systemTicker());
+    }
+
+    CaffeineCacheStore(long maximumWeight, long refreshAfterWrite, long expireAfterWrite, long missExpireAfterWrite,
+                       TimeUnit timeUnit, Executor executor, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, Versioned entry) -> weigh(key, entry.listing))
+                .refreshAfterWrite(refreshAfterWrite, timeUnit)
+                .expireAfterWrite(expireAfterWrite, timeUnit)
+                .executor(executor)
+                .ticker(ticker)
+                .recordStats()
+                .build(new CacheLoader<String, Versioned>() {
+                    @Override
+                    public Versioned load(String key) {
+                        loading.add(key);
+                        try {
+                            return Versioned.of(loader.apply(key), 0);
+                        } finally {
+                            loading.remove(key);
+                        }
+                    }
+
+                    @Override
+                    public Versioned reload(String key, Versioned oldValue) {
+                        return Versioned.of(loader.apply(key), oldValue.version);
+                    }
+                });
+        this.misses = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_MISSES)
+                .expireAfterWrite(missExpireAfterWrite, timeUnit)
+                .executor(executor)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.tombstones = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_TOMBSTONES)
+                .expireAfterWrite(expireAfterWrite, timeUnit)
+                .executor(executor)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public void setLoader(Function<String, Listing> loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public Listing get(String key) {
+        return unwrap(cache.getIfPresent(key));
+    }
+
+    @Override
+    public Listing load(String key) {
+        if (misses.getIfPresent(key) != null) {
+            return null;
+        }
+        if (loading.contains(key)) {
+            // Another caller is reading this listing, the get below waits for that read
+            coalescedLoads.increment();
+        }
+        long stampBefore = stamps.get(key);
+        Listing listing = unwrap(cache.get(key));
+        if (listing == null && stamps.get(key) == stampBefore) {
+            misses.put(key, Boolean.TRUE);
+            if (stamps.get(key) != stampBefore) {
+                // A write came in while the miss was being recorded, and may have cleared it first
+                misses.invalidate(key);
+            }
+        }
+        return listing;
+    }
+
+    @Override
+    public void evict(String key) {
+        long version = versions.incrementAndGet();
+        stamps.bump(key);
+        cache.asMap().compute(key, (listingNumber, current) -> {
+            tombstones.put(listingNumber, version);
+            return null;
+        });
+        misses.invalidate(key);
+    }
+
+    @Override
+    public long nextVersion() {
+        return versions.incrementAndGet();
+    }
+
+    @Override
+    public void write(String key, Listing value, long version) {
+        stamps.bump(key);
+        misses.invalidate(key);
+        cache.asMap().compute(key, (listingNumber, current) -> {
+            Long evicted = tombstones.getIfPresent(listingNumber);
+            if (evicted != null && evicted > version) {
+                return current;
+            }
+            return current != null && current.version > version ? current : new Versioned(value, version);
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        CaffeineCacheMetrics.monitor(registry, misses, MISSES_CACHE_NAME);
+        FunctionCounter.builder(COALESCED_LOADS_METER, coalescedLoads, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .description("The number of misses that waited for another caller's read of the same listing")
+                .register(registry);
+        Gauge.builder(HEAP_BYTES_PER_LISTING_METER, this, CaffeineCacheStore::heapBytesPerListing)
+                .tag("cache", CACHE_NAME)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return the approximate heap size of the cached listings, as weighed, over their number
+     */
+    double heapBytesPerListing() {
+        long listings = cache.estimatedSize();
+        long weight = cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+        return listings > 0 ? (double) weight / listings : 0;
+    }
+
+    /**
+     * @return the approximate heap size of the entry in bytes, counting two bytes for each character of its strings
+     */
+    static int weigh(String key, Listing listing) {
+        return LISTING_OVERHEAD_BYTES + 2 * (key.length() + length(listing.getAddress())
+                + length(listing.getListingNumber()) + length(listing.getListingStatus()));
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static Listing unwrap(Versioned entry) {
+        return entry != null ? entry.listing : null;
+    }
+
+    /**
+     * A cached listing with the version of the write that cached it, or 0 if it was loaded.
+     */
+    private static class Versioned {
+        private final Listing listing;
+        private final long version;
+
+        Versioned(Listing listing, long version) {
+            this.listing = listing;
+            this.version = version;
+        }
+
+        static Versioned of(Listing listing, long version) {
+            return listing != null ? new Versioned(listing, version) : null;
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package com.kenzie.appserver.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 public class ExecutorServiceConfig {
+    public static final String SCAN_EXECUTOR = "scanExecutor";
 
     @Bean
+    @Primary
     public TaskExecutor executorService() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(4);
@@ -19,4 +24,21 @@ public class ExecutorServiceConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Runs the start-up warm-up and the segments of parallel table scans, apart from the shared executor so cache
+     * refreshes and maintenance are not queued behind a scan of the whole table. There is a thread for the warm-up
+     * and one for each segment; once they and the short queue are taken, further segments run on the caller.
+     */
+    @Bean(SCAN_EXECUTOR)
+    public TaskExecutor scanExecutor(@Value("${listing.scan.maxSegments:4}") int maxSegments) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxSegments + 1);
+        executor.setMaxPoolSize(maxSegments + 1);
+        executor.setQueueCapacity(maxSegments);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("scan_executor_thread");
+        executor.initialize();
+        return executor;
+    }
 }
@@ -1,11 +1,20 @@
 package com.kenzie.appserver.config;
 
+import com.kenzie.appserver.service.geo.ZipCodeCentroids;
 import com.kenzie.appserver.service.model.Listing;
 import net.andreinc.mockneat.MockNeat;
 import java.text.DecimalFormat;
 import static net.andreinc.mockneat.unit.types.Doubles.doubles;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 
@@ -16,6 +25,8 @@ public class ListingGenerator {
     ArrayList<String> streetTypes = new ArrayList<>();
     ArrayList<String> listingStatus = new ArrayList<>();
     ArrayList<String> uuidGenArr = new ArrayList<>();
+    // The ZIP codes of the bundled centroid table, so generated listings can be found by a radius search
+    List<String> zipCodes = bundledZipCodes();
     Random random = new Random();
     MockNeat mock = MockNeat.threadLocal();
     StringBuilder sb = new StringBuilder();
@@ -123,8 +134,8 @@ public class ListingGenerator {
         String cityName = mock.cities().us().get();
         String stateName = mock.usStates().get();
         DecimalFormat format = new DecimalFormat("00000");
-        int zipCode = random.nextInt(100000);
-        String zipString = (format.format(zipCode));
+        String zipString = zipCodes.isEmpty()
+                ? format.format(random.nextInt(100000)) : zipCodes.get(random.nextInt(zipCodes.size()));
 
         sb.append(houseNumberString).append(" ");
         sb.append(streetName).append(" ");
@@ -154,4 +165,18 @@ public class ListingGenerator {
         uuidGen.setLength(0);
         return returnedId;
     }
+
+    private static List<String> bundledZipCodes() {
+        InputStream table = ListingGenerator.class.getResourceAsStream("/geo/zip-centroids.txt");
+        if (table == null) {
+            return Collections.emptyList();
+        }
+        try (Reader reader = new InputStreamReader(table, StandardCharsets.UTF_8)) {
+            List<String> zipCodes = new ArrayList<>(new ZipCodeCentroids(reader).zipCodes());
+            Collections.sort(zipCodes);
+            return zipCodes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the bundled ZIP code centroids", e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.kenzie.appserver.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A {@link CacheInvalidationBroadcaster} whose peers live in the same process. Each broadcaster stands for one
+ * instance; {@link #join} adds another instance to its network, and a message is delivered synchronously to the
+ * listeners of every other broadcaster on the network before publish returns. A broadcaster that has not been
+ * joined by any other has no peers, which is what a single instance needs.
+ */
+public class LoopbackCacheInvalidationBroadcaster implements CacheInvalidationBroadcaster {
+    private static final Logger log = LoggerFactory.getLogger(LoopbackCacheInvalidationBroadcaster.class);
+
+    private final UUID instanceId = UUID.randomUUID();
+    private final Set<LoopbackCacheInvalidationBroadcaster> network;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public LoopbackCacheInvalidationBroadcaster() {
+        this(new CopyOnWriteArraySet<>());
+    }
+
+    private LoopbackCacheInvalidationBroadcaster(Set<LoopbackCacheInvalidationBroadcaster> network) {
+        this.network = network;
+        network.add(this);
+    }
+
+    /**
+     * @return the broadcaster of another instance on the same network
+     */
+    public LoopbackCacheInvalidationBroadcaster join() {
+        return new LoopbackCacheInvalidationBroadcaster(network);
+    }
+
+    @Override
+    public void publish(String listingNumber, long version) {
+        for (LoopbackCacheInvalidationBroadcaster peer : network) {
+            if (peer != this) {
+                for (Listener listener : peer.listeners) {
+                    try {
+                        listener.onInvalidation(instanceId, listingNumber, version);
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to invalidate listing {} on a peer", listingNumber, e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public UUID instanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        network.remove(this);
+    }
+}
@@ -0,0 +1,221 @@
+package com.kenzie.appserver.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CacheInvalidationBroadcaster} that sends each message as one UDP datagram to a multicast group every
+ * instance joins, so a write reaches the other instances on the network within a round trip. It stands in locally
+ * for a change feed such as DynamoDB Streams: several instances on one machine, or on a network that routes
+ * multicast, see each other's writes without any other service running.
+ *
+ * A datagram holds the sending instance's id, the write's version and the listing number as length prefixed UTF-8.
+ * Every instance receives its own datagrams too, and drops them by their id. The datagrams are sent with a time to
+ * live of 1, so they never leave the local network. A receive that fails is retried after a pause that doubles with
+ * each failure in a row, up to five seconds, so a socket that keeps failing does not spin the receiving thread.
+ *
+ * The listeners are called on a dispatching thread of their own, one invalidation at a time in the order the
+ * datagrams arrived, so the receiving thread goes straight back to the socket instead of waiting on the table reads
+ * a listener makes, and a burst of writes does not overflow the socket's buffer. Invalidations wait in a queue of at
+ * most {@link #MAX_PENDING_INVALIDATIONS}; one that arrives when the queue is full is logged and dropped, like a
+ * datagram the socket had no room for.
+ */
+public class MulticastCacheInvalidationBroadcaster implements CacheInvalidationBroadcaster {
+    static final int MAX_DATAGRAM_BYTES = 512;
+    static final int MAX_PENDING_INVALIDATIONS = 10000;
+    private static final int HEADER_BYTES = 16 + 8 + 2;
+    private static final long MIN_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private static final Logger log = LoggerFactory.getLogger(MulticastCacheInvalidationBroadcaster.class);
+
+    private final UUID instanceId = UUID.randomUUID();
+    private final InetAddress group;
+    private final int port;
+    private final MulticastSocket socket;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_PENDING_INVALIDATIONS), runnable -> {
+                Thread thread = new Thread(runnable, "cache-invalidation-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private volatile boolean closed;
+
+    /**
+     * Joins the group and starts receiving on a daemon thread.
+     * @param groupAddress an administratively scoped multicast address, such as 239.255.27.1
+     * @throws IOException if the socket cannot be opened or the group cannot be joined
+     */
+    public MulticastCacheInvalidationBroadcaster(String groupAddress, int port) throws IOException {
+        this.group = InetAddress.getByName(groupAddress);
+        this.port = port;
+        this.socket = new MulticastSocket(port);
+        socket.setTimeToLive(1);
+        socket.joinGroup(group);
+
+        Thread receiver = new Thread(this::receive, "cache-invalidation-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public void publish(String listingNumber, long version) {
+        byte[] datagram = encode(instanceId, listingNumber, version);
+        if (datagram == null) {
+            log.warn("Listing number {} is too long to broadcast", listingNumber);
+            return;
+        }
+        try {
+            socket.send(new DatagramPacket(datagram, datagram.length, group, port));
+        } catch (IOException e) {
+            log.warn("Failed to broadcast the invalidation of listing {}", listingNumber, e);
+        }
+    }
+
+    @Override
+    public UUID instanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.leaveGroup(group);
+        } catch (IOException e) {
+            log.debug("Failed to leave multicast group {}", group, e);
+        }
+        socket.close();
+        dispatcher.shutdownNow();
+    }
+
+    private void receive() {
+        DatagramPacket packet = new DatagramPacket(new byte[MAX_DATAGRAM_BYTES], MAX_DATAGRAM_BYTES);
+        int failures = 0;
+        while (!closed) {
+            try {
+                packet.setLength(MAX_DATAGRAM_BYTES);
+                socket.receive(packet);
+                failures = 0;
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                long backoffMillis = backoffMillis(++failures);
+                log.warn("Failed to receive a cache invalidation, retrying in {} ms", backoffMillis, e);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            ByteBuffer datagram = ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength());
+            if (datagram.remaining() < HEADER_BYTES) {
+                continue;
+            }
+            UUID sender = new UUID(datagram.getLong(), datagram.getLong());
+            if (instanceId.equals(sender)) {
+                continue;
+            }
+            Invalidation invalidation = decode(datagram);
+            if (invalidation == null) {
+                log.debug("Dropped a malformed cache invalidation from {}", packet.getAddress());
+                continue;
+            }
+            try {
+                dispatcher.execute(() -> dispatch(sender, invalidation));
+            } catch (RejectedExecutionException e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("Dropped the invalidation of listing {}, {} invalidations are already waiting",
+                        invalidation.listingNumber, MAX_PENDING_INVALIDATIONS);
+            }
+        }
+    }
+
+    private void dispatch(UUID sender, Invalidation invalidation) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onInvalidation(sender, invalidation.listingNumber, invalidation.version);
+            } catch (RuntimeException e) {
+                log.warn("Failed to invalidate listing {}", invalidation.listingNumber, e);
+            }
+        }
+    }
+
+    /**
+     * @param failures the receives that have failed in a row, at least 1
+     * @return how long to wait before receiving again
+     */
+    static long backoffMillis(int failures) {
+        return Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(failures - 1, 20));
+    }
+
+    /**
+     * @return the datagram, or null if the listing number does not fit in one
+     */
+    static byte[] encode(UUID sender, String listingNumber, long version) {
+        byte[] listingNumberBytes = listingNumber.getBytes(StandardCharsets.UTF_8);
+        if (HEADER_BYTES + listingNumberBytes.length > MAX_DATAGRAM_BYTES) {
+            return null;
+        }
+        return ByteBuffer.allocate(HEADER_BYTES + listingNumberBytes.length)
+                .putLong(sender.getMostSignificantBits())
+                .putLong(sender.getLeastSignificantBits())
+                .putLong(version)
+                .putShort((short) listingNumberBytes.length)
+                .put(listingNumberBytes)
+                .array();
+    }
+
+    /**
+     * @param datagram positioned after the sender's id
+     * @return the invalidation, or null if the datagram is malformed
+     */
+    static Invalidation decode(ByteBuffer datagram) {
+        try {
+            long version = datagram.getLong();
+            byte[] listingNumber = new byte[datagram.getShort() & 0xFFFF];
+            datagram.get(listingNumber);
+            return new Invalidation(new String(listingNumber, StandardCharsets.UTF_8), version);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    static class Invalidation {
+        final String listingNumber;
+        final long version;
+
+        Invalidation(String listingNumber, long version) {
+            this.listingNumber = listingNumber;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.kenzie.appserver.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.kenzie.appserver.service.model.Listing;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A {@link CacheStore} holding the listings encoded in direct memory by an {@link OffHeapListingTable}, for hot sets
+ * too large to keep as objects without long garbage collection pauses. The heap only holds a few primitive arrays
+ * sized by the number of listings, however many are cached; each read decodes a fresh {@link Listing}.
+ *
+ * The cache is bounded by a number of listings and evicts with a CLOCK sweep, which spares a listing read since the
+ * sweep last passed it. That protects the popular listings less well than Caffeine's frequency based admission, so
+ * the heap backend remains the default.
+ *
+ * Refreshes and expiry follow {@link CaffeineCacheStore}: a listing older than the refresh age is returned while a
+ * reload runs on the executor, and one older than the hard expiry is not returned at all. A reload only replaces the
+ * listing if no write has replaced it since the reload started.
+ *
+ * Hits, misses and evictions are counted under "listings" with the same meter names Caffeine uses, and the direct
+ * memory taken by the slabs is reported as cache.offHeap.bytes.
+ */
+public class OffHeapCacheStore implements CacheStore {
+    static final String OFF_HEAP_BYTES_METER = "cache.offHeap.bytes";
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapCacheStore.class);
+
+    private final OffHeapListingTable table;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Cache<String, Boolean> misses;
+    // The version each listing was last evicted at, checked by writes under the write lock
+    private final Cache<String, Long> tombstones;
+    private final long refreshAfterWriteNanos;
+    private final long expireAfterWriteNanos;
+    private final Executor executor;
+    private final Ticker ticker;
+    private final AtomicLong versions = new AtomicLong();
+    // Bumped by every write and evict, so a load that overlapped one neither caches the listing it read nor remembers
+    // it as missing
+    private final StripedStamps stamps = new StripedStamps();
+    private volatile Function<String, Listing> loader = key -> null;
+    // The reads of listings that missed, which later callers missing the same listing wait for
+    private final ConcurrentMap<String, CompletableFuture<Listing>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    /**
+     * @param maximumListings the largest number of listings cached
+     * @param refreshAfterWrite how long a listing is returned before a read starts reloading it
+     * @param expireAfterWrite how long a listing stays cached after it was loaded, at most
+     * @param missExpireAfterWrite how long a listing number is remembered as missing
+     * @param executor runs the reloads
+     */
+    public OffHeapCacheStore(int maximumListings, long refreshAfterWrite, long expireAfterWrite,
+                             long missExpireAfterWrite, TimeUnit timeUnit, Executor executor) {
+        this(maximumListings, refreshAfterWrite, expireAfterWrite, missExpireAfterWrite, timeUnit, executor,
+                Ticker.systemTicker());
+    }
+
+    OffHeapCacheStore(int maximumListings, long refreshAfterWrite, long expireAfterWrite, long missExpireAfterWrite,
+                      TimeUnit timeUnit, Executor executor, Ticker ticker) {
+        this.table = new OffHeapListingTable(maximumListings);
+        this.refreshAfterWriteNanos = timeUnit.toNanos(refreshAfterWrite);
+        this.expireAfterWriteNanos = timeUnit.toNanos(expireAfterWrite);
+        this.executor = executor;
+        this.ticker = ticker;
+        this.misses = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_MISSES)
+                .expireAfterWrite(missExpireAfterWrite, timeUnit)
+                .executor(executor)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.tombstones = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_TOMBSTONES)
+                .expireAfterWrite(expireAfterWrite, timeUnit)
+                .executor(executor)
+                .ticker(ticker)
+                .build();
+    }
+
+    @Override
+    public void setLoader(Function<String, Listing> loader) {
+        this.loader = loader;
+    }
+
+    @Override
+    public Listing get(String key) {
+        return lookup(key);
+    }
+
+    @Override
+    public Listing load(String key) {
+        if (misses.getIfPresent(key) != null) {
+            return null;
+        }
+        Listing cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Listing> read = new CompletableFuture<>();
+        CompletableFuture<Listing> existing = inFlight.putIfAbsent(key, read);
+        if (existing != null) {
+            // Another caller is reading this listing, wait for that read
+            coalescedLoads.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            long stampBefore = stamps.get(key);
+            Listing listing = loader.apply(key);
+            if (listing != null) {
+                fill(key, listing, stampBefore);
+            } else if (stamps.get(key) == stampBefore) {
+                misses.put(key, Boolean.TRUE);
+                if (stamps.get(key) != stampBefore) {
+                    // A write came in while the miss was being recorded, and may have cleared it first
+                    misses.invalidate(key);
+                }
+            }
+            read.complete(listing);
+            return listing;
+        } catch (RuntimeException e) {
+            read.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, read);
+        }
+    }
+
+    @Override
+    public void evict(String key) {
+        long version = versions.incrementAndGet();
+        lock.writeLock().lock();
+        try {
+            stamps.bump(key);
+            tombstones.put(key, version);
+            int slot = table.find(key);
+            if (slot >= 0) {
+                table.remove(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        misses.invalidate(key);
+    }
+
+    @Override
+    public long nextVersion() {
+        return versions.incrementAndGet();
+    }
+
+    @Override
+    public void write(String key, Listing value, long version) {
+        stamps.bump(key);
+        misses.invalidate(key);
+        long now = ticker.read();
+        lock.writeLock().lock();
+        try {
+            Long evicted = tombstones.getIfPresent(key);
+            if (evicted != null && evicted > version) {
+                return;
+            }
+            int slot = table.find(key);
+            if (slot >= 0 && !isExpired(slot, now) && table.version(slot) > version) {
+                return;
+            }
+            table.put(key, value, version, now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, misses, MISSES_CACHE_NAME);
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("The number of times cache lookup methods have returned a cached value.")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", missCount, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("The number of times cache lookup methods have returned an uncached (newly loaded) value, "
+                        + "or null")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this, cache -> cache.locked(OffHeapListingTable::evictions))
+                .tag("cache", CACHE_NAME)
+                .description("cache evictions")
+                .register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.locked(OffHeapListingTable::size))
+                .tag("cache", CACHE_NAME)
+                .description("The number of entries in this cache.")
+                .register(registry);
+        FunctionCounter.builder(COALESCED_LOADS_METER, coalescedLoads, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .description("The number of misses that waited for another caller's read of the same listing")
+                .register(registry);
+        Gauge.builder(HEAP_BYTES_PER_LISTING_METER, this, OffHeapCacheStore::heapBytesPerListing)
+                .tag("cache", CACHE_NAME)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(OFF_HEAP_BYTES_METER, this, cache -> cache.locked(OffHeapListingTable::offHeapBytes))
+                .tag("cache", CACHE_NAME)
+                .baseUnit("bytes")
+                .description("The direct memory allocated for cached listings")
+                .register(registry);
+    }
+
+    long size() {
+        return (long) locked(OffHeapListingTable::size);
+    }
+
+    /**
+     * @return the heap taken by the table's arrays over the number of cached listings
+     */
+    double heapBytesPerListing() {
+        lock.readLock().lock();
+        try {
+            int listings = table.size();
+            return listings > 0 ? (double) table.heapBytes() / listings : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the cached listing if it has not expired, starting a reload if it is due one
+     */
+    private Listing lookup(String key) {
+        long now = ticker.read();
+        Listing listing = null;
+        long version = 0;
+        boolean refresh = false;
+        // The read lock also covers marking the slot as read, a lone boolean store the CLOCK sweep tolerates losing
+        lock.readLock().lock();
+        try {
+            int slot = table.find(key);
+            if (slot >= 0 && !isExpired(slot, now)) {
+                listing = table.read(slot);
+                version = table.version(slot);
+                refresh = now - table.writtenAt(slot) >= refreshAfterWriteNanos;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (listing == null) {
+            missCount.increment();
+            return null;
+        }
+        hits.increment();
+        if (refresh && refreshing.add(key)) {
+            refresh(key, version, stamps.get(key));
+        }
+        return listing;
+    }
+
+    /**
+     * Reloads a listing on the executor, replacing the cached copy unless a write or an evict came in since the
+     * lookup that asked for it. Loads all cache at version 0, so the version alone cannot tell a fresh load from the
+     * copy the reload started from.
+     * @param stampBefore the key's stamp when the lookup found the listing due a refresh
+     */
+    private void refresh(String key, long version, long stampBefore) {
+        try {
+            executor.execute(() -> {
+                try {
+                    Listing listing = loader.apply(key);
+                    lock.writeLock().lock();
+                    try {
+                        int slot = table.find(key);
+                        // Skipped if a write or evict replaced the listing while it was being read
+                        if (slot >= 0 && table.version(slot) == version && stamps.get(key) == stampBefore) {
+                            if (listing != null) {
+                                table.put(key, listing, version, ticker.read());
+                            } else {
+                                table.remove(slot);
+                            }
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Failed to refresh listing {}", key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            log.warn("Failed to schedule a refresh of listing {}", key, e);
+        }
+    }
+
+    /**
+     * Caches a loaded listing unless a write or an evict of a key in its stripe came in while it was being read, since
+     * the listing read may be the one they replaced.
+     * @param stampBefore the key's stamp when the read started
+     */
+    private void fill(String key, Listing listing, long stampBefore) {
+        long now = ticker.read();
+        lock.writeLock().lock();
+        try {
+            int slot = table.find(key);
+            if (stamps.get(key) == stampBefore && (slot < 0 || isExpired(slot, now))) {
+                table.put(key, listing, 0, now);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isExpired(int slot, long now) {
+        return now - table.writtenAt(slot) >= expireAfterWriteNanos;
+    }
+
+    private double locked(ToDoubleFunction<OffHeapListingTable> reading) {
+        lock.readLock().lock();
+        try {
+            return reading.applyAsDouble(table);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.kenzie.appserver.config;
+
+import com.kenzie.appserver.service.model.Listing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Listings encoded in fixed size slots of direct {@link ByteBuffer} slabs, found through an open addressing hash
+ * table of slot numbers. Nothing is held on the heap per listing beyond a few primitive array elements: the table,
+ * the hash of each slot's key and a CLOCK reference bit. A {@link Listing} only exists while a caller is reading one.
+ *
+ * A slot holds the write version, the time it was written, the numeric fields and then the key, listing number,
+ * address and status as length prefixed UTF-8. A listing whose strings do not fit in a slot is not stored. When
+ * every slot is taken the CLOCK hand sweeps the slots, sparing each one read since it last passed once, and reuses
+ * the first it does not spare.
+ *
+ * Not thread safe; {@link OffHeapCacheStore} guards it with a lock.
+ */
+class OffHeapListingTable {
+    static final int SLOT_BYTES = 256;
+    static final int SLOTS_PER_SLAB = 4096;
+
+    private static final int VERSION = 0;
+    private static final int WRITTEN_AT = 8;
+    private static final int SQUARE_FOOTAGE = 16;
+    private static final int PRICE = 20;
+    private static final int NUM_BEDROOMS = 24;
+    private static final int NUM_BATHROOMS = 28;
+    private static final int LOT_SIZE = 36;
+    private static final int STRINGS = 44;
+    // Written as the length of a null string, the longest string that fits in a slot is shorter than this
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private final int capacity;
+    private final ByteBuffer[] slabs;
+    // Slot number + 1 for each bucket, 0 for an empty one; linear probing, deletes shift later entries back
+    private final int[] table;
+    private final int mask;
+    private final int[] slotHashes;
+    private final boolean[] referenced;
+    private final int[] freeSlots;
+    private int freeCount;
+    private int unusedSlot;
+    private int clockHand;
+    private int size;
+    private long evictions;
+
+    /**
+     * @param capacity the largest number of listings held; the slabs are allocated as they are first needed
+     */
+    OffHeapListingTable(int capacity) {
+        this.capacity = capacity;
+        this.slabs = new ByteBuffer[(capacity + SLOTS_PER_SLAB - 1) / SLOTS_PER_SLAB];
+        // At most half full, so a probe rarely passes more than a bucket or two
+        int buckets = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new int[buckets];
+        this.mask = buckets - 1;
+        this.slotHashes = new int[capacity];
+        this.referenced = new boolean[capacity];
+        this.freeSlots = new int[capacity];
+    }
+
+    /**
+     * @return the slot holding the key, or -1
+     */
+    int find(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        for (int bucket = hash & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int slot = table[bucket] - 1;
+            if (slotHashes[slot] == hash && keyEquals(slot, keyBytes)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    long version(int slot) {
+        return slab(slot).getLong(offset(slot) + VERSION);
+    }
+
+    long writtenAt(int slot) {
+        return slab(slot).getLong(offset(slot) + WRITTEN_AT);
+    }
+
+    /**
+     * Decodes the listing in the slot and marks the slot as recently read.
+     */
+    Listing read(int slot) {
+        referenced[slot] = true;
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        int position = offset + STRINGS;
+        position += 2 + length(slab, position);
+        String listingNumber = readString(slab, position);
+        position += 2 + length(slab, position);
+        String address = readString(slab, position);
+        position += 2 + length(slab, position);
+        String listingStatus = readString(slab, position);
+        return new Listing(listingNumber, address, slab.getInt(offset + SQUARE_FOOTAGE), slab.getInt(offset + PRICE),
+                slab.getInt(offset + NUM_BEDROOMS), slab.getDouble(offset + NUM_BATHROOMS),
+                slab.getDouble(offset + LOT_SIZE), listingStatus);
+    }
+
+    /**
+     * Stores the listing under the key, in the key's slot if it has one or else in a free slot, evicting another
+     * listing if there is none.
+     * @return false if the listing's strings do not fit in a slot; any earlier listing under the key is removed
+     */
+    boolean put(String key, Listing listing, long version, long writtenAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] listingNumber = bytes(listing.getListingNumber());
+        byte[] address = bytes(listing.getAddress());
+        byte[] listingStatus = bytes(listing.getListingStatus());
+        int stringBytes = 8 + keyBytes.length + length(listingNumber) + length(address) + length(listingStatus);
+        int slot = find(key);
+        if (STRINGS + stringBytes > SLOT_BYTES) {
+            if (slot >= 0) {
+                remove(slot);
+            }
+            return false;
+        }
+
+        if (slot < 0) {
+            slot = allocate();
+            int hash = hash(key);
+            slotHashes[slot] = hash;
+            int bucket = hash & mask;
+            while (table[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            table[bucket] = slot + 1;
+            size++;
+        }
+        referenced[slot] = true;
+
+        ByteBuffer slab = slab(slot);
+        int offset = offset(slot);
+        slab.putLong(offset + VERSION, version);
+        slab.putLong(offset + WRITTEN_AT, writtenAt);
+        slab.putInt(offset + SQUARE_FOOTAGE, listing.getSquareFootage());
+        slab.putInt(offset + PRICE, listing.getPrice());
+        slab.putInt(offset + NUM_BEDROOMS, listing.getNumBedrooms());
+        slab.putDouble(offset + NUM_BATHROOMS, listing.getNumBathrooms());
+        slab.putDouble(offset + LOT_SIZE, listing.getLotSize());
+        int position = offset + STRINGS;
+        position = writeString(slab, position, keyBytes);
+        position = writeString(slab, position, listingNumber);
+        position = writeString(slab, position, address);
+        writeString(slab, position, listingStatus);
+        return true;
+    }
+
+    /**
+     * Frees the slot and drops its key from the table.
+     */
+    void remove(int slot) {
+        int bucket = slotHashes[slot] & mask;
+        while (table[bucket] != slot + 1) {
+            bucket = (bucket + 1) & mask;
+        }
+        deleteBucket(bucket);
+        referenced[slot] = false;
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the bytes of the heap arrays that index the slots
+     */
+    long heapBytes() {
+        return 4L * table.length + 4L * slotHashes.length + referenced.length + 4L * freeSlots.length;
+    }
+
+    /**
+     * @return the bytes of direct memory taken by the slabs allocated so far
+     */
+    long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                bytes += slab.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (unusedSlot < capacity) {
+            return unusedSlot++;
+        }
+        // Full, so sweep for a slot that has not been read since the hand last passed it
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) % capacity;
+            if (referenced[slot]) {
+                referenced[slot] = false;
+            } else {
+                remove(slot);
+                evictions++;
+                return freeSlots[--freeCount];
+            }
+        }
+    }
+
+    /**
+     * Empties the bucket and moves back any entry after it that can no longer be reached past the gap.
+     */
+    private void deleteBucket(int bucket) {
+        int gap = bucket;
+        table[gap] = 0;
+        for (int next = (gap + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = slotHashes[table[next] - 1] & mask;
+            // The entry stays if its home bucket lies after the gap, cyclically, up to where it is now
+            boolean reachable = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!reachable) {
+                table[gap] = table[next];
+                table[next] = 0;
+                gap = next;
+            }
+        }
+    }
+
+    private boolean keyEquals(int slot, byte[] keyBytes) {
+        ByteBuffer slab = slab(slot);
+        int position = offset(slot) + STRINGS;
+        if (length(slab, position) != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (slab.get(position + 2 + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer slab(int slot) {
+        int index = slot / SLOTS_PER_SLAB;
+        if (slabs[index] == null) {
+            int slots = Math.min(SLOTS_PER_SLAB, capacity - index * SLOTS_PER_SLAB);
+            slabs[index] = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+        }
+        return slabs[index];
+    }
+
+    private static int offset(int slot) {
+        return (slot % SLOTS_PER_SLAB) * SLOT_BYTES;
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    private static int length(ByteBuffer slab, int position) {
+        int length = slab.getShort(position) & 0xFFFF;
+        return length == NULL_LENGTH ? 0 : length;
+    }
+
+    private static int writeString(ByteBuffer slab, int position, byte[] bytes) {
+        if (bytes == null) {
+            slab.putShort(position, (short) NULL_LENGTH);
+            return position + 2;
+        }
+        slab.putShort(position, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            slab.put(position + 2 + i, bytes[i]);
+        }
+        return position + 2 + bytes.length;
+    }
+
+    private static String readString(ByteBuffer slab, int position) {
+        int length = slab.getShort(position) & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = slab.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
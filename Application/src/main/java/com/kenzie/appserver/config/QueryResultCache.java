@@ -0,0 +1,163 @@
+package com.kenzie.appserver.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.PostalAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the full result of a listing search, keyed by its criteria. Criteria are built in one canonical form, where
+ * an unset filter is null, so equal searches share an entry however their parameters were written. Entries are
+ * weighed by the number of listings they hold. A result read from a consistent source has no expiry: it is dropped
+ * only when the cache is full, or when a write changes a listing that matches its criteria before or after the
+ * change. A result read from an eventually consistent source, such as a DynamoDB index, may predate a write whose
+ * invalidation has already run, so it is only kept for a few seconds.
+ */
+public class QueryResultCache {
+    static final long DEFAULT_EVENTUALLY_CONSISTENT_EXPIRE_AFTER_WRITE_SECONDS = 5;
+
+    private final Cache<ListingCriteria, Result> cache;
+    private final long eventuallyConsistentExpireAfterWriteNanos;
+    // Bumped by every write, so a search that overlapped a write does not cache what it read
+    private final AtomicLong writes = new AtomicLong();
+
+    public QueryResultCache(long maximumWeight) {
+        this(maximumWeight, DEFAULT_EVENTUALLY_CONSISTENT_EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param eventuallyConsistentExpireAfterWrite how long a result read from an eventually consistent source is kept
+     */
+    public QueryResultCache(long maximumWeight, long eventuallyConsistentExpireAfterWrite, TimeUnit timeUnit) {
+        this(maximumWeight, eventuallyConsistentExpireAfterWrite, timeUnit, Ticker.systemTicker());
+    }
+
+    QueryResultCache(long maximumWeight, long eventuallyConsistentExpireAfterWrite, TimeUnit timeUnit,
+                     Ticker ticker) {
+        this.eventuallyConsistentExpireAfterWriteNanos = timeUnit.toNanos(eventuallyConsistentExpireAfterWrite);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((ListingCriteria criteria, Result result) -> result.listings.size() + 1)
+                .expireAfter(new Expiry<ListingCriteria, Result>() {
+                    @Override
+                    public long expireAfterCreate(ListingCriteria criteria, Result result, long currentTime) {
+                        return result.expireAfterWriteNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ListingCriteria criteria, Result result, long currentTime,
+                                                  long currentDuration) {
+                        return result.expireAfterWriteNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ListingCriteria criteria, Result result, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Returns the cached result for the criteria, or runs the search and caches its result until a write changes it.
+     * @param criteria the search filters in canonical form
+     * @param search runs the search when there is no cached result, reading a source that reflects every write
+     *               already made
+     * @return the result, which must not be changed
+     */
+    public List<Listing> get(ListingCriteria criteria, Supplier<List<Listing>> search) {
+        return get(criteria, search, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the cached result for the criteria, or runs the search and caches its result for a few seconds.
+     * @param criteria the search filters in canonical form
+     * @param search runs the search when there is no cached result, reading a source that may not reflect the
+     *               latest writes yet
+     * @return the result, which must not be changed
+     */
+    public List<Listing> getEventuallyConsistent(ListingCriteria criteria, Supplier<List<Listing>> search) {
+        return get(criteria, search, eventuallyConsistentExpireAfterWriteNanos);
+    }
+
+    /**
+     * Drops every cached result the write could have changed: those whose criteria match the listing as it was or
+     * as it is now. Each cached criteria is checked, which is cheap because only a handful of searches are repeated
+     * often enough to stay cached.
+     * @param before the listing before the write, or null if it was created
+     * @param after the listing after the write, or null if it was deleted
+     */
+    public void invalidate(Listing before, Listing after) {
+        writes.incrementAndGet();
+        cache.asMap().keySet().removeIf(criteria -> matches(criteria, before) || matches(criteria, after));
+    }
+
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private List<Listing> get(ListingCriteria criteria, Supplier<List<Listing>> search, long expireAfterWriteNanos) {
+        Result cached = cache.getIfPresent(criteria);
+        if (cached != null) {
+            return cached.listings;
+        }
+
+        long writesBefore = writes.get();
+        List<Listing> listings = Collections.unmodifiableList(new ArrayList<>(search.get()));
+        if (writes.get() == writesBefore) {
+            cache.put(criteria, new Result(listings, expireAfterWriteNanos));
+        }
+        return listings;
+    }
+
+    /**
+     * Statuses are compared ignoring case, so a listing written with a status in another case still drops the
+     * searches it could affect.
+     */
+    static boolean matches(ListingCriteria criteria, Listing listing) {
+        if (listing == null) {
+            return false;
+        }
+        PostalAddress address = PostalAddress.parse(listing.getAddress());
+        return within(listing.getSquareFootage(), criteria.getMinSquareFootage(), criteria.getMaxSquareFootage())
+                && within(listing.getPrice(), criteria.getMinPrice(), criteria.getMaxPrice())
+                && within(listing.getNumBedrooms(), criteria.getMinNumBedrooms(), criteria.getMaxNumBedrooms())
+                && within(listing.getNumBathrooms(), criteria.getMinNumBathrooms(), criteria.getMaxNumBathrooms())
+                && within(listing.getLotSize(), criteria.getMinLotSize(), criteria.getMaxLotSize())
+                && (criteria.getListingStatus() == null
+                        || criteria.getListingStatus().equalsIgnoreCase(listing.getListingStatus()))
+                && criteria.matchesLocation(address != null ? address.getState() : null,
+                        address != null ? address.getZipCode() : null);
+    }
+
+    private static boolean within(double value, Number min, Number max) {
+        return (min == null || value >= min.doubleValue()) && (max == null || value <= max.doubleValue());
+    }
+
+    private static class Result {
+        private final List<Listing> listings;
+        private final long expireAfterWriteNanos;
+
+        Result(List<Listing> listings, long expireAfterWriteNanos) {
+            this.listings = listings;
+            this.expireAfterWriteNanos = expireAfterWriteNanos;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.kenzie.appserver.config;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters a cache bumps on every write and evict of a key, so a load can tell whether one came in while it was
+ * reading. Keys share one of a fixed number of stripes by hash: a write to another key in the same stripe is taken
+ * for a write to this one, which only costs that load its fill, while writes to keys in other stripes leave it alone.
+ */
+class StripedStamps {
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    /**
+     * @return the stamp of the key's stripe, to compare with a later call
+     */
+    long get(String key) {
+        return stamps.get(stripe(key));
+    }
+
+    void bump(String key) {
+        stamps.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
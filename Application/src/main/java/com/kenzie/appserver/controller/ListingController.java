@@ -2,18 +2,46 @@ package com.kenzie.appserver.controller;
 
 
 import com.kenzie.appserver.config.ListingGenerator;
+import com.kenzie.appserver.controller.model.FacetCountResponse;
+import com.kenzie.appserver.controller.model.ListingCountResponse;
 import com.kenzie.appserver.controller.model.ListingCreateRequest;
+import com.kenzie.appserver.controller.model.ListingFacetsResponse;
+import com.kenzie.appserver.controller.model.ListingQueryRequest;
 import com.kenzie.appserver.controller.model.ListingResponse;
+import com.kenzie.appserver.controller.model.RegionStatisticsResponse;
 import com.kenzie.appserver.controller.model.UpdateListingPriceRequest;
 import com.kenzie.appserver.controller.model.UpdateListingStatusRequest;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.repositories.model.ListingSort;
 import com.kenzie.appserver.service.ListingService;
 import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingFacets;
+import com.kenzie.appserver.service.model.ListingPage;
 import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.PostalAddress;
+import com.kenzie.appserver.service.model.RegionStatistics;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.util.UUID.randomUUID;
@@ -21,11 +49,26 @@ import static java.util.UUID.randomUUID;
 @RestController
 @RequestMapping("/listing")
 public class ListingController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final double MAX_RADIUS_MILES = 100;
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    // The listing attributes a caller can ask for with fields=, the listing number is always returned
+    static final Set<String> LISTING_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "listingNumber", "address", "squareFootage", "price", "numBedrooms", "numBathrooms", "listingStatus",
+            "lotSize")));
+
     private ListingService listingService;
     private ListingGenerator generator = new ListingGenerator();
+    private ObjectWriter ndjsonWriter;
 
-    ListingController(ListingService listingService) {
+    ListingController(ListingService listingService, ObjectMapper objectMapper) {
         this.listingService = listingService;
+        // Each page is flushed once it has been written, not after every listing
+        this.ndjsonWriter = objectMapper.writerFor(ListingResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(SerializationFeature.INDENT_OUTPUT);
     }
 
     @GetMapping("/{listingNumber}")
@@ -92,9 +135,30 @@ public class ListingController {
     }
 
     @GetMapping
-    public ResponseEntity<List<ListingResponse>> getAllListings() {
+    public ResponseEntity<List<ListingResponse>> getAllListings(@RequestParam(value = "limit", required = false) Integer limit,
+                                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                                @RequestParam(value = "fields", required = false) String fields) {
+        Set<String> listingFields;
+        try {
+            listingFields = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Read a single page when the caller asks for one
+        if (limit != null || cursor != null) {
+            if (!isValidPageSize(limit)) {
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                return createPageResponse(listingService.findAllListings(listingFields, pageSize(limit), cursor),
+                        listingFields);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
 
-        List<Listing> listingLists = listingService.findAllListings();
+        List<Listing> listingLists = listingService.findAllListings(listingFields);
 
         // If there are no listingLists, then return a 204
         if (listingLists == null ||  listingLists.isEmpty()) {
@@ -102,15 +166,36 @@ public class ListingController {
         }
 
         // Otherwise, convert the List of Listing objects into a List of ListingResponse and return it
-        List<ListingResponse> response = listingLists.stream().map(listing -> createListingResponse(listing)).collect(Collectors.toList());
+        List<ListingResponse> response = listingLists.stream().map(listing -> createListingResponse(listing, listingFields)).collect(Collectors.toList());
 
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/allOpen")
-    public ResponseEntity<List<ListingResponse>> getAllOpenListings() {
+    public ResponseEntity<List<ListingResponse>> getAllOpenListings(@RequestParam(value = "limit", required = false) Integer limit,
+                                                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                                                    @RequestParam(value = "fields", required = false) String fields) {
+        Set<String> listingFields;
+        try {
+            listingFields = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Read a single page when the caller asks for one
+        if (limit != null || cursor != null) {
+            if (!isValidPageSize(limit)) {
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                return createPageResponse(listingService.findAllOpenListings(listingFields, pageSize(limit), cursor),
+                        listingFields);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
 
-        List<Listing> openListingLists = listingService.findAllOpenListings();
+        List<Listing> openListingLists = listingService.findAllOpenListings(listingFields);
 
         // If there are no listingLists, then return a 204
         if (openListingLists == null ||  openListingLists.isEmpty()) {
@@ -118,19 +203,61 @@ public class ListingController {
         }
 
         // Otherwise, convert the List of Listing objects into a List of ListingResponse and return it
-        List<ListingResponse> response = openListingLists.stream().map(listing -> createListingResponse(listing)).collect(Collectors.toList());
+        List<ListingResponse> response = openListingLists.stream().map(listing -> createListingResponse(listing, listingFields)).collect(Collectors.toList());
 
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/query")
-    public ResponseEntity<List<ListingResponse>> getParameterizedListings(@RequestParam(value = "squareFootage", required = false, defaultValue = "0") int squareFootage,
-                                                                          @RequestParam(value = "price", required = false, defaultValue = "0") int price,
-                                                                          @RequestParam(value = "numBedrooms", required = false, defaultValue = "0") int numBedrooms,
-                                                                          @RequestParam(value = "numBathrooms", required = false, defaultValue = "0.0") double numBathrooms,
-                                                                          @RequestParam(value = "lotSize", required = false, defaultValue = "0.0") double lotSize) {
+    public ResponseEntity<List<ListingResponse>> getParameterizedListings(ListingQueryRequest queryRequest,
+                                                                          @RequestParam(value = "limit", required = false) Integer limit,
+                                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                                          @RequestParam(value = "sort", required = false) String sort,
+                                                                          @RequestParam(value = "fields", required = false) String fields) {
+
+        ListingCriteria criteria = createCriteria(queryRequest);
+        if (!criteria.hasValidRanges()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            criteria.setFields(parseFields(fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Return only the first listings in the requested order, sorted results are not paged with a cursor
+        if (sort != null) {
+            if (cursor != null || !isValidPageSize(limit)) {
+                return ResponseEntity.badRequest().build();
+            }
+            ListingSort listingSort;
+            try {
+                listingSort = ListingSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            List<Listing> topListings = listingService.findParameterizedListings(criteria, listingSort, pageSize(limit));
+            if (topListings.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.ok(topListings.stream().map(listing -> createListingResponse(listing, criteria.getFields())).collect(Collectors.toList()));
+        }
+
+        // Read a single page when the caller asks for one
+        if (limit != null || cursor != null) {
+            if (!isValidPageSize(limit)) {
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                return createPageResponse(listingService.findParameterizedListings(criteria, pageSize(limit), cursor),
+                        criteria.getFields());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
 
-        List<Listing> parameterizedListings = listingService.findParameterizedListings(squareFootage, price, numBedrooms, numBathrooms, lotSize);
+        List<Listing> parameterizedListings = listingService.findParameterizedListings(criteria);
 
         // If there are no listingLists, then return a 204
         if (parameterizedListings == null ||  parameterizedListings.isEmpty()) {
@@ -138,11 +265,175 @@ public class ListingController {
         }
 
         // Otherwise, convert the List of Listing objects into a List of ListingResponse and return it
-        List<ListingResponse> response = parameterizedListings.stream().map(listing -> createListingResponse(listing)).collect(Collectors.toList());
+        List<ListingResponse> response = parameterizedListings.stream().map(listing -> createListingResponse(listing, criteria.getFields())).collect(Collectors.toList());
 
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/nearby")
+    public ResponseEntity<List<ListingResponse>> getNearbyListings(ListingQueryRequest queryRequest,
+                                                                   @RequestParam("miles") double miles,
+                                                                   @RequestParam(value = "limit", required = false) Integer limit) {
+
+        // The radius is measured from the centre of the ZIP code given as zipCode
+        String zipCode = PostalAddress.normalizeZipCode(queryRequest.getZipCode());
+        ListingCriteria criteria = createCriteria(queryRequest);
+        if (zipCode == null || !(miles > 0 && miles <= MAX_RADIUS_MILES) || !isValidPageSize(limit)
+                || !criteria.hasValidRanges()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Listing> nearbyListings;
+        try {
+            nearbyListings = listingService.findNearbyListings(criteria, zipCode, miles, pageSize(limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (nearbyListings.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(nearbyListings.stream().map(listing -> createListingResponse(listing)).collect(Collectors.toList()));
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<ListingFacetsResponse> getListingFacets(ListingQueryRequest queryRequest) {
+        ListingCriteria criteria = createCriteria(queryRequest);
+        if (!criteria.hasValidRanges()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ListingFacets facets;
+        try {
+            facets = listingService.findFacets(criteria);
+        } catch (IllegalStateException e) {
+            // Counted only from the in-memory index, which is still loading
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(createFacetsResponse(facets));
+    }
+
+    @GetMapping("/stats/states")
+    public ResponseEntity<List<RegionStatisticsResponse>> getStatisticsByState() {
+        List<RegionStatistics> statistics;
+        try {
+            statistics = listingService.findStatisticsByState();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (statistics.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(statistics.stream().map(region -> createStatisticsResponse(region)).collect(Collectors.toList()));
+    }
+
+    @GetMapping("/stats/states/{state}")
+    public ResponseEntity<RegionStatisticsResponse> getStateStatistics(@PathVariable("state") String state) {
+        return createStatisticsResponse(state, null);
+    }
+
+    @GetMapping("/stats/zipCodes/{zipCode}")
+    public ResponseEntity<RegionStatisticsResponse> getZipCodeStatistics(@PathVariable("zipCode") String zipCode) {
+        String normalized = PostalAddress.normalizeZipCode(zipCode);
+        if (normalized == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return createStatisticsResponse(null, normalized);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ListingResponse>> searchListings(@RequestParam("q") String query,
+                                                                @RequestParam(value = "limit", required = false) Integer limit) {
+        if (!isValidPageSize(limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Listing> matches;
+        try {
+            matches = listingService.searchListings(query, pageSize(limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (matches.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(matches.stream().map(listing -> createListingResponse(listing)).collect(Collectors.toList()));
+    }
+
+    @GetMapping(params = "count=true")
+    public ResponseEntity<ListingCountResponse> countAllListings() {
+        return createCountResponse(listingService.countAllListings());
+    }
+
+    @GetMapping(value = "/allOpen", params = "count=true")
+    public ResponseEntity<ListingCountResponse> countAllOpenListings() {
+        return createCountResponse(listingService.countAllOpenListings());
+    }
+
+    @GetMapping(value = "/query", params = "count=true")
+    public ResponseEntity<ListingCountResponse> countParameterizedListings(ListingQueryRequest queryRequest) {
+        ListingCriteria criteria = createCriteria(queryRequest);
+        if (!criteria.hasValidRanges()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return createCountResponse(listingService.countParameterizedListings(criteria));
+    }
+
+    @GetMapping(produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllListings(@RequestParam(value = "fields", required = false) String fields) {
+        Set<String> listingFields;
+        try {
+            listingFields = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return createStreamingResponse(listingFields,
+                pageConsumer -> listingService.streamAllListings(listingFields, pageConsumer));
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllListingsOnRequest(@RequestParam(value = "fields", required = false) String fields) {
+        return streamAllListings(fields);
+    }
+
+    @GetMapping(value = "/allOpen", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllOpenListings(@RequestParam(value = "fields", required = false) String fields) {
+        Set<String> listingFields;
+        try {
+            listingFields = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return createStreamingResponse(listingFields,
+                pageConsumer -> listingService.streamAllOpenListings(listingFields, pageConsumer));
+    }
+
+    @GetMapping(value = "/allOpen", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllOpenListingsOnRequest(@RequestParam(value = "fields", required = false) String fields) {
+        return streamAllOpenListings(fields);
+    }
+
+    @GetMapping(value = "/query", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamParameterizedListings(ListingQueryRequest queryRequest,
+                                                                             @RequestParam(value = "fields", required = false) String fields) {
+        ListingCriteria criteria = createCriteria(queryRequest);
+        if (!criteria.hasValidRanges()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            criteria.setFields(parseFields(fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return createStreamingResponse(criteria.getFields(),
+                pageConsumer -> listingService.streamParameterizedListings(criteria, pageConsumer));
+    }
+
+    @GetMapping(value = "/query", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamParameterizedListingsOnRequest(ListingQueryRequest queryRequest,
+                                                                                      @RequestParam(value = "fields", required = false) String fields) {
+        return streamParameterizedListings(queryRequest, fields);
+    }
+
     @DeleteMapping("/{listingNumber}")
     public ResponseEntity<ListingResponse> deleteListingByNumber(@PathVariable("listingNumber") String listingNumber) {
         if (listingNumber != null) {
@@ -151,6 +442,184 @@ public class ListingController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Combines the original /listing/query parameters with the min and max ones, keeping the tighter bound when both
+     * set the same side of a range.
+     */
+    private ListingCriteria createCriteria(ListingQueryRequest queryRequest) {
+        ListingCriteria criteria = ListingCriteria.fromQueryParameters(orZero(queryRequest.getSquareFootage()),
+                orZero(queryRequest.getPrice()), orZero(queryRequest.getNumBedrooms()),
+                orZero(queryRequest.getNumBathrooms()), orZero(queryRequest.getLotSize()), null);
+
+        criteria.setMinSquareFootage(higher(criteria.getMinSquareFootage(), queryRequest.getMinSquareFootage()));
+        criteria.setMaxSquareFootage(queryRequest.getMaxSquareFootage());
+        criteria.setMinPrice(queryRequest.getMinPrice());
+        criteria.setMaxPrice(lower(criteria.getMaxPrice(), queryRequest.getMaxPrice()));
+        criteria.setMinNumBedrooms(higher(criteria.getMinNumBedrooms(), queryRequest.getMinNumBedrooms()));
+        criteria.setMaxNumBedrooms(queryRequest.getMaxNumBedrooms());
+        criteria.setMinNumBathrooms(higher(criteria.getMinNumBathrooms(), queryRequest.getMinNumBathrooms()));
+        criteria.setMaxNumBathrooms(queryRequest.getMaxNumBathrooms());
+        criteria.setMinLotSize(higher(criteria.getMinLotSize(), queryRequest.getMinLotSize()));
+        criteria.setMaxLotSize(queryRequest.getMaxLotSize());
+        criteria.setState(queryRequest.getState());
+        if (queryRequest.getZipCode() != null) {
+            // A value that is not a ZIP code is kept as it is, so it simply matches nothing
+            String zipCode = PostalAddress.normalizeZipCode(queryRequest.getZipCode());
+            criteria.setZipCodes(Collections.singleton(zipCode != null ? zipCode : queryRequest.getZipCode()));
+        }
+        return criteria;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    private static <T extends Comparable<T>> T higher(T first, T second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    private static <T extends Comparable<T>> T lower(T first, T second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    /**
+     * Parses a comma separated list of listing attributes. The listing number is always included.
+     * @return the attributes, or null when no list was given and every attribute is wanted
+     * @throws IllegalArgumentException if an attribute is not one of {@link #LISTING_FIELDS}
+     */
+    private static Set<String> parseFields(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        parsed.add("listingNumber");
+        for (String field : fields.split(",")) {
+            String trimmed = field.trim();
+            if (!LISTING_FIELDS.contains(trimmed)) {
+                throw new IllegalArgumentException("Unknown listing field: " + trimmed);
+            }
+            parsed.add(trimmed);
+        }
+        return parsed;
+    }
+
+    private boolean isValidPageSize(Integer limit) {
+        return limit == null || (limit > 0 && limit <= MAX_PAGE_SIZE);
+    }
+
+    private int pageSize(Integer limit) {
+        return limit != null ? limit : DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Returns the page as the usual JSON array, with the cursor for the next page in the X-Next-Cursor header.
+     * A page can be empty while more pages follow, so 204 is only returned for an empty last page.
+     */
+    private ResponseEntity<List<ListingResponse>> createPageResponse(ListingPage page, Set<String> fields) {
+        if (page.getListings().isEmpty() && page.getNextCursor() == null) {
+            return ResponseEntity.noContent().build();
+        }
+
+        List<ListingResponse> response = page.getListings().stream().map(listing -> createListingResponse(listing, fields)).collect(Collectors.toList());
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(response);
+    }
+
+    /**
+     * Streams the listings as newline delimited JSON, one listing per line. Each page is written and flushed as soon
+     * as the source hands it over, so the first listings reach the client before the last ones have been read and
+     * nothing beyond the current page is held in memory.
+     * @param fields the attributes to write for each listing, or null for all of them
+     * @param source reads the listings and passes each page to the consumer it is given
+     */
+    private ResponseEntity<StreamingResponseBody> createStreamingResponse(Set<String> fields,
+                                                                          Consumer<Consumer<List<Listing>>> source) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = ndjsonWriter.getFactory().createGenerator(outputStream)) {
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                source.accept(page -> {
+                    try {
+                        for (Listing listing : page) {
+                            ndjsonWriter.writeValue(generator, createListingResponse(listing, fields));
+                            generator.writeRaw('\n');
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    private ResponseEntity<RegionStatisticsResponse> createStatisticsResponse(String state, String zipCode) {
+        RegionStatistics statistics;
+        try {
+            statistics = listingService.findStatistics(state, zipCode);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (statistics == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(createStatisticsResponse(statistics));
+    }
+
+    private RegionStatisticsResponse createStatisticsResponse(RegionStatistics statistics) {
+        RegionStatisticsResponse response = new RegionStatisticsResponse();
+        response.setRegion(statistics.getRegion());
+        response.setListings(statistics.getListings());
+        response.setAveragePrice(statistics.getAveragePrice());
+        response.setLowerQuartilePrice(statistics.getLowerQuartilePrice());
+        response.setMedianPrice(statistics.getMedianPrice());
+        response.setUpperQuartilePrice(statistics.getUpperQuartilePrice());
+        response.setAveragePricePerSquareFootage(statistics.getAveragePricePerSquareFootage());
+        response.setMedianPricePerSquareFootage(statistics.getMedianPricePerSquareFootage());
+        return response;
+    }
+
+    private ResponseEntity<ListingCountResponse> createCountResponse(long count) {
+        ListingCountResponse response = new ListingCountResponse();
+        response.setCount(count);
+        return ResponseEntity.ok(response);
+    }
+
+    private ListingFacetsResponse createFacetsResponse(ListingFacets facets) {
+        Map<String, List<FacetCountResponse>> facetResponses = new LinkedHashMap<>();
+        facets.getFacets().forEach((attribute, counts) -> facetResponses.put(attribute, counts.stream()
+                .map(count -> {
+                    FacetCountResponse countResponse = new FacetCountResponse();
+                    countResponse.setMin(count.getMin());
+                    countResponse.setMax(count.getMax());
+                    countResponse.setCount(count.getCount());
+                    return countResponse;
+                })
+                .collect(Collectors.toList())));
+
+        ListingFacetsResponse response = new ListingFacetsResponse();
+        response.setTotal(facets.getTotal());
+        response.setFacets(facetResponses);
+        return response;
+    }
+
     private ListingResponse createListingResponse(Listing listing) {
         ListingResponse listingResponse = new ListingResponse();
         listingResponse.setListingNumber(listing.getListingNumber());
@@ -164,4 +633,38 @@ public class ListingController {
 
         return listingResponse;
     }
+
+    /**
+     * Sets only the requested attributes, the others are left null and so are not written.
+     * @param fields the attributes to set, or null for all of them
+     */
+    private ListingResponse createListingResponse(Listing listing, Set<String> fields) {
+        if (fields == null) {
+            return createListingResponse(listing);
+        }
+        ListingResponse listingResponse = new ListingResponse();
+        listingResponse.setListingNumber(listing.getListingNumber());
+        if (fields.contains("address")) {
+            listingResponse.setAddress(listing.getAddress());
+        }
+        if (fields.contains("squareFootage")) {
+            listingResponse.setSquareFootage(listing.getSquareFootage());
+        }
+        if (fields.contains("price")) {
+            listingResponse.setPrice(listing.getPrice());
+        }
+        if (fields.contains("numBedrooms")) {
+            listingResponse.setNumBedrooms(listing.getNumBedrooms());
+        }
+        if (fields.contains("numBathrooms")) {
+            listingResponse.setNumBathrooms(listing.getNumBathrooms());
+        }
+        if (fields.contains("listingStatus")) {
+            listingResponse.setListingStatus(listing.getListingStatus());
+        }
+        if (fields.contains("lotSize")) {
+            listingResponse.setLotSize(listing.getLotSize());
+        }
+        return listingResponse;
+    }
 }
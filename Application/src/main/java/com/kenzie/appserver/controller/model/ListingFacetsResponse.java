@@ -0,0 +1,30 @@
+package com.kenzie.appserver.controller.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+public class ListingFacetsResponse {
+    @JsonProperty("total")
+    private long total;
+
+    @JsonProperty("facets")
+    private Map<String, List<FacetCountResponse>> facets;
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Map<String, List<FacetCountResponse>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, List<FacetCountResponse>> facets) {
+        this.facets = facets;
+    }
+}
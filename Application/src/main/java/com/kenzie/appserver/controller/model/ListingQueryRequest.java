@@ -0,0 +1,163 @@
+package com.kenzie.appserver.controller.model;
+
+/**
+ * The search parameters of GET /listing/query. The original parameters keep their meaning: missing or 0 means not
+ * entered, the price is an exclusive upper bound and every other value is a minimum. The min and max parameters are
+ * inclusive bounds and can be combined with them. The state and ZIP code must match the listing's address exactly;
+ * GET /listing/nearby takes the ZIP code as the centre of its radius instead.
+ */
+public class ListingQueryRequest {
+    private Integer squareFootage;
+    private Integer price;
+    private Integer numBedrooms;
+    private Double numBathrooms;
+    private Double lotSize;
+    private Integer minSquareFootage;
+    private Integer maxSquareFootage;
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Integer minNumBedrooms;
+    private Integer maxNumBedrooms;
+    private Double minNumBathrooms;
+    private Double maxNumBathrooms;
+    private Double minLotSize;
+    private Double maxLotSize;
+    private String state;
+    private String zipCode;
+
+    public Integer getSquareFootage() {
+        return squareFootage;
+    }
+
+    public void setSquareFootage(Integer squareFootage) {
+        this.squareFootage = squareFootage;
+    }
+
+    public Integer getPrice() {
+        return price;
+    }
+
+    public void setPrice(Integer price) {
+        this.price = price;
+    }
+
+    public Integer getNumBedrooms() {
+        return numBedrooms;
+    }
+
+    public void setNumBedrooms(Integer numBedrooms) {
+        this.numBedrooms = numBedrooms;
+    }
+
+    public Double getNumBathrooms() {
+        return numBathrooms;
+    }
+
+    public void setNumBathrooms(Double numBathrooms) {
+        this.numBathrooms = numBathrooms;
+    }
+
+    public Double getLotSize() {
+        return lotSize;
+    }
+
+    public void setLotSize(Double lotSize) {
+        this.lotSize = lotSize;
+    }
+
+    public Integer getMinSquareFootage() {
+        return minSquareFootage;
+    }
+
+    public void setMinSquareFootage(Integer minSquareFootage) {
+        this.minSquareFootage = minSquareFootage;
+    }
+
+    public Integer getMaxSquareFootage() {
+        return maxSquareFootage;
+    }
+
+    public void setMaxSquareFootage(Integer maxSquareFootage) {
+        this.maxSquareFootage = maxSquareFootage;
+    }
+
+    public Integer getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Integer minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Integer getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Integer maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Integer getMinNumBedrooms() {
+        return minNumBedrooms;
+    }
+
+    public void setMinNumBedrooms(Integer minNumBedrooms) {
+        this.minNumBedrooms = minNumBedrooms;
+    }
+
+    public Integer getMaxNumBedrooms() {
+        return maxNumBedrooms;
+    }
+
+    public void setMaxNumBedrooms(Integer maxNumBedrooms) {
+        this.maxNumBedrooms = maxNumBedrooms;
+    }
+
+    public Double getMinNumBathrooms() {
+        return minNumBathrooms;
+    }
+
+    public void setMinNumBathrooms(Double minNumBathrooms) {
+        this.minNumBathrooms = minNumBathrooms;
+    }
+
+    public Double getMaxNumBathrooms() {
+        return maxNumBathrooms;
+    }
+
+    public void setMaxNumBathrooms(Double maxNumBathrooms) {
+        this.maxNumBathrooms = maxNumBathrooms;
+    }
+
+    public Double getMinLotSize() {
+        return minLotSize;
+    }
+
+    public void setMinLotSize(Double minLotSize) {
+        this.minLotSize = minLotSize;
+    }
+
+    public Double getMaxLotSize() {
+        return maxLotSize;
+    }
+
+    public void setMaxLotSize(Double maxLotSize) {
+        this.maxLotSize = maxLotSize;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public String getZipCode() {
+        return zipCode;
+    }
+
+    public void setZipCode(String zipCode) {
+        this.zipCode = zipCode;
+    }
+}
@@ -16,22 +16,22 @@ public class ListingResponse {
     private String address;
 
     @JsonProperty("squareFootage")
-    private int squareFootage;
+    private Integer squareFootage;
 
     @JsonProperty("price")
-    private int price;
+    private Integer price;
 
     @JsonProperty("numBedrooms")
-    private int numBedrooms;
+    private Integer numBedrooms;
 
     @JsonProperty("numBathrooms")
-    private double numBathrooms;
+    private Double numBathrooms;
 
     @JsonProperty("listingStatus")
     private String listingStatus;
 
     @JsonProperty("lotSize")
-    private double lotSize;
+    private Double lotSize;
 
     public String getListingNumber() {
         return listingNumber;
@@ -49,35 +49,35 @@ public class ListingResponse {
         this.address = address;
     }
 
-    public int getSquareFootage() {
+    public Integer getSquareFootage() {
         return squareFootage;
     }
 
-    public void setSquareFootage(int squareFootage) {
+    public void setSquareFootage(Integer squareFootage) {
         this.squareFootage = squareFootage;
     }
 
-    public int getPrice() {
+    public Integer getPrice() {
         return price;
     }
 
-    public void setPrice(int price) {
+    public void setPrice(Integer price) {
         this.price = price;
     }
 
-    public int getNumBedrooms() {
+    public Integer getNumBedrooms() {
         return numBedrooms;
     }
 
-    public void setNumBedrooms(int numBedrooms) {
+    public void setNumBedrooms(Integer numBedrooms) {
         this.numBedrooms = numBedrooms;
     }
 
-    public double getNumBathrooms() {
+    public Double getNumBathrooms() {
         return numBathrooms;
     }
 
-    public void setNumBathrooms(double numBathrooms) {
+    public void setNumBathrooms(Double numBathrooms) {
         this.numBathrooms = numBathrooms;
     }
 
@@ -89,11 +89,11 @@ public class ListingResponse {
         this.listingStatus = listingStatus;
     }
 
-    public double getLotSize() {
+    public Double getLotSize() {
         return lotSize;
     }
 
-    public void setLotSize(double lotSize) {
+    public void setLotSize(Double lotSize) {
         this.lotSize = lotSize;
     }
 }
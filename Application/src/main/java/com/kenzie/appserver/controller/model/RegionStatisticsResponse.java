@@ -0,0 +1,93 @@
+package com.kenzie.appserver.controller.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class RegionStatisticsResponse {
+    @JsonProperty("region")
+    private String region;
+
+    @JsonProperty("listings")
+    private long listings;
+
+    @JsonProperty("averagePrice")
+    private double averagePrice;
+
+    @JsonProperty("lowerQuartilePrice")
+    private double lowerQuartilePrice;
+
+    @JsonProperty("medianPrice")
+    private double medianPrice;
+
+    @JsonProperty("upperQuartilePrice")
+    private double upperQuartilePrice;
+
+    @JsonProperty("averagePricePerSquareFootage")
+    private Double averagePricePerSquareFootage;
+
+    @JsonProperty("medianPricePerSquareFootage")
+    private Double medianPricePerSquareFootage;
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public long getListings() {
+        return listings;
+    }
+
+    public void setListings(long listings) {
+        this.listings = listings;
+    }
+
+    public double getAveragePrice() {
+        return averagePrice;
+    }
+
+    public void setAveragePrice(double averagePrice) {
+        this.averagePrice = averagePrice;
+    }
+
+    public double getLowerQuartilePrice() {
+        return lowerQuartilePrice;
+    }
+
+    public void setLowerQuartilePrice(double lowerQuartilePrice) {
+        this.lowerQuartilePrice = lowerQuartilePrice;
+    }
+
+    public double getMedianPrice() {
+        return medianPrice;
+    }
+
+    public void setMedianPrice(double medianPrice) {
+        this.medianPrice = medianPrice;
+    }
+
+    public double getUpperQuartilePrice() {
+        return upperQuartilePrice;
+    }
+
+    public void setUpperQuartilePrice(double upperQuartilePrice) {
+        this.upperQuartilePrice = upperQuartilePrice;
+    }
+
+    public Double getAveragePricePerSquareFootage() {
+        return averagePricePerSquareFootage;
+    }
+
+    public void setAveragePricePerSquareFootage(Double averagePricePerSquareFootage) {
+        this.averagePricePerSquareFootage = averagePricePerSquareFootage;
+    }
+
+    public Double getMedianPricePerSquareFootage() {
+        return medianPricePerSquareFootage;
+    }
+
+    public void setMedianPricePerSquareFootage(Double medianPricePerSquareFootage) {
+        this.medianPricePerSquareFootage = medianPricePerSquareFootage;
+    }
+}
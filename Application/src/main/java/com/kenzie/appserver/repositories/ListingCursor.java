@@ -0,0 +1,128 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes the position of a listing page as an opaque string that clients hand back to fetch the next page.
+ * A table cursor carries a DynamoDB LastEvaluatedKey and an index cursor carries the last listing number returned
+ * by the in-memory index, so a page is always continued by the same source that produced it.
+ */
+public class ListingCursor {
+    private static final String TABLE_CURSOR = "t";
+    private static final String INDEX_CURSOR = "i";
+    private static final String STRING_TYPE = "S";
+    private static final String NUMBER_TYPE = "N";
+
+    private ListingCursor() {
+    }
+
+    /**
+     * @param lastEvaluatedKey the key DynamoDB returned with a page, may be null on the last page
+     * @return the cursor for the next page, or null if there are no more pages
+     */
+    public static String fromLastEvaluatedKey(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder cursor = new StringBuilder(TABLE_CURSOR);
+        for (Map.Entry<String, AttributeValue> entry : new TreeMap<>(lastEvaluatedKey).entrySet()) {
+            AttributeValue value = entry.getValue();
+            String type = value.getS() != null ? STRING_TYPE : NUMBER_TYPE;
+            cursor.append('\n').append(escape(entry.getKey()))
+                    .append('\t').append(type)
+                    .append('\t').append(escape(value.getS() != null ? value.getS() : value.getN()));
+        }
+        return encode(cursor.toString());
+    }
+
+    /**
+     * @param cursor a table cursor returned with an earlier page
+     * @return the ExclusiveStartKey to resume the query or scan from
+     * @throws IllegalArgumentException if the cursor is malformed or was not produced by a table read
+     */
+    public static Map<String, AttributeValue> toExclusiveStartKey(String cursor) {
+        String[] lines = decode(cursor).split("\n");
+        if (!TABLE_CURSOR.equals(lines[0]) || lines.length < 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        Map<String, AttributeValue> key = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] parts = lines[i].split("\t");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String value = unescape(parts[2]);
+            key.put(unescape(parts[0]), STRING_TYPE.equals(parts[1])
+                    ? new AttributeValue().withS(value) : new AttributeValue().withN(value));
+        }
+        return key;
+    }
+
+    /**
+     * @param listingNumber the last listing number on a page read from the in-memory index
+     * @return the cursor for the next page
+     */
+    public static String afterListingNumber(String listingNumber) {
+        return encode(INDEX_CURSOR + "\n" + escape(listingNumber));
+    }
+
+    /**
+     * @param cursor an index cursor returned with an earlier page
+     * @return the last listing number of that page
+     * @throws IllegalArgumentException if the cursor is malformed or was not produced by the index
+     */
+    public static String toListingNumber(String cursor) {
+        String[] lines = decode(cursor).split("\n");
+        if (!INDEX_CURSOR.equals(lines[0]) || lines.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return unescape(lines[1]);
+    }
+
+    public static boolean isIndexCursor(String cursor) {
+        try {
+            return decode(cursor).startsWith(INDEX_CURSOR + "\n");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static String escape(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String unescape(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
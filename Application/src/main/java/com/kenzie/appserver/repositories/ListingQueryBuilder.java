@@ -0,0 +1,206 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.repositories.model.ListingRecord;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns a {@link ListingCriteria} into a single DynamoDB request. When the criteria names a status the request is a
+ * Query on the status/price index with the price bounds as key conditions, otherwise it is a Scan. Every other bound
+ * becomes part of the FilterExpression so DynamoDB drops non-matching items before they are returned.
+ *
+ * A set of up to {@link #MAX_ZIP_CODES_IN_FILTER} ZIP codes is sent as an IN condition, the most operands DynamoDB
+ * allows. A larger set is left out of the request and must be checked by the caller with
+ * {@link ListingCriteria#matchesLocation}.
+ */
+public class ListingQueryBuilder {
+    static final String[] LISTING_ATTRIBUTES = {"listingNumber", "address", "squareFootage", "price",
+        "numBedrooms", "numBathrooms", "listingStatus", "lotSize", "city", "state", "zipCode"};
+
+    public static final int MAX_ZIP_CODES_IN_FILTER = 100;
+
+    private final Map<String, String> names = new HashMap<>();
+    private final Map<String, AttributeValue> values = new HashMap<>();
+    private final List<String> keyConditions = new ArrayList<>();
+    private final List<String> filters = new ArrayList<>();
+
+    private ListingQueryBuilder() {
+    }
+
+    /**
+     * Builds a Query on the status/price index.
+     * @param criteria the search filters, which must include a listing status
+     * @return the query expression
+     */
+    public static DynamoDBQueryExpression<ListingRecord> query(ListingCriteria criteria) {
+        return query(criteria, true);
+    }
+
+    /**
+     * Builds a Query on the status/price index to be sent with Select=COUNT, which does not allow a projection.
+     * @param criteria the search filters, which must include a listing status
+     * @return the query expression
+     */
+    public static DynamoDBQueryExpression<ListingRecord> countQuery(ListingCriteria criteria) {
+        return query(criteria, false);
+    }
+
+    private static DynamoDBQueryExpression<ListingRecord> query(ListingCriteria criteria, boolean projected) {
+        if (criteria.getListingStatus() == null) {
+            throw new IllegalArgumentException("A listing status is required to query the status/price index");
+        }
+
+        ListingQueryBuilder builder = new ListingQueryBuilder();
+        builder.equalTo(builder.keyConditions, "listingStatus", criteria.getListingStatus());
+        builder.between(builder.keyConditions, "price", criteria.getMinPrice(), criteria.getMaxPrice());
+        builder.addNumericFilters(criteria);
+
+        return new DynamoDBQueryExpression<ListingRecord>()
+                .withIndexName(ListingRecord.STATUS_PRICE_INDEX)
+                .withConsistentRead(false)
+                .withKeyConditionExpression(String.join(" AND ", builder.keyConditions))
+                .withFilterExpression(builder.filterExpression())
+                .withProjectionExpression(projected ? builder.projectionExpression(criteria) : null)
+                .withExpressionAttributeNames(builder.names)
+                .withExpressionAttributeValues(builder.values);
+    }
+
+    /**
+     * Builds a Scan of the whole table for criteria that do not name a status.
+     * @param criteria the search filters
+     * @return the scan expression
+     */
+    public static DynamoDBScanExpression scan(ListingCriteria criteria) {
+        return scan(criteria, true);
+    }
+
+    /**
+     * Builds a Scan of the whole table to be sent with Select=COUNT, which does not allow a projection.
+     * @param criteria the search filters
+     * @return the scan expression
+     */
+    public static DynamoDBScanExpression countScan(ListingCriteria criteria) {
+        return scan(criteria, false);
+    }
+
+    private static DynamoDBScanExpression scan(ListingCriteria criteria, boolean projected) {
+        ListingQueryBuilder builder = new ListingQueryBuilder();
+        builder.between(builder.filters, "price", criteria.getMinPrice(), criteria.getMaxPrice());
+        builder.addNumericFilters(criteria);
+        if (criteria.getListingStatus() != null) {
+            builder.equalTo(builder.filters, "listingStatus", criteria.getListingStatus());
+        }
+
+        return new DynamoDBScanExpression()
+                .withFilterExpression(builder.filterExpression())
+                .withProjectionExpression(projected ? builder.projectionExpression(criteria) : null)
+                // DynamoDB rejects an empty map, as well as names that no expression uses
+                .withExpressionAttributeNames(builder.names.isEmpty() ? null : builder.names)
+                .withExpressionAttributeValues(builder.values.isEmpty() ? null : builder.values);
+    }
+
+    private void addNumericFilters(ListingCriteria criteria) {
+        between(filters, "squareFootage", criteria.getMinSquareFootage(), criteria.getMaxSquareFootage());
+        between(filters, "numBedrooms", criteria.getMinNumBedrooms(), criteria.getMaxNumBedrooms());
+        between(filters, "numBathrooms", criteria.getMinNumBathrooms(), criteria.getMaxNumBathrooms());
+        between(filters, "lotSize", criteria.getMinLotSize(), criteria.getMaxLotSize());
+        if (criteria.getState() != null) {
+            equalTo(filters, "state", criteria.getState());
+        }
+        if (criteria.getZipCodes() != null && criteria.getZipCodes().size() <= MAX_ZIP_CODES_IN_FILTER) {
+            in(filters, "zipCode", criteria.getZipCodes());
+        }
+    }
+
+    private void equalTo(List<String> conditions, String attribute, String value) {
+        String name = name(attribute);
+        values.put(":" + attribute, new AttributeValue().withS(value));
+        conditions.add(name + " = :" + attribute);
+    }
+
+    private void in(List<String> conditions, String attribute, Collection<String> options) {
+        if (options.isEmpty()) {
+            // Nothing can match, but an empty IN list is not valid syntax
+            conditions.add("attribute_not_exists(" + name(attribute) + ") AND attribute_exists(" + name(attribute) + ")");
+            return;
+        }
+        List<String> placeholders = new ArrayList<>(options.size());
+        for (String option : options) {
+            String placeholder = ":" + attribute + placeholders.size();
+            values.put(placeholder, new AttributeValue().withS(option));
+            placeholders.add(placeholder);
+        }
+        conditions.add(name(attribute) + " IN (" + String.join(", ", placeholders) + ")");
+    }
+
+    private void between(List<String> conditions, String attribute, Number min, Number max) {
+        if (min == null && max == null) {
+            return;
+        }
+
+        String name = name(attribute);
+        if (min != null) {
+            values.put(":" + attribute + "Min", number(min));
+        }
+        if (max != null) {
+            values.put(":" + attribute + "Max", number(max));
+        }
+
+        if (min != null && max != null) {
+            conditions.add(name + " BETWEEN :" + attribute + "Min AND :" + attribute + "Max");
+        } else if (min != null) {
+            conditions.add(name + " >= :" + attribute + "Min");
+        } else {
+            conditions.add(name + " <= :" + attribute + "Max");
+        }
+    }
+
+    private String name(String attribute) {
+        names.put("#" + attribute, attribute);
+        return "#" + attribute;
+    }
+
+    private String filterExpression() {
+        return filters.isEmpty() ? null : String.join(" AND ", filters);
+    }
+
+    /**
+     * Projects every listing attribute, or only the listing number and the criteria's fields when it names some.
+     * The state and ZIP code are projected too when the ZIP codes are left for the caller to check.
+     */
+    private String projectionExpression(ListingCriteria criteria) {
+        Set<String> attributes = new LinkedHashSet<>();
+        if (criteria.getFields() == null) {
+            attributes.addAll(Arrays.asList(LISTING_ATTRIBUTES));
+        } else {
+            attributes.add("listingNumber");
+            attributes.addAll(criteria.getFields());
+            if (criteria.getZipCodes() != null && criteria.getZipCodes().size() > MAX_ZIP_CODES_IN_FILTER) {
+                attributes.add("state");
+                attributes.add("zipCode");
+            }
+        }
+
+        List<String> projected = new ArrayList<>();
+        for (String attribute : attributes) {
+            projected.add(name(attribute));
+        }
+        return String.join(", ", projected);
+    }
+
+    private static AttributeValue number(Number number) {
+        return new AttributeValue().withN(new BigDecimal(number.toString()).toPlainString());
+    }
+}
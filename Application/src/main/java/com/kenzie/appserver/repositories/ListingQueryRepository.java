@@ -0,0 +1,293 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.kenzie.appserver.config.ExecutorServiceConfig;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.repositories.model.ListingRecord;
+import com.kenzie.appserver.repositories.model.ListingRecordPage;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Listing searches that are sent to DynamoDB as one request built by {@link ListingQueryBuilder}. Searches for a
+ * status go through the listingStatus/price global secondary index as a Query, so only that status's partition is
+ * read instead of the whole table. Which of the two a search is sent as is logged at debug level.
+ */
+@Repository
+public class ListingQueryRepository {
+    private static final Logger log = LoggerFactory.getLogger(ListingQueryRepository.class);
+    private static final DynamoDBMapperConfig ITERATION_ONLY = DynamoDBMapperConfig.builder()
+            .withPaginationLoadingStrategy(DynamoDBMapperConfig.PaginationLoadingStrategy.ITERATION_ONLY)
+            .build();
+    private static final DynamoDBMapperConfig CONSISTENT_READS = DynamoDBMapperConfig.builder()
+            .withConsistentReads(DynamoDBMapperConfig.ConsistentReads.CONSISTENT)
+            .build();
+
+    private DynamoDBMapper mapper;
+    private TaskExecutor executor;
+    private int configuredSegments;
+    private long itemsPerSegment;
+    private int maxSegments;
+    private Supplier<TableDescription> tableDescription;
+
+    @Autowired
+    public ListingQueryRepository(DynamoDBMapper mapper,
+                                  AmazonDynamoDB amazonDynamoDB,
+                                  @Qualifier(ExecutorServiceConfig.SCAN_EXECUTOR) TaskExecutor executor,
+                                  @Value("${listing.scan.segments:0}") int configuredSegments,
+                                  @Value("${listing.scan.itemsPerSegment:25000}") long itemsPerSegment,
+                                  @Value("${listing.scan.maxSegments:4}") int maxSegments) {
+        this.mapper = mapper;
+        this.executor = executor;
+        this.configuredSegments = configuredSegments;
+        this.itemsPerSegment = itemsPerSegment;
+        this.maxSegments = maxSegments;
+
+        // DescribeTable's item count is only refreshed by DynamoDB every few hours, so there is no point asking often
+        String tableName = mapper.generateCreateTableRequest(ListingRecord.class).getTableName();
+        this.tableDescription = Suppliers.memoizeWithExpiration(
+                () -> amazonDynamoDB.describeTable(tableName).getTable(), 10, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Reads a listing with a strongly consistent GetItem, so every save that completed before the read is reflected
+     * in it. It consumes twice the read capacity of an eventually consistent read.
+     * @return the listing, or null if there is none with the number
+     */
+    public ListingRecord findConsistently(String listingNumber) {
+        return mapper.load(ListingRecord.class, listingNumber, CONSISTENT_READS);
+    }
+
+    /**
+     * Finds the listings that match every bound in the criteria.
+     * @param criteria the search filters
+     * @return the matching listings, loaded lazily a page at a time
+     */
+    public List<ListingRecord> find(ListingCriteria criteria) {
+        if (queriesIndex(criteria)) {
+            return mapper.query(ListingRecord.class, ListingQueryBuilder.query(criteria));
+        }
+        return mapper.scan(ListingRecord.class, ListingQueryBuilder.scan(criteria));
+    }
+
+    /**
+     * Counts the listings that match every bound in the criteria with Select=COUNT, so DynamoDB returns only the
+     * number of matches on each page and no item is sent back or unmarshalled. Every matching item is still read.
+     * @param criteria the search filters
+     * @return the number of matching listings
+     */
+    public int count(ListingCriteria criteria) {
+        if (queriesIndex(criteria)) {
+            return mapper.count(ListingRecord.class, ListingQueryBuilder.countQuery(criteria));
+        }
+        return mapper.count(ListingRecord.class, ListingQueryBuilder.countScan(criteria));
+    }
+
+    /**
+     * Reads a single page of the listings that match the criteria. Because the bounds are applied as a filter, a page
+     * can hold fewer than the limit, or even no listings, while still having a next cursor.
+     * @param criteria the search filters
+     * @param limit the most items DynamoDB should evaluate for this page
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @return the page and the cursor for the next one
+     * @throws IllegalArgumentException if the cursor is not a valid table cursor
+     */
+    public ListingRecordPage findPage(ListingCriteria criteria, int limit, String cursor) {
+        Map<String, AttributeValue> exclusiveStartKey = cursor != null ? ListingCursor.toExclusiveStartKey(cursor) : null;
+
+        if (queriesIndex(criteria)) {
+            QueryResultPage<ListingRecord> page = mapper.queryPage(ListingRecord.class, ListingQueryBuilder.query(criteria)
+                    .withLimit(limit)
+                    .withExclusiveStartKey(exclusiveStartKey));
+            return new ListingRecordPage(page.getResults(), ListingCursor.fromLastEvaluatedKey(page.getLastEvaluatedKey()));
+        }
+
+        ScanResultPage<ListingRecord> page = mapper.scanPage(ListingRecord.class, ListingQueryBuilder.scan(criteria)
+                .withLimit(limit)
+                .withExclusiveStartKey(exclusiveStartKey));
+        return new ListingRecordPage(page.getResults(), ListingCursor.fromLastEvaluatedKey(page.getLastEvaluatedKey()));
+    }
+
+    /**
+     * Reads the listings that match the criteria in price order, straight from the status/price index whose range key
+     * is the price. Pages are loaded as the iteration reaches them and are not kept afterwards, so a caller that only
+     * needs the first few listings can stop early and pay for no more than the pages it has read.
+     * @param criteria the search filters, which must include a listing status
+     * @param descending whether to read from the most expensive listing down
+     * @param pageSize the most items DynamoDB should evaluate for each page
+     * @return the matching listings, loaded a page at a time
+     */
+    public Iterable<ListingRecord> findInPriceOrder(ListingCriteria criteria, boolean descending, int pageSize) {
+        return mapper.query(ListingRecord.class,
+                ListingQueryBuilder.query(criteria)
+                        .withScanIndexForward(!descending)
+                        .withLimit(pageSize),
+                ITERATION_ONLY);
+    }
+
+    /**
+     * Reads every listing that matches the criteria one DynamoDB page at a time. Unlike {@link #find}, pages that have
+     * been handed over are not kept, so memory stays bounded by a single page however many listings match.
+     * @param criteria the search filters
+     * @param pageConsumer receives each page as soon as it is read, on the calling thread
+     */
+    public void forEachPage(ListingCriteria criteria, Consumer<List<ListingRecord>> pageConsumer) {
+        boolean queriesIndex = queriesIndex(criteria);
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        do {
+            List<ListingRecord> records;
+            if (queriesIndex) {
+                QueryResultPage<ListingRecord> page = mapper.queryPage(ListingRecord.class,
+                        ListingQueryBuilder.query(criteria).withExclusiveStartKey(exclusiveStartKey));
+                records = page.getResults();
+                exclusiveStartKey = page.getLastEvaluatedKey();
+            } else {
+                ScanResultPage<ListingRecord> page = mapper.scanPage(ListingRecord.class,
+                        ListingQueryBuilder.scan(criteria).withExclusiveStartKey(exclusiveStartKey));
+                records = page.getResults();
+                exclusiveStartKey = page.getLastEvaluatedKey();
+            }
+            if (!records.isEmpty()) {
+                pageConsumer.accept(records);
+            }
+        } while (exclusiveStartKey != null);
+    }
+
+    /**
+     * Reads every listing with a parallel scan, using the configured segment count or, when that is 0, one segment
+     * per listing.scan.itemsPerSegment items in the table, capped at listing.scan.maxSegments.
+     * @param pageConsumer receives each page as soon as it is read; it is called from several threads at once
+     */
+    public void scanAll(Consumer<List<ListingRecord>> pageConsumer) {
+        scanAll(new ListingCriteria(), segmentCount(), null, pageConsumer);
+    }
+
+    /**
+     * Reads every listing with a parallel scan, like {@link #scanAll(Consumer)}, keeping the read capacity the
+     * segments consume between them within a budget. Each segment takes as many permits as the capacity units its
+     * last page consumed before it reads the next one, so the scan stays near the limiter's rate however many
+     * segments there are, and requests served while it runs are left the rest of the table's capacity.
+     * @param readCapacity permits of one read capacity unit each, or null to read as fast as DynamoDB allows
+     */
+    public void scanAll(RateLimiter readCapacity, Consumer<List<ListingRecord>> pageConsumer) {
+        scanAll(new ListingCriteria(), segmentCount(), readCapacity, pageConsumer);
+    }
+
+    /**
+     * Reads every listing with a parallel scan, like {@link #scanAll(Consumer)}, asking only for the attributes
+     * named by the criteria's fields. The criteria's bounds are not applied.
+     */
+    public void scanAll(ListingCriteria criteria, Consumer<List<ListingRecord>> pageConsumer) {
+        ListingCriteria projection = new ListingCriteria();
+        projection.setFields(criteria.getFields());
+        scanAll(projection, segmentCount(), null, pageConsumer);
+    }
+
+    /**
+     * Reads every listing by splitting the table into segments that are scanned concurrently on the scan
+     * executor. Pages are handed over as each segment produces them rather than after every segment has finished.
+     * @param totalSegments the number of segments to split the table into
+     * @param pageConsumer receives each page as soon as it is read; it is called from several threads at once
+     */
+    public void scanAll(int totalSegments, Consumer<List<ListingRecord>> pageConsumer) {
+        scanAll(new ListingCriteria(), totalSegments, null, pageConsumer);
+    }
+
+    private void scanAll(ListingCriteria criteria, int totalSegments, RateLimiter readCapacity,
+                         Consumer<List<ListingRecord>> pageConsumer) {
+        CompletableFuture<?>[] segments = new CompletableFuture<?>[totalSegments];
+        for (int segment = 0; segment < totalSegments; segment++) {
+            int currentSegment = segment;
+            segments[segment] = CompletableFuture.runAsync(
+                    () -> scanSegment(criteria, currentSegment, totalSegments, readCapacity, pageConsumer), executor);
+        }
+
+        try {
+            CompletableFuture.allOf(segments).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of listings in the table as DynamoDB last reported it, which can be a few hours old
+     */
+    public long tableItemCount() {
+        return tableDescription.get().getItemCount();
+    }
+
+    /**
+     * @return the read capacity units provisioned for the table, or 0 if it is billed on demand
+     */
+    public long provisionedReadCapacityUnits() {
+        ProvisionedThroughputDescription throughput = tableDescription.get().getProvisionedThroughput();
+        return throughput == null || throughput.getReadCapacityUnits() == null ? 0 : throughput.getReadCapacityUnits();
+    }
+
+    public int segmentCount() {
+        if (configuredSegments > 0) {
+            return configuredSegments;
+        }
+        long segments = (tableItemCount() + itemsPerSegment - 1) / itemsPerSegment;
+        return (int) Math.max(1, Math.min(maxSegments, segments));
+    }
+
+    private void scanSegment(ListingCriteria criteria, int segment, int totalSegments, RateLimiter readCapacity,
+                             Consumer<List<ListingRecord>> pageConsumer) {
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        do {
+            DynamoDBScanExpression scanExpression = ListingQueryBuilder.scan(criteria)
+                    .withExclusiveStartKey(exclusiveStartKey);
+            if (totalSegments > 1) {
+                scanExpression.withSegment(segment).withTotalSegments(totalSegments);
+            }
+            if (readCapacity != null) {
+                scanExpression.withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+            }
+
+            ScanResultPage<ListingRecord> page = mapper.scanPage(ListingRecord.class, scanExpression);
+            pageConsumer.accept(page.getResults());
+            exclusiveStartKey = page.getLastEvaluatedKey();
+
+            ConsumedCapacity consumed = page.getConsumedCapacity();
+            if (readCapacity != null && consumed != null && consumed.getCapacityUnits() != null) {
+                readCapacity.acquire(Math.max(1, (int) Math.ceil(consumed.getCapacityUnits())));
+            }
+        } while (exclusiveStartKey != null);
+    }
+
+    private static boolean queriesIndex(ListingCriteria criteria) {
+        boolean queriesIndex = criteria.getListingStatus() != null;
+        log.debug("Listing search {} sent as {}", criteria,
+                queriesIndex ? "a Query on the listingStatus/price index" : "a Scan of the whole table");
+        return queriesIndex;
+    }
+}
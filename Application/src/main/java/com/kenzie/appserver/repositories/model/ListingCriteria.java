@@ -0,0 +1,261 @@
+package com.kenzie.appserver.repositories.model;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The filters for a listing search. Every bound is inclusive and a null bound is not applied. The state and ZIP codes
+ * are matched exactly against the parts of the listing's address. The fields, when set, name the only listing
+ * attributes the caller needs, so DynamoDB can be asked for those alone.
+ */
+public class ListingCriteria {
+    private Integer minSquareFootage;
+    private Integer maxSquareFootage;
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Integer minNumBedrooms;
+    private Integer maxNumBedrooms;
+    private Double minNumBathrooms;
+    private Double maxNumBathrooms;
+    private Double minLotSize;
+    private Double maxLotSize;
+    private String listingStatus;
+    private String state;
+    private Set<String> zipCodes;
+    private Set<String> fields;
+
+    /**
+     * Builds the criteria for the /listing/query parameters, where a value of 0 means the filter was not entered
+     * and the price is an exclusive upper bound. Only listings that are for sale are searched.
+     */
+    public static ListingCriteria fromQueryParameters(int squareFootage, int price, int numBedrooms,
+                                                      double numBathrooms, double lotSize, String listingStatus) {
+        ListingCriteria criteria = withStatus(listingStatus);
+        criteria.setMinSquareFootage(squareFootage != 0 ? squareFootage : null);
+        criteria.setMaxPrice(price != 0 ? price - 1 : null);
+        criteria.setMinNumBedrooms(numBedrooms != 0 ? numBedrooms : null);
+        criteria.setMinNumBathrooms(numBathrooms != 0.0 ? numBathrooms : null);
+        criteria.setMinLotSize(lotSize != 0.0 ? lotSize : null);
+        return criteria;
+    }
+
+    public Integer getMinSquareFootage() {
+        return minSquareFootage;
+    }
+
+    public void setMinSquareFootage(Integer minSquareFootage) {
+        this.minSquareFootage = minSquareFootage;
+    }
+
+    public Integer getMaxSquareFootage() {
+        return maxSquareFootage;
+    }
+
+    public void setMaxSquareFootage(Integer maxSquareFootage) {
+        this.maxSquareFootage = maxSquareFootage;
+    }
+
+    public Integer getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Integer minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Integer getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Integer maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Integer getMinNumBedrooms() {
+        return minNumBedrooms;
+    }
+
+    public void setMinNumBedrooms(Integer minNumBedrooms) {
+        this.minNumBedrooms = minNumBedrooms;
+    }
+
+    public Integer getMaxNumBedrooms() {
+        return maxNumBedrooms;
+    }
+
+    public void setMaxNumBedrooms(Integer maxNumBedrooms) {
+        this.maxNumBedrooms = maxNumBedrooms;
+    }
+
+    public Double getMinNumBathrooms() {
+        return minNumBathrooms;
+    }
+
+    public void setMinNumBathrooms(Double minNumBathrooms) {
+        this.minNumBathrooms = minNumBathrooms;
+    }
+
+    public Double getMaxNumBathrooms() {
+        return maxNumBathrooms;
+    }
+
+    public void setMaxNumBathrooms(Double maxNumBathrooms) {
+        this.maxNumBathrooms = maxNumBathrooms;
+    }
+
+    public Double getMinLotSize() {
+        return minLotSize;
+    }
+
+    public void setMinLotSize(Double minLotSize) {
+        this.minLotSize = minLotSize;
+    }
+
+    public Double getMaxLotSize() {
+        return maxLotSize;
+    }
+
+    public void setMaxLotSize(Double maxLotSize) {
+        this.maxLotSize = maxLotSize;
+    }
+
+    public String getListingStatus() {
+        return listingStatus;
+    }
+
+    public void setListingStatus(String listingStatus) {
+        this.listingStatus = listingStatus;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * @return the ZIP codes a listing must be in one of, or null for any ZIP code
+     */
+    public Set<String> getZipCodes() {
+        return zipCodes;
+    }
+
+    public void setZipCodes(Set<String> zipCodes) {
+        this.zipCodes = zipCodes != null ? Collections.unmodifiableSet(new LinkedHashSet<>(zipCodes)) : null;
+    }
+
+    /**
+     * @return the listing attributes the caller needs besides the listing number, or null for all of them
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(Set<String> fields) {
+        this.fields = fields != null ? Collections.unmodifiableSet(new LinkedHashSet<>(fields)) : null;
+    }
+
+    /**
+     * @return whether a listing in the given state and ZIP code satisfies the state and ZIP code filters
+     */
+    public boolean matchesLocation(String listingState, String listingZipCode) {
+        return (state == null || state.equals(listingState))
+                && (zipCodes == null || zipCodes.contains(listingZipCode));
+    }
+
+    /**
+     * Builds the criteria that match every listing with the given status.
+     */
+    public static ListingCriteria withStatus(String listingStatus) {
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setListingStatus(listingStatus);
+        return criteria;
+    }
+
+    /**
+     * Copies these criteria with the given status in place of this one's.
+     */
+    public ListingCriteria forStatus(String listingStatus) {
+        ListingCriteria criteria = withStatus(listingStatus);
+        criteria.setMinSquareFootage(minSquareFootage);
+        criteria.setMaxSquareFootage(maxSquareFootage);
+        criteria.setMinPrice(minPrice);
+        criteria.setMaxPrice(maxPrice);
+        criteria.setMinNumBedrooms(minNumBedrooms);
+        criteria.setMaxNumBedrooms(maxNumBedrooms);
+        criteria.setMinNumBathrooms(minNumBathrooms);
+        criteria.setMaxNumBathrooms(maxNumBathrooms);
+        criteria.setMinLotSize(minLotSize);
+        criteria.setMaxLotSize(maxLotSize);
+        criteria.state = state;
+        criteria.zipCodes = zipCodes;
+        criteria.fields = fields;
+        return criteria;
+    }
+
+    /**
+     * @return false if any range has its minimum above its maximum, which DynamoDB rejects in a BETWEEN condition
+     */
+    public boolean hasValidRanges() {
+        return isValidRange(minSquareFootage, maxSquareFootage)
+                && isValidRange(minPrice, maxPrice)
+                && isValidRange(minNumBedrooms, maxNumBedrooms)
+                && isValidRange(minNumBathrooms, maxNumBathrooms)
+                && isValidRange(minLotSize, maxLotSize);
+    }
+
+    private static <T extends Comparable<T>> boolean isValidRange(T min, T max) {
+        return min == null || max == null || min.compareTo(max) <= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ListingCriteria)) return false;
+        ListingCriteria that = (ListingCriteria) o;
+        return Objects.equals(minSquareFootage, that.minSquareFootage)
+                && Objects.equals(maxSquareFootage, that.maxSquareFootage)
+                && Objects.equals(minPrice, that.minPrice)
+                && Objects.equals(maxPrice, that.maxPrice)
+                && Objects.equals(minNumBedrooms, that.minNumBedrooms)
+                && Objects.equals(maxNumBedrooms, that.maxNumBedrooms)
+                && Objects.equals(minNumBathrooms, that.minNumBathrooms)
+                && Objects.equals(maxNumBathrooms, that.maxNumBathrooms)
+                && Objects.equals(minLotSize, that.minLotSize)
+                && Objects.equals(maxLotSize, that.maxLotSize)
+                && Objects.equals(listingStatus, that.listingStatus)
+                && Objects.equals(state, that.state)
+                && Objects.equals(zipCodes, that.zipCodes)
+                && Objects.equals(fields, that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minSquareFootage, maxSquareFootage, minPrice, maxPrice, minNumBedrooms, maxNumBedrooms,
+                minNumBathrooms, maxNumBathrooms, minLotSize, maxLotSize, listingStatus, state, zipCodes, fields);
+    }
+
+    @Override
+    public String toString() {
+        return "ListingCriteria{" +
+                "minSquareFootage=" + minSquareFootage +
+                ", maxSquareFootage=" + maxSquareFootage +
+                ", minPrice=" + minPrice +
+                ", maxPrice=" + maxPrice +
+                ", minNumBedrooms=" + minNumBedrooms +
+                ", maxNumBedrooms=" + maxNumBedrooms +
+                ", minNumBathrooms=" + minNumBathrooms +
+                ", maxNumBathrooms=" + maxNumBathrooms +
+                ", minLotSize=" + minLotSize +
+                ", maxLotSize=" + maxLotSize +
+                ", listingStatus='" + listingStatus + '\'' +
+                ", state='" + state + '\'' +
+                ", zipCodes=" + zipCodes +
+                ", fields=" + fields +
+                '}';
+    }
+}
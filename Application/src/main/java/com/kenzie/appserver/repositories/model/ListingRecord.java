@@ -2,12 +2,16 @@ package com.kenzie.appserver.repositories.model;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexRangeKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
 
 import java.util.Objects;
 
 @DynamoDBTable(tableName = "Listings")
 public class ListingRecord {
+    public static final String STATUS_PRICE_INDEX = "ListingStatusPriceIndex";
+
     private String listingNumber;
     private String address;
     private int squareFootage;
@@ -16,6 +20,11 @@ public class ListingRecord {
     private double numBathrooms;
     private String listingStatus;
     private double lotSize;
+    private String city;
+    private String state;
+    private String zipCode;
+    private String writtenBy;
+    private Long writeVersion;
 
     @DynamoDBHashKey(attributeName = "listingNumber")
     public String getListingNumber() {
@@ -32,7 +41,7 @@ public class ListingRecord {
         return squareFootage;
     }
 
-    @DynamoDBAttribute(attributeName = "price")
+    @DynamoDBIndexRangeKey(globalSecondaryIndexName = STATUS_PRICE_INDEX, attributeName = "price")
     public int getPrice() {
         return price;
     }
@@ -47,7 +56,7 @@ public class ListingRecord {
         return numBathrooms;
     }
 
-    @DynamoDBAttribute(attributeName = "listingStatus")
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = STATUS_PRICE_INDEX, attributeName = "listingStatus")
     public String getListingStatus() {
         return listingStatus;
     }
@@ -57,6 +66,37 @@ public class ListingRecord {
         return lotSize;
     }
 
+    @DynamoDBAttribute(attributeName = "city")
+    public String getCity() {
+        return city;
+    }
+
+    @DynamoDBAttribute(attributeName = "state")
+    public String getState() {
+        return state;
+    }
+
+    @DynamoDBAttribute(attributeName = "zipCode")
+    public String getZipCode() {
+        return zipCode;
+    }
+
+    /**
+     * @return the id of the instance that last saved the listing, or null if it was saved before writes were stamped
+     */
+    @DynamoDBAttribute(attributeName = "writtenBy")
+    public String getWrittenBy() {
+        return writtenBy;
+    }
+
+    /**
+     * @return the version the last writer's cache took for the save, ordered only among that writer's saves
+     */
+    @DynamoDBAttribute(attributeName = "writeVersion")
+    public Long getWriteVersion() {
+        return writeVersion;
+    }
+
     public void setListingNumber(String listingNumber) {
         this.listingNumber = listingNumber;
     }
@@ -89,6 +129,26 @@ public class ListingRecord {
         this.lotSize = lotSize;
     }
 
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public void setZipCode(String zipCode) {
+        this.zipCode = zipCode;
+    }
+
+    public void setWrittenBy(String writtenBy) {
+        this.writtenBy = writtenBy;
+    }
+
+    public void setWriteVersion(Long writeVersion) {
+        this.writeVersion = writeVersion;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,24 @@
+package com.kenzie.appserver.repositories.model;
+
+import java.util.List;
+
+/**
+ * One page of a DynamoDB query or scan, with the cursor that continues it.
+ */
+public class ListingRecordPage {
+    private final List<ListingRecord> records;
+    private final String nextCursor;
+
+    public ListingRecordPage(List<ListingRecord> records, String nextCursor) {
+        this.records = records;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ListingRecord> getRecords() {
+        return records;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,115 @@
+package com.kenzie.appserver.repositories.model;
+
+import java.util.Objects;
+
+/**
+ * The order to return search results in, parsed from a sort parameter such as {@code price} or
+ * {@code pricePerSquareFoot,desc}. Results are ascending unless the direction says otherwise.
+ */
+public class ListingSort {
+    public enum Field {
+        PRICE("price"),
+        SQUARE_FOOTAGE("squareFootage"),
+        LOT_SIZE("lotSize"),
+        PRICE_PER_SQUARE_FOOT("pricePerSquareFoot");
+
+        public final String parameter;
+
+        Field(String parameter) {
+            this.parameter = parameter;
+        }
+    }
+
+    private final Field field;
+    private final boolean descending;
+
+    public ListingSort(Field field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
+    /**
+     * @param sort the field name, optionally followed by ",asc" or ",desc"
+     * @throws IllegalArgumentException if the field or direction is not recognised
+     */
+    public static ListingSort parse(String sort) {
+        String[] parts = sort.split(",", -1);
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Invalid sort: " + sort);
+        }
+
+        boolean descending = false;
+        if (parts.length == 2) {
+            if (parts[1].trim().equalsIgnoreCase("desc")) {
+                descending = true;
+            } else if (!parts[1].trim().equalsIgnoreCase("asc")) {
+                throw new IllegalArgumentException("Invalid sort direction: " + parts[1]);
+            }
+        }
+
+        for (Field field : Field.values()) {
+            if (field.parameter.equalsIgnoreCase(parts[0].trim())) {
+                return new ListingSort(field, descending);
+            }
+        }
+        throw new IllegalArgumentException("Invalid sort field: " + parts[0]);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * The value a listing is ordered by. A listing without a square footage has no price per square foot and gets NaN.
+     */
+    public double sortKey(int squareFootage, int price, double lotSize) {
+        switch (field) {
+            case PRICE:
+                return price;
+            case SQUARE_FOOTAGE:
+                return squareFootage;
+            case LOT_SIZE:
+                return lotSize;
+            default:
+                return squareFootage > 0 ? (double) price / squareFootage : Double.NaN;
+        }
+    }
+
+    /**
+     * Compares two sort keys in this sort's direction. NaN keys come last in either direction.
+     */
+    public int compareKeys(double first, double second) {
+        boolean firstMissing = Double.isNaN(first);
+        boolean secondMissing = Double.isNaN(second);
+        if (firstMissing || secondMissing) {
+            return Boolean.compare(firstMissing, secondMissing);
+        }
+        return descending ? Double.compare(second, first) : Double.compare(first, second);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ListingSort that = (ListingSort) o;
+        return descending == that.descending && field == that.field;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(field, descending);
+    }
+
+    @Override
+    public String toString() {
+        return field.parameter + (descending ? ",desc" : ",asc");
+    }
+}
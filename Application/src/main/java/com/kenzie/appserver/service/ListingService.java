@@ -1,272 +1,554 @@
 package com.kenzie.appserver.service;
 
+import com.kenzie.appserver.config.CacheInvalidationBroadcaster;
 import com.kenzie.appserver.config.CacheStore;
+import com.kenzie.appserver.config.QueryResultCache;
+import com.kenzie.appserver.repositories.ListingCursor;
+import com.kenzie.appserver.repositories.ListingQueryBuilder;
+import com.kenzie.appserver.repositories.ListingQueryRepository;
 import com.kenzie.appserver.repositories.ListingRepository;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
 import com.kenzie.appserver.repositories.model.ListingRecord;
+import com.kenzie.appserver.repositories.model.ListingRecordPage;
+import com.kenzie.appserver.repositories.model.ListingSort;
+import com.kenzie.appserver.service.geo.ZipCodeCentroids;
+import com.kenzie.appserver.service.index.AddressQuery;
+import com.kenzie.appserver.service.index.ListingIndex;
+import com.kenzie.appserver.service.index.ListingNumberFilter;
 import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingFacets;
+import com.kenzie.appserver.service.model.ListingPage;
 import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.PostalAddress;
+import com.kenzie.appserver.service.model.RegionStatistics;
+import com.kenzie.appserver.service.stats.MarketStatistics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Service
 public class ListingService {
+    private static final int STREAM_CHUNK_SIZE = 256;
+    private static final int MAXIMUM_PEER_WRITES = 100000;
+    private static final Logger log = LoggerFactory.getLogger(ListingService.class);
+
     private ListingRepository listingRepository;
+    private ListingQueryRepository listingQueryRepository;
     private CacheStore cache;
+    private ListingIndex listingIndex;
+    private ZipCodeCentroids zipCodeCentroids;
+    private QueryResultCache queryResultCache;
+    private MarketStatistics marketStatistics;
+    private ListingNumberFilter listingNumberFilter;
+    private CacheInvalidationBroadcaster invalidationBroadcaster;
+    // The latest write of each listing another instance told this one about. A repeated or reordered message arrives
+    // within moments of the original, so a write is only remembered for a few minutes; one that is forgotten early
+    // only costs a repeated message another read of the listing
+    private final Cache<String, PeerWrite> peerWrites = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_PEER_WRITES)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
 
     @Autowired
-    public ListingService(ListingRepository listingRepository, CacheStore cache) {
+    public ListingService(ListingRepository listingRepository, ListingQueryRepository listingQueryRepository,
+                          CacheStore cache, ListingIndex listingIndex, ZipCodeCentroids zipCodeCentroids,
+                          QueryResultCache queryResultCache, MarketStatistics marketStatistics,
+                          ListingNumberFilter listingNumberFilter,
+                          CacheInvalidationBroadcaster invalidationBroadcaster) {
         this.listingRepository = listingRepository;
+        this.listingQueryRepository = listingQueryRepository;
         this.cache = cache;
+        this.cache.setLoader(this::readListing);
+        this.listingIndex = listingIndex;
+        this.zipCodeCentroids = zipCodeCentroids;
+        this.queryResultCache = queryResultCache;
+        this.marketStatistics = marketStatistics;
+        this.listingNumberFilter = listingNumberFilter;
+        this.invalidationBroadcaster = invalidationBroadcaster;
+        this.invalidationBroadcaster.subscribe(this::applyWriteElsewhere);
     }
 
-    public List<Listing> findAllListings() {
-        List<Listing> listings = new ArrayList<>();
+    /**
+     * Reloads the in-memory listing index, the market statistics and the listing number filter with one pass over
+     * the table, and caches the listings for sale it reads.
+     * Searches are answered from DynamoDB until the load completes.
+     */
+    public void rebuildIndex() {
+        rebuildIndex(null, listingsRead -> { });
+    }
 
-        Iterable<ListingRecord> listingIterator = listingRepository.findAll();
-        for(ListingRecord record : listingIterator){
-            listings.add(new Listing(record.getListingNumber(),
-                    record.getAddress(),
-                    record.getSquareFootage(),
-                    record.getPrice(),
-                    record.getNumBedrooms(),
-                    record.getNumBathrooms(),
-                    record.getLotSize(),
-                    record.getListingStatus()));
+    /**
+     * Rebuilds like {@link #rebuildIndex()}, reading the table within a read capacity budget.
+     * @param readCapacity permits of one read capacity unit each, or null to read as fast as DynamoDB allows
+     * @param progress receives the number of listings in each page as it is loaded, from several threads at once
+     */
+    public void rebuildIndex(RateLimiter readCapacity, IntConsumer progress) {
+        listingIndex.beginRebuild();
+        marketStatistics.beginRebuild();
+        listingNumberFilter.beginRebuild(listingQueryRepository.tableItemCount());
+        boolean completed = false;
+        try {
+            listingQueryRepository.scanAll(readCapacity, page -> {
+                // Converted once, since the index, the statistics and the cache each read every listing
+                List<Listing> listings = new ArrayList<>(Lists.transform(page, this::toListing));
+                listingIndex.load(listings);
+                marketStatistics.load(listings);
+                listingNumberFilter.load(Lists.transform(page, ListingRecord::getListingNumber));
+                for (Listing listing : listings) {
+                    if (ListingStatus.FOR_SALE.label.equals(listing.getListingStatus())) {
+                        cache.preload(listing.getListingNumber(), listing);
+                    }
+                }
+                progress.accept(page.size());
+            });
+            completed = true;
+        } finally {
+            listingIndex.endRebuild(completed);
+            marketStatistics.endRebuild(completed);
+            listingNumberFilter.endRebuild(completed);
         }
+    }
+
+    public List<Listing> findAllListings() {
+        return findAllListings(null);
+    }
+
+    /**
+     * @param fields the listing attributes to read besides the listing number, or null for all of them; the others
+     *               are left at their defaults
+     */
+    public List<Listing> findAllListings(Set<String> fields) {
+        List<Listing> listings = Collections.synchronizedList(new ArrayList<>());
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setFields(fields);
+
+        // The table is read as a parallel scan, pages from each segment are added as they arrive
+        listingQueryRepository.scanAll(criteria, page -> {
+            List<Listing> converted = new ArrayList<>(page.size());
+            for (ListingRecord record : page) {
+                converted.add(toListing(record));
+            }
+            listings.addAll(converted);
+        });
         return listings;
     }
 
     public List<Listing> findAllOpenListings() {
+        return findAllOpenListings(null);
+    }
+
+    /**
+     * @param fields the listing attributes to read besides the listing number, or null for all of them; the others
+     *               are left at their defaults
+     */
+    public List<Listing> findAllOpenListings(Set<String> fields) {
         List<Listing> openListings = new ArrayList<>();
 
-        Iterable<ListingRecord> listingIterator = listingRepository.findAll();
+        // Only the "For Sale" partition of the status/price index is read
+        Iterable<ListingRecord> listingIterator = listingQueryRepository.find(openListings(fields));
         for(ListingRecord record : listingIterator){
-            if (record.getListingStatus().equalsIgnoreCase("For sale")){
-                openListings.add(new Listing(record.getListingNumber(),
-                        record.getAddress(),
-                        record.getSquareFootage(),
-                        record.getPrice(),
-                        record.getNumBedrooms(),
-                        record.getNumBathrooms(),
-                        record.getLotSize(),
-                        record.getListingStatus()));
-            }
+            openListings.add(toListing(record));
         }
 
         return openListings;
     }
 
-    public Listing findByListingNumber(String listingNumber) {
-
-        // Attempts to pull the listing from the cache
-        // Immediately returns if cache is found
-        Listing cachedListing = cache.get(listingNumber);
-        if (cachedListing != null) {
-            return cachedListing;
-        }
-
-        //otherwise use repository
-        Optional<ListingRecord> optionalRecord = listingRepository.findById(listingNumber);
-
-        if (optionalRecord.isPresent()){
-
-            ListingRecord record = optionalRecord.get();
-            Listing returnedListing = new Listing(record.getListingNumber(),
-                    record.getAddress(),
-                    record.getSquareFootage(),
-                    record.getPrice(),
-                    record.getNumBedrooms(),
-                    record.getNumBathrooms(),
-                    record.getLotSize(),
-                    record.getListingStatus());
-
-            // add listing to cache before returning
-            cache.add(record.getListingNumber(), returnedListing);
+    public long countAllListings() {
+        return countListings(new ListingCriteria());
+    }
 
-            return returnedListing;
-        } else {
-            return null;
-        }
+    public long countAllOpenListings() {
+        return countListings(ListingCriteria.withStatus(ListingStatus.FOR_SALE.label));
     }
 
-    public List<Listing> findParameterizedListings(int squareFootage, int price, int numBedrooms, double numBathrooms, double lotSize) {
-        List<Listing> parameterizedListings = new ArrayList<>();
-        Iterable<ListingRecord> listingIterator = null;
+    public long countParameterizedListings(ListingCriteria search) {
+        return countListings(search.forStatus(ListingStatus.FOR_SALE.label));
+    }
 
-        //All the search parameter fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, price, numBedrooms, numBathrooms, lotSize);
-        }
+    /**
+     * Counts the matching listings without building any of them. The in-memory index answers from its bitmaps and
+     * ranges; until it has loaded, DynamoDB counts them with Select=COUNT.
+     */
+    private long countListings(ListingCriteria criteria) {
+        if (listingIndex.isLoaded()) {
+            return listingIndex.count(criteria);
+        }
+        if (criteria.getZipCodes() != null && criteria.getZipCodes().size() > ListingQueryBuilder.MAX_ZIP_CODES_IN_FILTER) {
+            // DynamoDB cannot filter on this many ZIP codes, so they are checked here as the listings are read
+            long[] count = new long[1];
+            listingQueryRepository.forEachPage(criteria, page -> {
+                for (ListingRecord record : page) {
+                    if (criteria.matchesLocation(record.getState(), record.getZipCode())) {
+                        count[0]++;
+                    }
+                }
+            });
+            return count[0];
+        }
+        return listingQueryRepository.count(criteria);
+    }
 
-        //Only the squareFootage, price, numBedrooms and numBathrooms fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(squareFootage, price, numBedrooms, numBathrooms);
+    public Listing findByListingNumber(String listingNumber) {
+        // Served from the cache, which reads the listing from the repository on a miss or once it is due a refresh,
+        // and remembers a number with no listing for a short while so repeated lookups of it skip the table
+        Listing listing = cache.load(listingNumber);
+        if (listing != null && !listingNumberFilter.mightContain(listingNumber)) {
+            // Created by another instance whose broadcast never reached this one
+            listingNumberFilter.put(listingNumber);
         }
+        return listing;
+    }
 
-        //Only the squareFootage, price, numBedrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, price, numBedrooms, lotSize);
+    private Listing readListing(String listingNumber) {
+        if (peerWrites.getIfPresent(listingNumber) != null) {
+            // Written elsewhere moments ago, so an eventually consistent read could still return the copy before it
+            ListingRecord record = listingQueryRepository.findConsistently(listingNumber);
+            return record != null ? toListing(record) : null;
         }
+        return listingRepository.findById(listingNumber).map(this::toListing).orElse(null);
+    }
 
-        //Only the squareFootage, price, numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, price, numBathrooms, lotSize);
-        }
+    public List<Listing> findParameterizedListings(int squareFootage, int price, int numBedrooms, double numBathrooms, double lotSize) {
+        return findParameterizedListings(ListingCriteria.fromQueryParameters(squareFootage, price, numBedrooms,
+                numBathrooms, lotSize, null));
+    }
 
-        //Only the squareFootage, numBedrooms, numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, numBedrooms, numBathrooms, lotSize);
-        }
+    /**
+     * Finds the listings for sale that satisfy every bound in the search. Results read from the in-memory index are
+     * cached by criteria until a write changes a listing they could include; results read from DynamoDB before the
+     * index is loaded come from an eventually consistent index, so they are only cached for a few seconds.
+     * @param search the bounds to apply, its status is ignored
+     * @return the matching listings, which must not be changed
+     */
+    public List<Listing> findParameterizedListings(ListingCriteria search) {
+        ListingCriteria criteria = search.forStatus(ListingStatus.FOR_SALE.label);
+        if (listingIndex.isLoaded()) {
+            return queryResultCache.get(criteria, () -> listingIndex.find(criteria));
+        }
+        return queryResultCache.getEventuallyConsistent(criteria, () -> findInTable(criteria));
+    }
 
-        //Only the squareFootage, price and numBedrooms fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqual(squareFootage, price, numBedrooms);
+    private List<Listing> findInTable(ListingCriteria criteria) {
+        // Send the whole criteria to DynamoDB as a single query of the "For Sale" partition
+        List<Listing> parameterizedListings = new ArrayList<>();
+        Iterable<ListingRecord> listingIterator = listingQueryRepository.find(criteria);
+        for(ListingRecord listingRecord : listingIterator){
+            parameterizedListings.add(toListing(listingRecord));
         }
 
-        //Only the squareFootage, price and numBathrooms fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBathroomsGreaterThanEqual(squareFootage, price, numBathrooms);
-        }
+        return parameterizedListings;
+    }
 
-        //Only the squareFootage, price and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndLotSizeGreaterThanEqual(squareFootage, price, lotSize);
-        }
+    public ListingPage findAllListings(int limit, String cursor) {
+        return findAllListings(null, limit, cursor);
+    }
 
-        //Only the squareFootage, numBedrooms and numBathrooms fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(squareFootage, numBedrooms, numBathrooms);
-        }
+    public ListingPage findAllListings(Set<String> fields, int limit, String cursor) {
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setFields(fields);
+        return findPage(criteria, limit, cursor);
+    }
 
-        //Only the squareFootage, numBedrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, numBedrooms, lotSize);
-        }
+    public ListingPage findAllOpenListings(int limit, String cursor) {
+        return findAllOpenListings(null, limit, cursor);
+    }
 
-        //Only the squareFootage, numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, numBathrooms, lotSize);
-        }
+    public ListingPage findAllOpenListings(Set<String> fields, int limit, String cursor) {
+        return findPage(openListings(fields), limit, cursor);
+    }
 
-        //Only the squareFootage and price fields were entered with valid data by the user
-        if (squareFootage != 0 && price != 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndPriceLessThan(squareFootage, price);
-        }
+    public ListingPage findParameterizedListings(int squareFootage, int price, int numBedrooms, double numBathrooms,
+                                                 double lotSize, int limit, String cursor) {
+        return findParameterizedListings(ListingCriteria.fromQueryParameters(squareFootage, price, numBedrooms,
+                numBathrooms, lotSize, null), limit, cursor);
+    }
 
-        //Only the squareFootage and numBedrooms fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqual(squareFootage, numBedrooms);
-        }
+    public ListingPage findParameterizedListings(ListingCriteria search, int limit, String cursor) {
+        return findPage(search.forStatus(ListingStatus.FOR_SALE.label), limit, cursor);
+    }
 
-        //Only the squareFootage and numBathrooms fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndNumBathroomsGreaterThanEqual(squareFootage, numBathrooms);
-        }
+    /**
+     * Finds the first listings for the search in the given order without sorting, or holding, every match. The
+     * in-memory index walks its sorted range index for the field and stops at the limit, or keeps the best matches in
+     * a bounded heap. Without it, a price order is read straight from the
+     * status/price index and the read stops once enough listings have arrived; other orders keep the best matches
+     * in a bounded heap while the "For Sale" partition is paged through.
+     * @param search the bounds to apply, its status is ignored
+     * @param sort the order to return the listings in
+     * @param limit the largest number of listings to return
+     */
+    public List<Listing> findParameterizedListings(ListingCriteria search, ListingSort sort, int limit) {
+        ListingCriteria criteria = search.forStatus(ListingStatus.FOR_SALE.label);
+
+        if (listingIndex.isLoaded()) {
+            return listingIndex.findTop(criteria, sort, limit);
+        }
+
+        if (sort.getField() == ListingSort.Field.PRICE) {
+            List<Listing> top = new ArrayList<>(limit);
+            for (ListingRecord record : listingQueryRepository.findInPriceOrder(criteria, sort.isDescending(), limit)) {
+                top.add(toListing(record));
+                if (top.size() == limit) {
+                    break;
+                }
+            }
+            return top;
+        }
+
+        if (criteria.getFields() != null) {
+            // Every order other than price is computed here from the attributes its key is made of
+            Set<String> fields = new LinkedHashSet<>(criteria.getFields());
+            fields.addAll(Arrays.asList("squareFootage", "price", "lotSize"));
+            criteria.setFields(fields);
+        }
+        Comparator<Listing> bySortKey = (first, second) -> sort.compareKeys(sortKey(first, sort), sortKey(second, sort));
+        Comparator<Listing> inSortOrder = bySortKey.thenComparing(Listing::getListingNumber);
+        PriorityQueue<Listing> top = new PriorityQueue<>(limit + 1, inSortOrder.reversed());
+        listingQueryRepository.forEachPage(criteria, page -> {
+            for (ListingRecord record : page) {
+                top.add(toListing(record));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        });
 
-        //Only the squareFootage and lotSize fields were entered with valid data by the user
-        if (squareFootage != 0 && price == 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqualAndLotSizeGreaterThanEqual(squareFootage, lotSize);
+        List<Listing> listings = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            listings.add(top.poll());
         }
+        Collections.reverse(listings);
+        return listings;
+    }
 
-        //Only the squareFootage field has valid data
-        if (squareFootage != 0 && price == 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findBySquareFootageGreaterThanEqual(squareFootage);
+    /**
+     * Finds the listings for sale within the radius of a ZIP code's centre, nearest first. The grid of ZIP code
+     * centres picks out the ZIP codes in the radius, which are then searched for like any other bound. Only the
+     * nearest listings are kept while the matches are read, in a heap bounded by the limit.
+     * @param search the bounds to apply, its status and ZIP codes are ignored
+     * @param zipCode the ZIP code at the centre of the search
+     * @param miles the radius of the search
+     * @param limit the largest number of listings to return
+     * @return up to limit listings, ordered by the distance to their ZIP code's centre and then by listing number
+     * @throws IllegalArgumentException if the ZIP code is not in the ZIP code table
+     */
+    public List<Listing> findNearbyListings(ListingCriteria search, String zipCode, double miles, int limit) {
+        Map<String, Double> distances = zipCodeCentroids.within(zipCode, miles);
+        if (distances == null) {
+            throw new IllegalArgumentException("The ZIP code " + zipCode + " is not in the ZIP code table");
+        }
+        ListingCriteria criteria = search.forStatus(ListingStatus.FOR_SALE.label);
+        criteria.setZipCodes(distances.keySet());
+
+        Comparator<NearbyListing> nearestFirst = Comparator.<NearbyListing>comparingDouble(nearby -> nearby.distance)
+                .thenComparing(nearby -> nearby.listing.getListingNumber());
+        PriorityQueue<NearbyListing> nearest = new PriorityQueue<>(limit + 1, nearestFirst.reversed());
+        Consumer<NearbyListing> keepNearest = nearby -> {
+            nearest.add(nearby);
+            if (nearest.size() > limit) {
+                nearest.poll();
+            }
+        };
+
+        if (listingIndex.isLoaded()) {
+            listingIndex.forEachChunk(criteria, STREAM_CHUNK_SIZE, chunk -> {
+                for (Listing listing : chunk) {
+                    String listingZipCode = PostalAddress.parse(listing.getAddress()).getZipCode();
+                    keepNearest.accept(new NearbyListing(listing, distances.get(listingZipCode)));
+                }
+            });
+        } else {
+            // Too many ZIP codes to send as one IN condition are left for this check instead
+            listingQueryRepository.forEachPage(criteria, page -> {
+                for (ListingRecord record : page) {
+                    if (criteria.matchesLocation(record.getState(), record.getZipCode())) {
+                        keepNearest.accept(new NearbyListing(toListing(record), distances.get(record.getZipCode())));
+                    }
+                }
+            });
         }
 
-        //Only the price field has valid data
-        if (squareFootage == 0 && price != 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByPriceLessThan(price);
+        List<Listing> listings = new ArrayList<>(nearest.size());
+        while (!nearest.isEmpty()) {
+            listings.add(nearest.poll().listing);
         }
+        Collections.reverse(listings);
+        return listings;
+    }
 
-        //Only the price and numBedrooms fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqual(price, numBedrooms);
-        }
+    /**
+     * Counts the listings for sale that match the search in each bucket of price, square footage, bedrooms,
+     * bathrooms and lot size, for the facets of a search page. The counts come only from the in-memory index's
+     * bitmaps, so a request never reads DynamoDB.
+     * @param search the bounds to apply, its status is ignored
+     * @return the total number of matches and the counts per bucket
+     * @throws IllegalStateException if the index has not finished loading
+     */
+    public ListingFacets findFacets(ListingCriteria search) {
+        if (!listingIndex.isLoaded()) {
+            throw new IllegalStateException("The listing index has not finished loading");
+        }
+        return listingIndex.facets(search.forStatus(ListingStatus.FOR_SALE.label));
+    }
 
-        //Only the price and numBathrooms fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndNumBathroomsGreaterThanEqual(price, numBathrooms);
-        }
+    /**
+     * Looks up the running market statistics of the listings for sale in a state or a ZIP code.
+     * @param state the state, or null to look up the ZIP code
+     * @param zipCode the five digit ZIP code, used when no state is given
+     * @return the region's statistics, or null if it has no listings for sale
+     * @throws IllegalStateException if the statistics have not finished loading
+     */
+    public RegionStatistics findStatistics(String state, String zipCode) {
+        requireStatisticsLoaded();
+        return state != null ? marketStatistics.forState(state) : marketStatistics.forZipCode(zipCode);
+    }
 
-        //Only the price and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndLotSizeGreaterThanEqual(price, lotSize);
-        }
+    /**
+     * @return the running market statistics of every state with listings for sale, in state order
+     * @throws IllegalStateException if the statistics have not finished loading
+     */
+    public List<RegionStatistics> findStatisticsByState() {
+        requireStatisticsLoaded();
+        return marketStatistics.forEveryState();
+    }
 
-        //Only the price, numBedrooms and numBathrooms fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(price, numBedrooms, numBathrooms);
+    private void requireStatisticsLoaded() {
+        if (!marketStatistics.isLoaded()) {
+            throw new IllegalStateException("The market statistics have not finished loading");
         }
+    }
 
-        //Only the price, numBedrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(price, numBedrooms, lotSize);
+    /**
+     * Finds the listings, of any status, whose address best matches a free text query such as "maple ave". The
+     * in-memory index answers from its trigram index of the addresses; until it has loaded, every listing is read
+     * and scored the same way.
+     * @param query the text to look for, in any case
+     * @param limit the largest number of listings to return
+     * @return up to limit listings, best match first
+     * @throws IllegalArgumentException if the query has no letters or digits to search for
+     */
+    public List<Listing> searchListings(String query, int limit) {
+        AddressQuery addressQuery = new AddressQuery(query);
+        if (addressQuery.isEmpty()) {
+            throw new IllegalArgumentException("The search needs at least one letter or digit");
+        }
+
+        List<AddressQuery.Match> matches;
+        if (listingIndex.isLoaded()) {
+            matches = listingIndex.search(addressQuery, limit);
+        } else {
+            PriorityQueue<AddressQuery.Match> best = new PriorityQueue<>(limit + 1, AddressQuery.BEST_FIRST.reversed());
+            listingQueryRepository.scanAll(page -> {
+                for (ListingRecord record : page) {
+                    double score = addressQuery.score(record.getAddress());
+                    if (score > 0) {
+                        // Segments are scanned concurrently
+                        synchronized (best) {
+                            best.add(new AddressQuery.Match(toListing(record), score));
+                            if (best.size() > limit) {
+                                best.poll();
+                            }
+                        }
+                    }
+                }
+            });
+            matches = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                matches.add(best.poll());
+            }
+            Collections.reverse(matches);
         }
 
-        //Only the price, numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(price, numBathrooms, lotSize);
+        List<Listing> listings = new ArrayList<>(matches.size());
+        for (AddressQuery.Match match : matches) {
+            listings.add(match.getListing());
         }
+        return listings;
+    }
 
-        //Only the price, numBedrooms, numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price != 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(price, numBedrooms, numBathrooms, lotSize);
+    /**
+     * Reads a single page of the listings that match the criteria, so the memory used by one call is bounded by the
+     * limit however large the table is. A page is continued by the source that produced it: the in-memory index when
+     * it is loaded, otherwise DynamoDB.
+     * @throws IllegalArgumentException if the cursor is invalid, or came from the index and the index is reloading
+     */
+    private ListingPage findPage(ListingCriteria criteria, int limit, String cursor) {
+        boolean indexCursor = cursor != null && ListingCursor.isIndexCursor(cursor);
+
+        if (listingIndex.isLoaded() && (cursor == null || indexCursor)) {
+            String afterListingNumber = indexCursor ? ListingCursor.toListingNumber(cursor) : null;
+            List<Listing> listings = listingIndex.findPage(criteria, limit, afterListingNumber);
+            if (listings.size() <= limit) {
+                return new ListingPage(listings, null);
+            }
+            List<Listing> page = listings.subList(0, limit);
+            return new ListingPage(page, ListingCursor.afterListingNumber(page.get(limit - 1).getListingNumber()));
         }
 
-        //Only the numBedrooms field has valid data
-        if (squareFootage == 0 && price == 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByNumBedroomsGreaterThanEqual(numBedrooms);
+        if (indexCursor) {
+            throw new IllegalArgumentException("The cursor has expired, start again from the first page");
         }
 
-        //Only the numBedrooms and numBathrooms fields were entered with valid data by the user
-        if (squareFootage == 0 && price == 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(numBedrooms, numBathrooms);
+        ListingRecordPage recordPage = listingQueryRepository.findPage(criteria, limit, cursor);
+        List<Listing> listings = new ArrayList<>();
+        for (ListingRecord record : recordPage.getRecords()) {
+            listings.add(toListing(record));
         }
+        return new ListingPage(listings, recordPage.getNextCursor());
+    }
 
-        //Only the numBedrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price == 0 && numBedrooms != 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(numBedrooms, lotSize);
-        }
+    public void streamAllListings(Consumer<List<Listing>> pageConsumer) {
+        streamAllListings(null, pageConsumer);
+    }
 
-        //Only the numBedrooms, numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price == 0 && numBedrooms != 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(numBedrooms, numBathrooms, lotSize);
-        }
+    public void streamAllListings(Set<String> fields, Consumer<List<Listing>> pageConsumer) {
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setFields(fields);
+        streamListings(criteria, pageConsumer);
+    }
 
-        //Only the numBathrooms field has valid data
-        if (squareFootage == 0 && price == 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize == 0.0) {
-            listingIterator = listingRepository.findByNumBathroomsGreaterThanEqual(numBathrooms);
-        }
+    public void streamAllOpenListings(Consumer<List<Listing>> pageConsumer) {
+        streamAllOpenListings(null, pageConsumer);
+    }
 
-        //Only the numBathrooms and lotSize fields were entered with valid data by the user
-        if (squareFootage == 0 && price == 0 && numBedrooms == 0 && numBathrooms != 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(numBathrooms, lotSize);
-        }
+    public void streamAllOpenListings(Set<String> fields, Consumer<List<Listing>> pageConsumer) {
+        streamListings(openListings(fields), pageConsumer);
+    }
 
-        //Only the lotSize field has valid data
-        if (squareFootage == 0 && price == 0 && numBedrooms == 0 && numBathrooms == 0.0 && lotSize != 0.0) {
-            listingIterator = listingRepository.findByLotSizeGreaterThanEqual(lotSize);
-        }
+    public void streamParameterizedListings(ListingCriteria search, Consumer<List<Listing>> pageConsumer) {
+        streamListings(search.forStatus(ListingStatus.FOR_SALE.label), pageConsumer);
+    }
 
-        assert listingIterator != null;
-        for(ListingRecord listingRecord : listingIterator){
-            if(listingRecord.getListingStatus().equalsIgnoreCase(ListingStatus.FOR_SALE.label)) {
-                parameterizedListings.add(new Listing(listingRecord.getListingNumber(),
-                        listingRecord.getAddress(),
-                        listingRecord.getSquareFootage(),
-                        listingRecord.getPrice(),
-                        listingRecord.getNumBedrooms(),
-                        listingRecord.getNumBathrooms(),
-                        listingRecord.getLotSize(),
-                        listingRecord.getListingStatus()));
-            }
+    /**
+     * Hands the listings that match the criteria over a page at a time, on the calling thread, without collecting
+     * the whole result first. Only the page being handed over is held in memory.
+     */
+    private void streamListings(ListingCriteria criteria, Consumer<List<Listing>> pageConsumer) {
+        if (listingIndex.isLoaded()) {
+            listingIndex.forEachChunk(criteria, STREAM_CHUNK_SIZE, pageConsumer);
+            return;
         }
 
-        return parameterizedListings;
+        listingQueryRepository.forEachPage(criteria, page -> pageConsumer.accept(Lists.transform(page, this::toListing)));
     }
 
     public Listing createNewListing(Listing listing) {
@@ -293,9 +575,21 @@ public class ListingService {
         record.setNumBedrooms(listing.getNumBedrooms());
         record.setNumBathrooms(listing.getNumBathrooms());
         record.setLotSize(listing.getLotSize());
-        record.setListingStatus(listing.getListingStatus());
+        record.setListingStatus(canonicalStatus(listing.getListingStatus()));
+        setLocation(record, listing.getAddress());
 
+        // Added before the save, so a lookup never misses a listing that is already in the table
+        listingNumberFilter.put(listing.getListingNumber());
+        long version = cache.nextVersion();
+        stampWrite(record, version);
         listingRepository.save(record);
+        // The saved listing, with its status in canonical form, so the index and the cache agree with the table
+        Listing created = toListing(record);
+        cache.write(listing.getListingNumber(), created, version);
+        listingIndex.put(created);
+        marketStatistics.put(created);
+        queryResultCache.invalidate(null, created);
+        invalidationBroadcaster.publish(listing.getListingNumber(), version);
 
         return listing;
     }
@@ -311,11 +605,19 @@ public class ListingService {
             listingRecord.setPrice(listing.getPrice());
             listingRecord.setNumBedrooms(listing.getNumBedrooms());
             listingRecord.setNumBathrooms(listing.getNumBathrooms());
-            listingRecord.setListingStatus(updatedListingStatus);
+            listingRecord.setListingStatus(canonicalStatus(updatedListingStatus));
             listingRecord.setLotSize(listing.getLotSize());
+            setLocation(listingRecord, listing.getAddress());
 
+            long version = cache.nextVersion();
+            stampWrite(listingRecord, version);
             listingRepository.save(listingRecord);
-            cache.evict(listingNumber);
+            Listing updatedListing = toListing(listingRecord);
+            listingIndex.put(updatedListing);
+            marketStatistics.put(updatedListing);
+            cache.write(listingNumber, updatedListing, version);
+            queryResultCache.invalidate(listing, updatedListing);
+            invalidationBroadcaster.publish(listingNumber, version);
         }
     }
     public void updatePrice(String listingNumber, int updatedPrice) {
@@ -331,15 +633,151 @@ public class ListingService {
             listingRecord.setNumBathrooms(listing.getNumBathrooms());
             listingRecord.setListingStatus(listing.getListingStatus());
             listingRecord.setLotSize(listing.getLotSize());
+            setLocation(listingRecord, listing.getAddress());
 
+            long version = cache.nextVersion();
+            stampWrite(listingRecord, version);
             listingRepository.save(listingRecord);
-            cache.evict(listingNumber);
+            Listing updatedListing = toListing(listingRecord);
+            listingIndex.put(updatedListing);
+            marketStatistics.put(updatedListing);
+            cache.write(listingNumber, updatedListing, version);
+            queryResultCache.invalidate(listing, updatedListing);
+            invalidationBroadcaster.publish(listingNumber, version);
         }
     }
 
     public void deleteListing(String listingNumber){
+        // Read first so only the cached searches that could include the listing are dropped
+        Listing listing = findByListingNumber(listingNumber);
         listingRepository.deleteById(listingNumber);
+        listingIndex.remove(listingNumber);
+        marketStatistics.remove(listingNumber);
+        cache.evict(listingNumber);
+        if (listing != null) {
+            queryResultCache.invalidate(listing, null);
+        }
+        invalidationBroadcaster.publish(listingNumber, cache.nextVersion());
+    }
+
+    /**
+     * Catches up with a write another instance made: the listing is dropped from the cache and read back from the
+     * table with a strongly consistent read into the cache, the index and the market statistics, or removed from them
+     * if it was deleted, and the cached searches it matched before or after the write are dropped. The listing number
+     * is added to the filter in case the listing was created elsewhere. A message no later than one already applied
+     * from the same sender for the listing, such as a datagram delivered twice or out of order, is ignored, and so is
+     * a copy the sender saved before the write the message is about; the listing is then left out of the cache to be
+     * read again, consistently, on its next lookup.
+     */
+    private void applyWriteElsewhere(UUID sender, String listingNumber, long version) {
+        PeerWrite write = new PeerWrite(sender, version);
+        if (peerWrites.asMap().merge(listingNumber, write, PeerWrite::later) != write) {
+            log.debug("Ignored a stale write of listing {} by {} at version {}", listingNumber, sender, version);
+            return;
+        }
+        listingNumberFilter.put(listingNumber);
         cache.evict(listingNumber);
+        long cacheVersion = cache.nextVersion();
+        ListingRecord record = listingQueryRepository.findConsistently(listingNumber);
+        if (record != null && write.isAfter(record)) {
+            log.debug("Read a copy of listing {} older than the write by {} at version {}", listingNumber, sender,
+                    version);
+            return;
+        }
+        Listing before = listingIndex.get(listingNumber);
+        Listing after = record != null ? toListing(record) : null;
+        if (after != null) {
+            cache.write(listingNumber, after, cacheVersion);
+            listingIndex.put(after);
+            marketStatistics.put(after);
+        } else {
+            listingIndex.remove(listingNumber);
+            marketStatistics.remove(listingNumber);
+        }
+        if (before == null && !listingIndex.isLoaded()) {
+            // Without the index there is no earlier copy to match the cached searches against
+            queryResultCache.invalidateAll();
+        } else {
+            queryResultCache.invalidate(before, after);
+        }
+    }
+
+    // Saved with the listing, so a peer reading it back can tell a copy from before the write it was told about
+    private void stampWrite(ListingRecord record, long version) {
+        record.setWrittenBy(invalidationBroadcaster.instanceId().toString());
+        record.setWriteVersion(version);
+    }
+
+    // The status is the hash key of the status/price index, so it is stored with the enum's exact label
+    private String canonicalStatus(String listingStatus) {
+        ListingStatus status = ListingStatus.fromLabel(listingStatus);
+        return status != null ? status.label : listingStatus;
+    }
+
+    // The parts of the address are stored as attributes of their own so searches can filter on them in DynamoDB
+    private void setLocation(ListingRecord record, String address) {
+        PostalAddress postalAddress = PostalAddress.parse(address);
+        if (postalAddress != null) {
+            record.setCity(postalAddress.getCity());
+            record.setState(postalAddress.getState());
+            record.setZipCode(postalAddress.getZipCode());
+        }
+    }
+
+    private static ListingCriteria openListings(Set<String> fields) {
+        ListingCriteria criteria = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        criteria.setFields(fields);
+        return criteria;
     }
 
+    private double sortKey(Listing listing, ListingSort sort) {
+        return sort.sortKey(listing.getSquareFootage(), listing.getPrice(), listing.getLotSize());
+    }
+
+    private Listing toListing(ListingRecord record) {
+        return new Listing(record.getListingNumber(),
+                record.getAddress(),
+                record.getSquareFootage(),
+                record.getPrice(),
+                record.getNumBedrooms(),
+                record.getNumBathrooms(),
+                record.getLotSize(),
+                record.getListingStatus());
+    }
+
+    private static class NearbyListing {
+        private final Listing listing;
+        private final double distance;
+
+        NearbyListing(Listing listing, double distance) {
+            this.listing = listing;
+            this.distance = distance;
+        }
+    }
+
+    private static class PeerWrite {
+        private final UUID sender;
+        private final long version;
+
+        PeerWrite(UUID sender, long version) {
+            this.sender = sender;
+            this.version = version;
+        }
+
+        /**
+         * @return the write to keep; versions can only be compared between writes of the same sender, so a write by
+         * another sender always replaces this one
+         */
+        static PeerWrite later(PeerWrite applied, PeerWrite received) {
+            return applied.sender.equals(received.sender) && applied.version >= received.version ? applied : received;
+        }
+
+        /**
+         * @return whether the record was saved by this write's sender before this write, so it predates the write
+         */
+        boolean isAfter(ListingRecord record) {
+            return sender.toString().equals(record.getWrittenBy()) && record.getWriteVersion() != null
+                    && record.getWriteVersion() < version;
+        }
+    }
 }
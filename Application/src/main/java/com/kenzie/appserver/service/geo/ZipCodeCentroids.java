@@ -0,0 +1,174 @@
+package com.kenzie.appserver.service.geo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The centre point of every known ZIP code, read once at start-up from a tab separated file laid out like the Census
+ * Bureau's ZCTA gazetteer file: a header row naming at least the GEOID, INTPTLAT and INTPTLONG columns, then one row
+ * per ZIP code. The file is listing.geo.zipCentroids, by default the small table bundled on the classpath; point it
+ * at the full gazetteer file to cover every ZIP code.
+ *
+ * The centres are bucketed into a grid of {@link #CELL_DEGREES} degree cells, so a radius search only reads the cells
+ * that overlap the circle's bounding box and measures the distance to the ZIP codes in those cells alone.
+ */
+@Component
+public class ZipCodeCentroids {
+    static final double CELL_DEGREES = 0.5;
+    private static final double EARTH_RADIUS_MILES = 3958.8;
+    private static final double MILES_PER_DEGREE_LATITUDE = 69.0;
+
+    private final Map<String, Centroid> centroidsByZipCode = new HashMap<>();
+    private final Map<Long, List<Centroid>> centroidsByCell = new HashMap<>();
+
+    @Autowired
+    public ZipCodeCentroids(ResourceLoader resourceLoader,
+                            @Value("${listing.geo.zipCentroids:classpath:geo/zip-centroids.txt}") String location) {
+        Resource resource = resourceLoader.getResource(location);
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the ZIP code centroids from " + location, e);
+        }
+    }
+
+    public ZipCodeCentroids(Reader reader) throws IOException {
+        load(reader);
+    }
+
+    public boolean contains(String zipCode) {
+        return centroidsByZipCode.containsKey(zipCode);
+    }
+
+    public int size() {
+        return centroidsByZipCode.size();
+    }
+
+    /**
+     * @return every ZIP code in the table, in no particular order
+     */
+    public Set<String> zipCodes() {
+        return Collections.unmodifiableSet(centroidsByZipCode.keySet());
+    }
+
+    /**
+     * Finds the ZIP codes whose centre lies within the radius of a ZIP code's centre.
+     * @param zipCode the five digit ZIP code at the centre of the search
+     * @param miles the radius of the search
+     * @return the distance in miles from the centre to each ZIP code in the radius, including the centre itself,
+     * or null if the ZIP code is not in the table
+     */
+    public Map<String, Double> within(String zipCode, double miles) {
+        Centroid center = centroidsByZipCode.get(zipCode);
+        if (center == null) {
+            return null;
+        }
+
+        // A degree of longitude is shortest at the edge of the circle furthest from the equator
+        double latitudeSpan = miles / MILES_PER_DEGREE_LATITUDE;
+        double cosine = Math.cos(Math.toRadians(Math.min(90, Math.abs(center.latitude) + latitudeSpan)));
+        double longitudeSpan = cosine > 0.01 ? Math.min(180, latitudeSpan / cosine) : 180;
+
+        Map<String, Double> distances = new HashMap<>();
+        int fromRow = cell(center.latitude - latitudeSpan);
+        int toRow = cell(center.latitude + latitudeSpan);
+        int fromColumn = cell(center.longitude - longitudeSpan);
+        int toColumn = cell(center.longitude + longitudeSpan);
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                List<Centroid> centroids = centroidsByCell.get(cellKey(row, column));
+                if (centroids == null) {
+                    continue;
+                }
+                for (Centroid centroid : centroids) {
+                    double distance = distanceInMiles(center, centroid);
+                    if (distance <= miles) {
+                        distances.put(centroid.zipCode, distance);
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    private void load(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String header = lines.readLine();
+        if (header == null) {
+            return;
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : header.split("\t")) {
+            columns.add(column.trim());
+        }
+        int zipCodeColumn = columns.indexOf("GEOID");
+        int latitudeColumn = columns.indexOf("INTPTLAT");
+        int longitudeColumn = columns.indexOf("INTPTLONG");
+        if (zipCodeColumn < 0 || latitudeColumn < 0 || longitudeColumn < 0) {
+            throw new IllegalArgumentException("The ZIP code centroid header must name the GEOID, INTPTLAT and "
+                    + "INTPTLONG columns, but was " + columns);
+        }
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            Centroid centroid = new Centroid(fields[zipCodeColumn].trim(),
+                    Double.parseDouble(fields[latitudeColumn].trim()),
+                    Double.parseDouble(fields[longitudeColumn].trim()));
+            centroidsByZipCode.put(centroid.zipCode, centroid);
+            centroidsByCell.computeIfAbsent(cellKey(cell(centroid.latitude), cell(centroid.longitude)),
+                    key -> new ArrayList<>()).add(centroid);
+        }
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The great-circle distance by the haversine formula.
+     */
+    private static double distanceInMiles(Centroid from, Centroid to) {
+        double latitudeDelta = Math.toRadians(to.latitude - from.latitude);
+        double longitudeDelta = Math.toRadians(to.longitude - from.longitude);
+        double a = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+                + Math.cos(Math.toRadians(from.latitude)) * Math.cos(Math.toRadians(to.latitude))
+                * Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static class Centroid {
+        private final String zipCode;
+        private final double latitude;
+        private final double longitude;
+
+        Centroid(String zipCode, double latitude, double longitude) {
+            this.zipCode = zipCode;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.kenzie.appserver.service.index;
+
+import com.kenzie.appserver.service.model.Listing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A free text address search, such as "maple ave". An address matches when it contains at least
+ * {@link #MINIMUM_MATCH} of the query's trigrams, which tolerates a typo or an abbreviation, and is scored by the
+ * share of the trigrams it contains plus one if it contains the query as typed. Ties go to the shorter address.
+ */
+public class AddressQuery {
+    static final double MINIMUM_MATCH = 0.6;
+
+    /**
+     * Best match first: highest score, then shortest address, then listing number.
+     */
+    public static final Comparator<Match> BEST_FIRST = Comparator.<Match>comparingDouble(match -> -match.score)
+            .thenComparingInt(match -> match.listing.getAddress().length())
+            .thenComparing(match -> match.listing.getListingNumber());
+
+    private final String normalized;
+    private final int[] trigrams;
+
+    public AddressQuery(String query) {
+        this.normalized = Trigrams.normalize(query);
+        this.trigrams = Trigrams.of(normalized, false);
+    }
+
+    /**
+     * @return whether the query is too short to search with, having no trigram at all
+     */
+    public boolean isEmpty() {
+        return trigrams.length == 0;
+    }
+
+    /**
+     * Scores an address whose trigrams have not been indexed.
+     * @return the address's score, or 0 if it does not match
+     */
+    public double score(String address) {
+        int[] addressTrigrams = Trigrams.of(Trigrams.normalize(address), true);
+        int hits = 0;
+        for (int trigram : trigrams) {
+            if (Arrays.binarySearch(addressTrigrams, trigram) >= 0) {
+                hits++;
+            }
+        }
+        return hits >= minimumHits() ? score(hits, address) : 0;
+    }
+
+    int[] trigrams() {
+        return trigrams;
+    }
+
+    int minimumHits() {
+        return (int) Math.ceil(trigrams.length * MINIMUM_MATCH);
+    }
+
+    double score(int hits, String address) {
+        double score = (double) hits / trigrams.length;
+        return Trigrams.normalize(address).contains(normalized) ? score + 1 : score;
+    }
+
+    /**
+     * A listing that matched, with its score.
+     */
+    public static class Match {
+        private final Listing listing;
+        private final double score;
+
+        public Match(Listing listing, double score) {
+            this.listing = listing;
+            this.score = score;
+        }
+
+        public Listing getListing() {
+            return listing;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
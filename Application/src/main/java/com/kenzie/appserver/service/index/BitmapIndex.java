@@ -0,0 +1,133 @@
+package com.kenzie.appserver.service.index;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * One compressed bitmap of slots per distinct value of a {@link ListingIndex} column. Meant for columns with few
+ * distinct values, such as the number of bedrooms or the listing status, where a range of values is the OR of a
+ * handful of bitmaps and a combination of filters is their AND. The owning index updates it in place as listings
+ * change and guards it with its own lock.
+ * @param <K> the type of the column's values
+ */
+class BitmapIndex<K extends Comparable<K>> {
+    private final NavigableMap<K, RoaringBitmap> bitmapsByValue = new TreeMap<>();
+
+    void add(int slot, K value) {
+        bitmapsByValue.computeIfAbsent(value, key -> new RoaringBitmap()).add(slot);
+    }
+
+    void remove(int slot, K value) {
+        RoaringBitmap bitmap = bitmapsByValue.get(value);
+        if (bitmap != null) {
+            bitmap.remove(slot);
+            if (bitmap.isEmpty()) {
+                bitmapsByValue.remove(value);
+            }
+        }
+    }
+
+    /**
+     * @return the slots whose value lies between the inclusive bounds; a new bitmap the caller may change
+     */
+    RoaringBitmap range(K min, K max) {
+        if (min.compareTo(max) > 0) {
+            return new RoaringBitmap();
+        }
+        return FastAggregation.or(bitmapsByValue.subMap(min, true, max, true).values().iterator());
+    }
+
+    /**
+     * @return the number of slots whose value lies between the inclusive bounds, without building their bitmap
+     */
+    long rangeCardinality(K min, K max) {
+        if (min.compareTo(max) > 0) {
+            return 0;
+        }
+        long cardinality = 0;
+        for (RoaringBitmap bitmap : bitmapsByValue.subMap(min, true, max, true).values()) {
+            cardinality += bitmap.getLongCardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return the slots that have the value; a new bitmap the caller may change
+     */
+    RoaringBitmap equalTo(K value) {
+        RoaringBitmap bitmap = bitmapsByValue.get(value);
+        return bitmap != null ? bitmap.clone() : new RoaringBitmap();
+    }
+
+    /**
+     * @return the slots that have any of the values; a new bitmap the caller may change
+     */
+    RoaringBitmap anyOf(Set<K> values) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(values.size());
+        for (K value : values) {
+            RoaringBitmap bitmap = bitmapsByValue.get(value);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        return FastAggregation.or(bitmaps.iterator());
+    }
+
+    /**
+     * @return the number of slots that have any of the values, without building their bitmap
+     */
+    long anyOfCardinality(Set<K> values) {
+        long cardinality = 0;
+        for (K value : values) {
+            RoaringBitmap bitmap = bitmapsByValue.get(value);
+            if (bitmap != null) {
+                cardinality += bitmap.getLongCardinality();
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return the number of slots holding each value, in value order
+     */
+    NavigableMap<K, Long> counts() {
+        NavigableMap<K, Long> counts = new TreeMap<>();
+        for (Map.Entry<K, RoaringBitmap> entry : bitmapsByValue.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getLongCardinality());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of the given slots holding each value, in value order, including values none of them hold
+     */
+    NavigableMap<K, Long> countsWithin(RoaringBitmap slots) {
+        NavigableMap<K, Long> counts = new TreeMap<>();
+        for (Map.Entry<K, RoaringBitmap> entry : bitmapsByValue.entrySet()) {
+            counts.put(entry.getKey(), (long) RoaringBitmap.andCardinality(entry.getValue(), slots));
+        }
+        return counts;
+    }
+
+    /**
+     * @return every slot with a value; a new bitmap the caller may change
+     */
+    RoaringBitmap all() {
+        return FastAggregation.or(bitmapsByValue.values().iterator());
+    }
+
+    int distinctValues() {
+        return bitmapsByValue.size();
+    }
+
+    void clear() {
+        bitmapsByValue.clear();
+    }
+}
@@ -0,0 +1,913 @@
+package com.kenzie.appserver.service.index;
+
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.repositories.model.ListingSort;
+import com.kenzie.appserver.service.index.QueryPlan.AccessPath;
+import com.kenzie.appserver.service.model.FacetCount;
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingFacets;
+import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.PostalAddress;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory, column oriented copy of every listing. Each attribute is held in its own primitive array and a
+ * listing lives in the same slot of every column, so a search is a tight loop over a few arrays instead of a
+ * DynamoDB scan. Slots freed by deletes are reused by later inserts.
+ *
+ * The square footage, price and lot size columns also have a {@link RangeIndex} holding their slots in value order.
+ * The columns with only a few distinct values, bedrooms, bathrooms, lot size and status, have a {@link BitmapIndex}
+ * with a compressed bitmap of slots per value, as do the state and ZIP code parsed from the address. The sizes of a
+ * search's ranges, found by binary search, and the cardinalities of its bitmaps let the {@link QueryPlanner} pick
+ * the cheapest way to read it: the ANDed bitmaps, the square footage or price range, or every slot in order. Only
+ * those slots are read, checking the remaining bounds on them alone, so a narrow search costs close to
+ * O(log n + matches) rather than a pass over every slot, and a count over the bitmap columns never visits a slot at
+ * all. Each plan is logged at debug level.
+ *
+ * Price and square footage also have bitmaps per fixed size bucket, used only to count facets, so every facet count
+ * is the cardinality of an AND of two bitmaps.
+ *
+ * The addresses have a {@link TrigramIndex} for free text search, so a search only reads the slots whose address
+ * shares a trigram with the query.
+ */
+@Component
+public class ListingIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte UNKNOWN_STATUS = -1;
+    private static final ListingStatus[] STATUSES = ListingStatus.values();
+    private static final Logger log = LoggerFactory.getLogger(ListingIndex.class);
+    static final int PRICE_BUCKET = 100000;
+    static final int SQUARE_FOOTAGE_BUCKET = 500;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slotsByListingNumber = new HashMap<>();
+
+    private String[] listingNumbers = new String[INITIAL_CAPACITY];
+    private String[] addresses = new String[INITIAL_CAPACITY];
+    private String[] statusLabels = new String[INITIAL_CAPACITY];
+    private int[] squareFootage = new int[INITIAL_CAPACITY];
+    private int[] price = new int[INITIAL_CAPACITY];
+    private int[] numBedrooms = new int[INITIAL_CAPACITY];
+    private double[] numBathrooms = new double[INITIAL_CAPACITY];
+    private double[] lotSize = new double[INITIAL_CAPACITY];
+    private byte[] status = new byte[INITIAL_CAPACITY];
+    private String[] states = new String[INITIAL_CAPACITY];
+    private String[] zipCodes = new String[INITIAL_CAPACITY];
+
+    private final RangeIndex squareFootageIndex = new RangeIndex();
+    private final RangeIndex priceIndex = new RangeIndex();
+    private final RangeIndex lotSizeIndex = new RangeIndex();
+    private final BitmapIndex<Double> numBedroomsBitmaps = new BitmapIndex<>();
+    private final BitmapIndex<Double> numBathroomsBitmaps = new BitmapIndex<>();
+    private final BitmapIndex<Double> lotSizeBitmaps = new BitmapIndex<>();
+    private final BitmapIndex<Double> statusBitmaps = new BitmapIndex<>();
+    private final BitmapIndex<String> stateBitmaps = new BitmapIndex<>();
+    private final BitmapIndex<String> zipCodeBitmaps = new BitmapIndex<>();
+    private final BitmapIndex<Double> priceBuckets = new BitmapIndex<>();
+    private final BitmapIndex<Double> squareFootageBuckets = new BitmapIndex<>();
+    private final TrigramIndex addressTrigrams = new TrigramIndex();
+
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int highWaterMark;
+
+    private volatile boolean loaded;
+    private Set<String> writtenDuringLoad;
+
+    /**
+     * Replaces the contents of the index with the given listings. The index reports itself as not loaded until
+     * every listing has been read, so callers fall back to DynamoDB in the meantime. Writes that arrive through
+     * {@link #put} or {@link #remove} while the load is running win over the (possibly older) loaded copy.
+     * @param listings every listing in the table
+     */
+    public void rebuild(Iterable<Listing> listings) {
+        beginRebuild();
+        boolean completed = false;
+        try {
+            load(listings);
+            completed = true;
+        } finally {
+            endRebuild(completed);
+        }
+    }
+
+    /**
+     * Empties the index and marks it as not loaded ahead of a series of {@link #load} calls.
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            clear();
+            writtenDuringLoad = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds listings read by a rebuild. Safe to call from several threads, e.g. one per scan segment.
+     */
+    public void load(Iterable<Listing> listings) {
+        for (Listing listing : listings) {
+            lock.writeLock().lock();
+            try {
+                if (writtenDuringLoad != null && !writtenDuringLoad.contains(listing.getListingNumber())) {
+                    upsert(listing);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Sorts the range indexes once over everything that was loaded, rather than keeping them sorted listing by listing.
+     * @param completed whether every listing was loaded; if not the index stays unloaded
+     */
+    public void endRebuild(boolean completed) {
+        lock.writeLock().lock();
+        try {
+            loadRangeIndexes();
+            writtenDuringLoad = null;
+            loaded = completed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByListingNumber.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the listing, or replaces the indexed copy if the listing number is already present.
+     */
+    public void put(Listing listing) {
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringLoad != null) {
+                writtenDuringLoad.add(listing.getListingNumber());
+            }
+            upsert(listing);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the indexed copy of the listing, or null if it is not indexed
+     */
+    public Listing get(String listingNumber) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsByListingNumber.get(listingNumber);
+            return slot != null ? listingAt(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(String listingNumber) {
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringLoad != null) {
+                writtenDuringLoad.add(listingNumber);
+            }
+            Integer slot = slotsByListingNumber.remove(listingNumber);
+            if (slot != null) {
+                removeFromBitmaps(slot);
+                if (addresses[slot] != null) {
+                    addressTrigrams.remove(slot, addresses[slot]);
+                }
+                if (writtenDuringLoad == null) {
+                    removeFromRangeIndexes(slot);
+                }
+                listingNumbers[slot] = null;
+                addresses[slot] = null;
+                statusLabels[slot] = null;
+                states[slot] = null;
+                zipCodes[slot] = null;
+                if (freeSlotCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+                }
+                freeSlots[freeSlotCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds every indexed listing that satisfies all of the bounds in the criteria.
+     * @param criteria the search filters, null bounds are ignored
+     * @return the matching listings, in no particular order
+     */
+    public List<Listing> find(ListingCriteria criteria) {
+        Bounds bounds = new Bounds(criteria);
+        List<Listing> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            forEachMatch(bounds, slot -> matches.add(listingAt(slot)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    /**
+     * Hands the matching listings over in chunks, in slot order. The read lock is only held while a chunk is
+     * collected, so a slow consumer, such as a client reading a streamed response, does not hold up writes. Range
+     * positions shift with every write, so this walks the columns rather than a range index.
+     * @param criteria the search filters, null bounds are ignored
+     * @param chunkSize the most listings handed over at once
+     * @param chunkConsumer receives each chunk of matches
+     */
+    public void forEachChunk(ListingCriteria criteria, int chunkSize, Consumer<List<Listing>> chunkConsumer) {
+        Bounds bounds = new Bounds(criteria);
+        int slot = 0;
+        boolean done = false;
+        while (!done) {
+            List<Listing> chunk = new ArrayList<>(chunkSize);
+            lock.readLock().lock();
+            try {
+                for (; slot < highWaterMark && chunk.size() < chunkSize; slot++) {
+                    if (matches(slot, bounds)) {
+                        chunk.add(listingAt(slot));
+                    }
+                }
+                done = slot >= highWaterMark;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+            }
+        }
+    }
+
+    /**
+     * Finds one page of the matching listings ordered by listing number. Only the page is kept while the matches are
+     * read, in a heap bounded by the limit.
+     * @param criteria the search filters, null bounds are ignored
+     * @param limit the largest number of listings to return
+     * @param afterListingNumber the last listing number of the previous page, or null for the first page
+     * @return up to limit + 1 listings; the extra listing, when present, shows that another page follows
+     */
+    public List<Listing> findPage(ListingCriteria criteria, int limit, String afterListingNumber) {
+        Bounds bounds = new Bounds(criteria);
+        lock.readLock().lock();
+        try {
+            Comparator<Integer> byListingNumber = Comparator.comparing(slot -> listingNumbers[slot]);
+            PriorityQueue<Integer> page = new PriorityQueue<>(limit + 1, byListingNumber.reversed());
+            forEachMatch(bounds, slot -> {
+                if (afterListingNumber != null && listingNumbers[slot].compareTo(afterListingNumber) <= 0) {
+                    return;
+                }
+                page.add(slot);
+                if (page.size() > limit + 1) {
+                    page.poll();
+                }
+            });
+
+            List<Listing> listings = new ArrayList<>(page.size());
+            while (!page.isEmpty()) {
+                listings.add(listingAt(page.poll()));
+            }
+            Collections.reverse(listings);
+            return listings;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the first listings in the given order without sorting, or holding, every match. When the sort field has
+     * a range index the slots are walked in that order and the walk stops as soon as the limit is reached, unless
+     * another bound is so narrow that checking its few candidates is cheaper. Otherwise the best matches are kept in
+     * a heap bounded by the limit whose root is the worst of them.
+     * @param criteria the search filters, null bounds are ignored
+     * @param sort the order to return the listings in, ties are broken by listing number
+     * @param limit the largest number of listings to return
+     * @return up to limit listings in sort order
+     */
+    public List<Listing> findTop(ListingCriteria criteria, ListingSort sort, int limit) {
+        Bounds bounds = new Bounds(criteria);
+        lock.readLock().lock();
+        try {
+            Comparator<Integer> inSortOrder = (first, second) -> {
+                int result = sort.compareKeys(sortKey(first, sort), sortKey(second, sort));
+                return result != 0 ? result : listingNumbers[first].compareTo(listingNumbers[second]);
+            };
+
+            SearchPlan searchPlan = new SearchPlan(bounds);
+            Range sortedRange = sortedRange(sort.getField(), bounds);
+            QueryPlan plan = sortedRange != null ? searchPlan.planner.chooseInOrder(sortedRange.size(), limit)
+                    : searchPlan.planner.choose();
+            log.debug("Top {} listings by {} read by {}", limit, sort, plan);
+            if (plan.getAccessPath() == AccessPath.SORTED_WALK) {
+                return walkInOrder(sortedRange, bounds, sort.isDescending(), limit, inSortOrder);
+            }
+
+            PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, inSortOrder.reversed());
+            searchPlan.read(plan.getAccessPath(), slot -> {
+                top.add(slot);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+
+            List<Listing> listings = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                listings.add(listingAt(top.poll()));
+            }
+            Collections.reverse(listings);
+            return listings;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the range in value order until the limit is reached. Listings that tie with the last one taken are read
+     * too, so the tie can be broken by listing number.
+     */
+    private List<Listing> walkInOrder(Range range, Bounds bounds, boolean descending, int limit,
+                                      Comparator<Integer> inSortOrder) {
+        List<Integer> taken = new ArrayList<>(limit);
+        double lastValue = Double.NaN;
+        for (int i = 0; i < range.size(); i++) {
+            int position = descending ? range.to - 1 - i : range.from + i;
+            double value = range.index.valueAt(position);
+            if (taken.size() >= limit && value != lastValue) {
+                break;
+            }
+            int slot = range.index.slotAt(position);
+            if (matches(slot, bounds)) {
+                taken.add(slot);
+                lastValue = value;
+            }
+        }
+
+        taken.sort(inSortOrder);
+        List<Listing> listings = new ArrayList<>(Math.min(limit, taken.size()));
+        for (int slot : taken.subList(0, Math.min(limit, taken.size()))) {
+            listings.add(listingAt(slot));
+        }
+        return listings;
+    }
+
+    /**
+     * Counts the listings that satisfy all of the bounds in the criteria. When only the bedrooms, bathrooms, lot size,
+     * status, state and ZIP code are bounded, the count is the cardinality of the ANDed bitmaps and no slot is read.
+     * @param criteria the search filters, null bounds are ignored
+     * @return the number of matching listings
+     */
+    public int count(ListingCriteria criteria) {
+        Bounds bounds = new Bounds(criteria);
+        lock.readLock().lock();
+        try {
+            if (!bounds.hasSquareFootage && !bounds.hasPrice) {
+                RoaringBitmap candidates = bitmapCandidates(bounds);
+                return candidates != null ? candidates.getCardinality() : slotsByListingNumber.size();
+            }
+
+            int[] count = new int[1];
+            forEachMatch(bounds, slot -> count[0]++);
+            return count[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the listings that satisfy the criteria in each bucket of every attribute: $100,000 of price, 500 square
+     * feet, and each distinct number of bedrooms, number of bathrooms and lot size. Each count is the cardinality of
+     * the matches ANDed with the bucket's bitmap. The matches come straight from the bitmaps too, unless the
+     * square footage or price is bounded, in which case the matching slots are collected first.
+     * @param criteria the search filters, null bounds are ignored
+     * @return the total number of matches and their counts per bucket
+     */
+    public ListingFacets facets(ListingCriteria criteria) {
+        Bounds bounds = new Bounds(criteria);
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches;
+            if (!bounds.hasSquareFootage && !bounds.hasPrice) {
+                RoaringBitmap candidates = bitmapCandidates(bounds);
+                matches = candidates != null ? candidates : statusBitmaps.all();
+            } else {
+                RoaringBitmap matching = new RoaringBitmap();
+                forEachMatch(bounds, matching::add);
+                matches = matching;
+            }
+
+            Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+            facets.put("price", facetCounts(priceBuckets, matches, PRICE_BUCKET - 1));
+            facets.put("squareFootage", facetCounts(squareFootageBuckets, matches, SQUARE_FOOTAGE_BUCKET - 1));
+            facets.put("numBedrooms", facetCounts(numBedroomsBitmaps, matches, 0));
+            facets.put("numBathrooms", facetCounts(numBathroomsBitmaps, matches, 0));
+            facets.put("lotSize", facetCounts(lotSizeBitmaps, matches, 0));
+            return new ListingFacets(matches.getLongCardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<FacetCount> facetCounts(BitmapIndex<Double> index, RoaringBitmap matches, double width) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (Map.Entry<Double, Long> entry : index.countsWithin(matches).entrySet()) {
+            counts.add(new FacetCount(entry.getKey(), entry.getKey() + width, entry.getValue()));
+        }
+        return counts;
+    }
+
+    /**
+     * Finds the listings whose address best matches a free text query. The hits of each slot are counted from the
+     * posting lists of the query's trigrams, so only addresses sharing at least one trigram with it are looked at,
+     * and only the best matches are kept, in a heap bounded by the limit.
+     * @param query the text to look for, in any case
+     * @param limit the largest number of listings to return
+     * @return up to limit matches, best first as ordered by {@link AddressQuery#BEST_FIRST}
+     */
+    public List<AddressQuery.Match> search(AddressQuery query, int limit) {
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            int minimumHits = query.minimumHits();
+            PriorityQueue<AddressQuery.Match> best = new PriorityQueue<>(limit + 1, AddressQuery.BEST_FIRST.reversed());
+            addressTrigrams.countHits(query.trigrams(), (slot, hits) -> {
+                if (hits >= minimumHits) {
+                    best.add(new AddressQuery.Match(listingAt(slot), query.score(hits, addresses[slot])));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            });
+
+            List<AddressQuery.Match> matches = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                matches.add(best.poll());
+            }
+            Collections.reverse(matches);
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Shows how a search would be read, without reading it.
+     * @param criteria the search filters, null bounds are ignored
+     * @return the plan the search would be read by
+     */
+    public QueryPlan explain(ListingCriteria criteria) {
+        Bounds bounds = new Bounds(criteria);
+        lock.readLock().lock();
+        try {
+            return new SearchPlan(bounds).planner.choose();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calls the action with every slot that satisfies the bounds, reading only the slots of the cheapest plan.
+     */
+    private void forEachMatch(Bounds bounds, IntConsumer action) {
+        SearchPlan searchPlan = new SearchPlan(bounds);
+        QueryPlan plan = searchPlan.planner.choose();
+        log.debug("Listing search read by {}", plan);
+        searchPlan.read(plan.getAccessPath(), action);
+    }
+
+    /**
+     * ANDs the bitmaps picked out by the bounds on the low-cardinality columns, starting from the smallest so the
+     * intermediate results shrink as fast as possible.
+     * @return the slots that satisfy those bounds, or null when none of them filters anything out
+     */
+    private RoaringBitmap bitmapCandidates(Bounds bounds) {
+        List<BitmapRange> ranges = bitmapRanges(bounds);
+        return ranges.isEmpty() ? null : intersect(ranges);
+    }
+
+    private static RoaringBitmap intersect(List<BitmapRange> ranges) {
+        ranges.sort(Comparator.comparingLong(range -> range.cardinality));
+        RoaringBitmap candidates = ranges.get(0).bitmap();
+        for (int i = 1; i < ranges.size() && !candidates.isEmpty(); i++) {
+            candidates.and(ranges.get(i).bitmap());
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the values of the low-cardinality columns picked out by the bounds, skipping bounds that keep every
+     * listing; their bitmaps are not built yet
+     */
+    private List<BitmapRange> bitmapRanges(Bounds bounds) {
+        int liveSlots = slotsByListingNumber.size();
+        List<BitmapRange> ranges = new ArrayList<>(6);
+        if (bounds.hasNumBedrooms) {
+            ranges.add(BitmapRange.between(numBedroomsBitmaps, bounds.minNumBedrooms, bounds.maxNumBedrooms));
+        }
+        if (bounds.hasNumBathrooms) {
+            ranges.add(BitmapRange.between(numBathroomsBitmaps, bounds.minNumBathrooms, bounds.maxNumBathrooms));
+        }
+        if (bounds.hasLotSize) {
+            ranges.add(BitmapRange.between(lotSizeBitmaps, bounds.minLotSize, bounds.maxLotSize));
+        }
+        if (bounds.filterStatus) {
+            // A status that is not one of the enum's labels never matches
+            double code = bounds.status == UNKNOWN_STATUS ? Double.NaN : bounds.status;
+            ranges.add(BitmapRange.between(statusBitmaps, code, code));
+        }
+        if (bounds.state != null) {
+            ranges.add(BitmapRange.anyOf(stateBitmaps, Collections.singleton(bounds.state)));
+        }
+        if (bounds.zipCodes != null) {
+            ranges.add(BitmapRange.anyOf(zipCodeBitmaps, bounds.zipCodes));
+        }
+        ranges.removeIf(range -> range.cardinality == liveSlots);
+        return ranges;
+    }
+
+    /**
+     * @return the bounded range of the sort field's index, or null if the field has no range index
+     */
+    private Range sortedRange(ListingSort.Field field, Bounds bounds) {
+        if (writtenDuringLoad != null) {
+            return null;
+        }
+        switch (field) {
+            case PRICE:
+                return new Range(priceIndex, bounds.minPrice, bounds.maxPrice);
+            case SQUARE_FOOTAGE:
+                return new Range(squareFootageIndex, bounds.minSquareFootage, bounds.maxSquareFootage);
+            case LOT_SIZE:
+                return new Range(lotSizeIndex, bounds.minLotSize, bounds.maxLotSize);
+            default:
+                return null;
+        }
+    }
+
+    private double sortKey(int slot, ListingSort sort) {
+        return sort.sortKey(squareFootage[slot], price[slot], lotSize[slot]);
+    }
+
+    private boolean matches(int slot, Bounds bounds) {
+        return listingNumbers[slot] != null
+                && squareFootage[slot] >= bounds.minSquareFootage && squareFootage[slot] <= bounds.maxSquareFootage
+                && price[slot] >= bounds.minPrice && price[slot] <= bounds.maxPrice
+                && numBedrooms[slot] >= bounds.minNumBedrooms && numBedrooms[slot] <= bounds.maxNumBedrooms
+                && numBathrooms[slot] >= bounds.minNumBathrooms && numBathrooms[slot] <= bounds.maxNumBathrooms
+                && lotSize[slot] >= bounds.minLotSize && lotSize[slot] <= bounds.maxLotSize
+                && (!bounds.filterStatus || (bounds.status != UNKNOWN_STATUS && status[slot] == bounds.status))
+                && (bounds.state == null || bounds.state.equals(states[slot]))
+                && (bounds.zipCodes == null || bounds.zipCodes.contains(zipCodes[slot]));
+    }
+
+    private void upsert(Listing listing) {
+        // While a rebuild is loading, the range indexes are sorted once at the end instead
+        boolean maintainRangeIndexes = writtenDuringLoad == null;
+        Integer slot = slotsByListingNumber.get(listing.getListingNumber());
+        String previousAddress = slot != null ? addresses[slot] : null;
+        if (slot == null) {
+            slot = allocateSlot();
+            slotsByListingNumber.put(listing.getListingNumber(), slot);
+        } else {
+            removeFromBitmaps(slot);
+            if (maintainRangeIndexes) {
+                removeFromRangeIndexes(slot);
+            }
+        }
+
+        byte code = statusCode(listing.getListingStatus());
+        PostalAddress address = PostalAddress.parse(listing.getAddress());
+        listingNumbers[slot] = listing.getListingNumber();
+        addresses[slot] = listing.getAddress();
+        statusLabels[slot] = code == UNKNOWN_STATUS ? listing.getListingStatus() : STATUSES[code].label;
+        squareFootage[slot] = listing.getSquareFootage();
+        price[slot] = listing.getPrice();
+        numBedrooms[slot] = listing.getNumBedrooms();
+        numBathrooms[slot] = listing.getNumBathrooms();
+        lotSize[slot] = listing.getLotSize();
+        status[slot] = code;
+        states[slot] = address != null ? address.getState() : null;
+        zipCodes[slot] = address != null ? address.getZipCode() : null;
+
+        numBedroomsBitmaps.add(slot, (double) numBedrooms[slot]);
+        numBathroomsBitmaps.add(slot, numBathrooms[slot]);
+        lotSizeBitmaps.add(slot, lotSize[slot]);
+        statusBitmaps.add(slot, (double) status[slot]);
+        priceBuckets.add(slot, bucket(price[slot], PRICE_BUCKET));
+        squareFootageBuckets.add(slot, bucket(squareFootage[slot], SQUARE_FOOTAGE_BUCKET));
+        if (address != null) {
+            stateBitmaps.add(slot, states[slot]);
+            zipCodeBitmaps.add(slot, zipCodes[slot]);
+        }
+        if (!Objects.equals(previousAddress, addresses[slot])) {
+            if (previousAddress != null) {
+                addressTrigrams.remove(slot, previousAddress);
+            }
+            if (addresses[slot] != null) {
+                addressTrigrams.add(slot, addresses[slot]);
+            }
+        }
+        if (maintainRangeIndexes) {
+            squareFootageIndex.add(slot, squareFootage[slot]);
+            priceIndex.add(slot, price[slot]);
+            lotSizeIndex.add(slot, lotSize[slot]);
+        }
+    }
+
+    private void removeFromBitmaps(int slot) {
+        numBedroomsBitmaps.remove(slot, (double) numBedrooms[slot]);
+        numBathroomsBitmaps.remove(slot, numBathrooms[slot]);
+        lotSizeBitmaps.remove(slot, lotSize[slot]);
+        statusBitmaps.remove(slot, (double) status[slot]);
+        priceBuckets.remove(slot, bucket(price[slot], PRICE_BUCKET));
+        squareFootageBuckets.remove(slot, bucket(squareFootage[slot], SQUARE_FOOTAGE_BUCKET));
+        if (states[slot] != null) {
+            stateBitmaps.remove(slot, states[slot]);
+            zipCodeBitmaps.remove(slot, zipCodes[slot]);
+        }
+    }
+
+    private static double bucket(int value, int width) {
+        return Math.floorDiv(value, width) * (double) width;
+    }
+
+    private void removeFromRangeIndexes(int slot) {
+        squareFootageIndex.remove(slot, squareFootage[slot]);
+        priceIndex.remove(slot, price[slot]);
+        lotSizeIndex.remove(slot, lotSize[slot]);
+    }
+
+    private void loadRangeIndexes() {
+        int[] liveSlots = new int[slotsByListingNumber.size()];
+        int count = 0;
+        for (int slot : slotsByListingNumber.values()) {
+            liveSlots[count++] = slot;
+        }
+        squareFootageIndex.load(liveSlots, count, slot -> squareFootage[slot]);
+        priceIndex.load(liveSlots, count, slot -> price[slot]);
+        lotSizeIndex.load(liveSlots, count, slot -> lotSize[slot]);
+    }
+
+    private int allocateSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (highWaterMark == listingNumbers.length) {
+            grow(listingNumbers.length * 2);
+        }
+        return highWaterMark++;
+    }
+
+    private void grow(int capacity) {
+        listingNumbers = Arrays.copyOf(listingNumbers, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        statusLabels = Arrays.copyOf(statusLabels, capacity);
+        squareFootage = Arrays.copyOf(squareFootage, capacity);
+        price = Arrays.copyOf(price, capacity);
+        numBedrooms = Arrays.copyOf(numBedrooms, capacity);
+        numBathrooms = Arrays.copyOf(numBathrooms, capacity);
+        lotSize = Arrays.copyOf(lotSize, capacity);
+        status = Arrays.copyOf(status, capacity);
+        states = Arrays.copyOf(states, capacity);
+        zipCodes = Arrays.copyOf(zipCodes, capacity);
+    }
+
+    private void clear() {
+        slotsByListingNumber.clear();
+        Arrays.fill(listingNumbers, 0, highWaterMark, null);
+        Arrays.fill(addresses, 0, highWaterMark, null);
+        Arrays.fill(statusLabels, 0, highWaterMark, null);
+        Arrays.fill(states, 0, highWaterMark, null);
+        Arrays.fill(zipCodes, 0, highWaterMark, null);
+        freeSlotCount = 0;
+        highWaterMark = 0;
+        squareFootageIndex.clear();
+        priceIndex.clear();
+        lotSizeIndex.clear();
+        numBedroomsBitmaps.clear();
+        numBathroomsBitmaps.clear();
+        lotSizeBitmaps.clear();
+        statusBitmaps.clear();
+        priceBuckets.clear();
+        squareFootageBuckets.clear();
+        stateBitmaps.clear();
+        zipCodeBitmaps.clear();
+        addressTrigrams.clear();
+    }
+
+    private Listing listingAt(int slot) {
+        return new Listing(listingNumbers[slot],
+                addresses[slot],
+                squareFootage[slot],
+                price[slot],
+                numBedrooms[slot],
+                numBathrooms[slot],
+                lotSize[slot],
+                statusLabels[slot]);
+    }
+
+    /**
+     * The criteria unboxed once per search, with unset bounds widened so every comparison can be made on primitives.
+     */
+    private static class Bounds {
+        private final int minSquareFootage;
+        private final int maxSquareFootage;
+        private final int minPrice;
+        private final int maxPrice;
+        private final int minNumBedrooms;
+        private final int maxNumBedrooms;
+        private final double minNumBathrooms;
+        private final double maxNumBathrooms;
+        private final double minLotSize;
+        private final double maxLotSize;
+        private final boolean hasSquareFootage;
+        private final boolean hasPrice;
+        private final boolean hasNumBedrooms;
+        private final boolean hasNumBathrooms;
+        private final boolean hasLotSize;
+        private final boolean filterStatus;
+        private final byte status;
+        private final String state;
+        private final Set<String> zipCodes;
+
+        Bounds(ListingCriteria criteria) {
+            hasSquareFootage = criteria.getMinSquareFootage() != null || criteria.getMaxSquareFootage() != null;
+            hasPrice = criteria.getMinPrice() != null || criteria.getMaxPrice() != null;
+            hasNumBedrooms = criteria.getMinNumBedrooms() != null || criteria.getMaxNumBedrooms() != null;
+            hasNumBathrooms = criteria.getMinNumBathrooms() != null || criteria.getMaxNumBathrooms() != null;
+            hasLotSize = criteria.getMinLotSize() != null || criteria.getMaxLotSize() != null;
+            minSquareFootage = criteria.getMinSquareFootage() != null ? criteria.getMinSquareFootage() : Integer.MIN_VALUE;
+            maxSquareFootage = criteria.getMaxSquareFootage() != null ? criteria.getMaxSquareFootage() : Integer.MAX_VALUE;
+            minPrice = criteria.getMinPrice() != null ? criteria.getMinPrice() : Integer.MIN_VALUE;
+            maxPrice = criteria.getMaxPrice() != null ? criteria.getMaxPrice() : Integer.MAX_VALUE;
+            minNumBedrooms = criteria.getMinNumBedrooms() != null ? criteria.getMinNumBedrooms() : Integer.MIN_VALUE;
+            maxNumBedrooms = criteria.getMaxNumBedrooms() != null ? criteria.getMaxNumBedrooms() : Integer.MAX_VALUE;
+            minNumBathrooms = criteria.getMinNumBathrooms() != null ? criteria.getMinNumBathrooms() : Double.NEGATIVE_INFINITY;
+            maxNumBathrooms = criteria.getMaxNumBathrooms() != null ? criteria.getMaxNumBathrooms() : Double.POSITIVE_INFINITY;
+            minLotSize = criteria.getMinLotSize() != null ? criteria.getMinLotSize() : Double.NEGATIVE_INFINITY;
+            maxLotSize = criteria.getMaxLotSize() != null ? criteria.getMaxLotSize() : Double.POSITIVE_INFINITY;
+            filterStatus = criteria.getListingStatus() != null;
+            status = statusCode(criteria.getListingStatus());
+            state = criteria.getState();
+            zipCodes = criteria.getZipCodes();
+        }
+    }
+
+    /**
+     * The statistics of one search, handed to a {@link QueryPlanner}, and the ranges and bitmaps its plans read.
+     * Lot size bounds are always read through their bitmaps, so the lot size range index only serves sorted walks.
+     * Positions in the range indexes are unsettled while they are being rebuilt, so only bitmaps and full scans are
+     * planned then.
+     */
+    private class SearchPlan {
+        private final Bounds bounds;
+        private final List<BitmapRange> bitmapRanges;
+        private final Map<AccessPath, Range> ranges = new EnumMap<>(AccessPath.class);
+        private final QueryPlanner planner;
+
+        SearchPlan(Bounds bounds) {
+            this.bounds = bounds;
+            this.bitmapRanges = bitmapRanges(bounds);
+            this.planner = new QueryPlanner(slotsByListingNumber.size(), highWaterMark);
+            for (BitmapRange range : bitmapRanges) {
+                planner.addBitmap(range.cardinality);
+            }
+            if (writtenDuringLoad == null) {
+                ranges.put(AccessPath.SQUARE_FOOTAGE_RANGE,
+                        new Range(squareFootageIndex, bounds.minSquareFootage, bounds.maxSquareFootage));
+                ranges.put(AccessPath.PRICE_RANGE, new Range(priceIndex, bounds.minPrice, bounds.maxPrice));
+                ranges.forEach((path, range) -> planner.addRange(path, range.size()));
+            }
+        }
+
+        /**
+         * Calls the action with every slot read by the access path that satisfies the bounds.
+         */
+        void read(AccessPath accessPath, IntConsumer action) {
+            switch (accessPath) {
+                case BITMAP_INTERSECTION:
+                    PeekableIntIterator slots = intersect(bitmapRanges).getIntIterator();
+                    while (slots.hasNext()) {
+                        int slot = slots.next();
+                        if (matches(slot, bounds)) {
+                            action.accept(slot);
+                        }
+                    }
+                    return;
+                case SQUARE_FOOTAGE_RANGE:
+                case PRICE_RANGE:
+                    Range range = ranges.get(accessPath);
+                    for (int position = range.from; position < range.to; position++) {
+                        int slot = range.index.slotAt(position);
+                        if (matches(slot, bounds)) {
+                            action.accept(slot);
+                        }
+                    }
+                    return;
+                default:
+                    for (int slot = 0; slot < highWaterMark; slot++) {
+                        if (matches(slot, bounds)) {
+                            action.accept(slot);
+                        }
+                    }
+            }
+        }
+    }
+
+    /**
+     * The positions of a range index whose values lie between an inclusive minimum and maximum.
+     */
+    private static class Range {
+        private final RangeIndex index;
+        private final int from;
+        private final int to;
+
+        Range(RangeIndex index, double min, double max) {
+            this.index = index;
+            this.from = index.lowerBound(min);
+            this.to = Math.max(from, index.upperBound(max));
+        }
+
+        int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Some of the values of a bitmap index, either those between an inclusive minimum and maximum or those in a set.
+     * Its cardinality is summed up front so the bitmaps can be ANDed smallest first; the OR of the values' bitmaps is
+     * only built when it is needed.
+     */
+    private static class BitmapRange {
+        private final long cardinality;
+        private final Supplier<RoaringBitmap> bitmap;
+
+        private BitmapRange(long cardinality, Supplier<RoaringBitmap> bitmap) {
+            this.cardinality = cardinality;
+            this.bitmap = bitmap;
+        }
+
+        /**
+         * @param min the smallest value, or NaN for a range that matches nothing
+         */
+        static BitmapRange between(BitmapIndex<Double> index, double min, double max) {
+            if (Double.isNaN(min)) {
+                return new BitmapRange(0, RoaringBitmap::new);
+            }
+            return new BitmapRange(index.rangeCardinality(min, max), () -> index.range(min, max));
+        }
+
+        static BitmapRange anyOf(BitmapIndex<String> index, Set<String> values) {
+            return new BitmapRange(index.anyOfCardinality(values), () -> index.anyOf(values));
+        }
+
+        RoaringBitmap bitmap() {
+            return bitmap.get();
+        }
+    }
+
+    private static byte statusCode(String label) {
+        ListingStatus listingStatus = ListingStatus.fromLabel(label);
+        return listingStatus == null ? UNKNOWN_STATUS : (byte) listingStatus.ordinal();
+    }
+}
@@ -0,0 +1,88 @@
+package com.kenzie.appserver.service.index;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Bloom filter of every listing number this instance knows of. It answers yes for about one in a hundred numbers
+ * it has not seen, and never answers no for one it has.
+ *
+ * Like the {@link ListingIndex}, the filter is filled in by one pass over the table at start-up and kept up to date
+ * by the writes made through this service. Until that pass completes every listing number is let through. A Bloom
+ * filter cannot forget a number, so deletes are left in it until the next rebuild, which also resizes the filter to
+ * the table.
+ *
+ * Listings created by other instances only reach the filter through the best effort invalidation broadcast, so a no
+ * is not proof that a listing does not exist. Lookups still read the cache and the table on a no, relying on the
+ * cache's short-lived memory of missing numbers for repeated ones, and add the numbers they find.
+ */
+@Component
+public class ListingNumberFilter {
+    static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final long minimumExpectedListings;
+    private volatile BloomFilter<CharSequence> filter;
+    private volatile boolean loaded;
+
+    @Autowired
+    public ListingNumberFilter(@Value("${listing.numberFilter.expectedListings:1000000}") long minimumExpectedListings) {
+        this.minimumExpectedListings = minimumExpectedListings;
+        this.filter = create(minimumExpectedListings);
+    }
+
+    /**
+     * Starts a new, empty filter ahead of a series of {@link #load} calls. Listing numbers are let through until
+     * {@link #endRebuild} completes.
+     * @param tableSize the approximate number of listings in the table, so twice as many fit before the false
+     *                  positive rate starts to rise
+     */
+    public synchronized void beginRebuild(long tableSize) {
+        loaded = false;
+        filter = create(Math.max(minimumExpectedListings, 2 * tableSize));
+    }
+
+    /**
+     * Adds listing numbers read by a rebuild. Safe to call from several threads.
+     */
+    public void load(Iterable<String> listingNumbers) {
+        BloomFilter<CharSequence> current = filter;
+        for (String listingNumber : listingNumbers) {
+            current.put(listingNumber);
+        }
+    }
+
+    /**
+     * @param completed whether every listing number was loaded; if not every listing number is still let through
+     */
+    public void endRebuild(boolean completed) {
+        loaded = completed;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds a created listing's number. Safe to call while a rebuild is loading.
+     */
+    public synchronized void put(String listingNumber) {
+        filter.put(listingNumber);
+    }
+
+    /**
+     * @return false only if no listing with this number has been created, true if there may be one
+     */
+    public boolean mightContain(String listingNumber) {
+        return !loaded || filter.mightContain(listingNumber);
+    }
+
+    private static BloomFilter<CharSequence> create(long expectedListings) {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedListings,
+                FALSE_POSITIVE_PROBABILITY);
+    }
+}
@@ -0,0 +1,57 @@
+package com.kenzie.appserver.service.index;
+
+/**
+ * How the {@link ListingIndex} reads the slots for a search, chosen by the {@link QueryPlanner} as the cheapest of
+ * the paths the search's bounds allow, with the number of slots it expects that path to read.
+ */
+public class QueryPlan {
+    /**
+     * The ways of finding the candidate slots for a search.
+     */
+    public enum AccessPath {
+        /** Reads the slots left after ANDing the bitmaps of the bounded low-cardinality columns. */
+        BITMAP_INTERSECTION,
+        /** Reads the slots in the square footage range index between its bounds. */
+        SQUARE_FOOTAGE_RANGE,
+        /** Reads the slots in the price range index between its bounds. */
+        PRICE_RANGE,
+        /** Reads the sort field's range index in order and stops once the limit is reached. */
+        SORTED_WALK,
+        /** Reads every slot of the columns in order. */
+        FULL_SCAN
+    }
+
+    private final AccessPath accessPath;
+    private final long slotsRead;
+    private final long estimatedMatches;
+    private final double cost;
+
+    public QueryPlan(AccessPath accessPath, long slotsRead, long estimatedMatches, double cost) {
+        this.accessPath = accessPath;
+        this.slotsRead = slotsRead;
+        this.estimatedMatches = estimatedMatches;
+        this.cost = cost;
+    }
+
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    public long getSlotsRead() {
+        return slotsRead;
+    }
+
+    public long getEstimatedMatches() {
+        return estimatedMatches;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s reading about %d slots for about %d matches (cost %.1f)", accessPath, slotsRead,
+                estimatedMatches, cost);
+    }
+}
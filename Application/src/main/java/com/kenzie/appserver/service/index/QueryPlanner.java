@@ -0,0 +1,128 @@
+package com.kenzie.appserver.service.index;
+
+import com.kenzie.appserver.service.index.QueryPlan.AccessPath;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the cheapest way for the {@link ListingIndex} to read the slots of one search. Its statistics are the
+ * index's own histograms: the size of each bounded range, found by binary search in a {@link RangeIndex}, and the
+ * number of slots holding each bounded value, summed from the cardinalities of a {@link BitmapIndex}. Both are exact
+ * for a single attribute. The number of matches of several bounds is estimated by treating them as independent.
+ *
+ * Costs are in units of one slot read at a random position. Reading the columns in slot order is cheaper per slot,
+ * and ORing and ANDing bitmaps cheaper still per slot they hold. The constants are rough ratios rather than tuned
+ * values; what matters is that a selective bound is always read through its index and a loose one never is.
+ */
+class QueryPlanner {
+    static final double RANDOM_SLOT_COST = 1;
+    static final double SEQUENTIAL_SLOT_COST = 0.25;
+    static final double BITMAP_SLOT_COST = 0.02;
+    static final double HEAP_COST = 0.1;
+
+    private final int liveSlots;
+    private final int scannedSlots;
+    private final List<Long> bitmapCardinalities = new ArrayList<>();
+    private final Map<AccessPath, Integer> rangeSizes = new EnumMap<>(AccessPath.class);
+
+    /**
+     * @param liveSlots the number of listings in the index
+     * @param scannedSlots the number of slots a full scan reads, including the free ones
+     */
+    QueryPlanner(int liveSlots, int scannedSlots) {
+        this.liveSlots = liveSlots;
+        this.scannedSlots = scannedSlots;
+    }
+
+    /**
+     * Adds the number of slots whose value satisfies one bounded bitmap column.
+     */
+    void addBitmap(long cardinality) {
+        bitmapCardinalities.add(cardinality);
+    }
+
+    /**
+     * Adds the number of slots between the bounds of one range index. An attribute must be added once, either as a
+     * bitmap or as a range, or its bound counts twice towards the estimated matches.
+     * @param path the range access path that reads that index
+     */
+    void addRange(AccessPath path, int size) {
+        rangeSizes.put(path, size);
+    }
+
+    /**
+     * @return the number of listings expected to satisfy every bound, assuming the attributes are independent
+     */
+    long estimatedMatches() {
+        if (liveSlots == 0) {
+            return 0;
+        }
+        double matches = liveSlots;
+        for (long cardinality : bitmapCardinalities) {
+            matches *= (double) cardinality / liveSlots;
+        }
+        for (int size : rangeSizes.values()) {
+            matches *= (double) size / liveSlots;
+        }
+        return (long) Math.ceil(matches);
+    }
+
+    /**
+     * @return the cheapest plan for reading every match, in any order
+     */
+    QueryPlan choose() {
+        long matches = estimatedMatches();
+        QueryPlan cheapest = new QueryPlan(AccessPath.FULL_SCAN, scannedSlots, matches,
+                scannedSlots * SEQUENTIAL_SLOT_COST);
+
+        for (Map.Entry<AccessPath, Integer> range : rangeSizes.entrySet()) {
+            int size = range.getValue();
+            cheapest = cheaper(cheapest, new QueryPlan(range.getKey(), size, matches, size * RANDOM_SLOT_COST));
+        }
+
+        if (!bitmapCardinalities.isEmpty()) {
+            long bitmapSlots = 0;
+            double candidates = liveSlots;
+            for (long cardinality : bitmapCardinalities) {
+                bitmapSlots += cardinality;
+                candidates *= liveSlots == 0 ? 0 : (double) cardinality / liveSlots;
+            }
+            long candidateSlots = (long) Math.ceil(candidates);
+            cheapest = cheaper(cheapest, new QueryPlan(AccessPath.BITMAP_INTERSECTION, candidateSlots, matches,
+                    bitmapSlots * BITMAP_SLOT_COST + candidateSlots * RANDOM_SLOT_COST));
+        }
+        return cheapest;
+    }
+
+    /**
+     * Weighs walking the sort field's range in order, which stops after about limit matches, against reading every
+     * match by the cheapest plan and keeping the best in a heap bounded by the limit.
+     * @param sortedSize the number of slots between the bounds of the sort field's range index
+     * @param limit the number of listings wanted
+     * @return the cheapest plan for reading the first listings in sort order
+     */
+    QueryPlan chooseInOrder(int sortedSize, int limit) {
+        QueryPlan unordered = choose();
+        double heapCost = unordered.getEstimatedMatches() * HEAP_COST * log2(limit + 1);
+        QueryPlan heap = new QueryPlan(unordered.getAccessPath(), unordered.getSlotsRead(),
+                unordered.getEstimatedMatches(), unordered.getCost() + heapCost);
+
+        // Matches are assumed to be spread evenly along the sort field's range
+        long matches = unordered.getEstimatedMatches();
+        long walked = matches == 0 ? sortedSize
+                : Math.min(sortedSize, (long) Math.ceil((double) limit * sortedSize / matches));
+        QueryPlan walk = new QueryPlan(AccessPath.SORTED_WALK, walked, matches, walked * RANDOM_SLOT_COST);
+        return cheaper(heap, walk);
+    }
+
+    private static QueryPlan cheaper(QueryPlan current, QueryPlan candidate) {
+        return candidate.getCost() < current.getCost() ? candidate : current;
+    }
+
+    private static double log2(int value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
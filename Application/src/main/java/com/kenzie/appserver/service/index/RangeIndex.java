@@ -0,0 +1,155 @@
+package com.kenzie.appserver.service.index;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The slots of one numeric column of the {@link ListingIndex}, ordered by value. The slots whose value lies in a
+ * range sit next to each other, so they are found with two binary searches and read without touching any other slot.
+ * Values and slots are held in parallel primitive arrays. The owning index keeps it in step with the column and
+ * guards it with its own lock.
+ */
+class RangeIndex {
+    private double[] values = new double[16];
+    private int[] slots = new int[16];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    double valueAt(int position) {
+        return values[position];
+    }
+
+    int slotAt(int position) {
+        return slots[position];
+    }
+
+    /**
+     * @return the first position whose value is at least the given value
+     */
+    int lowerBound(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position whose value is greater than the given value
+     */
+    int upperBound(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    void add(int slot, double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        int position = upperBound(value);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        System.arraycopy(slots, position, slots, position + 1, size - position);
+        values[position] = value;
+        slots[position] = slot;
+        size++;
+    }
+
+    void remove(int slot, double value) {
+        for (int position = lowerBound(value); position < size && values[position] == value; position++) {
+            if (slots[position] == slot) {
+                System.arraycopy(values, position + 1, values, position, size - position - 1);
+                System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents with the given slots, sorted once, which is far cheaper than adding them one at a time.
+     * The values are sorted as 64 bit keys that order like the doubles, by a byte at a time radix sort that carries
+     * the slots along, so nothing is boxed however large the table. Slots with equal values keep their given order.
+     * @param liveSlots the slots to index
+     * @param count how many of the slots are in use
+     * @param valueOf reads the column value of a slot
+     */
+    void load(int[] liveSlots, int count, IntToDoubleFunction valueOf) {
+        long[] keys = new long[count];
+        int[] ordered = Arrays.copyOf(liveSlots, count);
+        for (int i = 0; i < count; i++) {
+            keys[i] = sortableBits(valueOf.applyAsDouble(ordered[i]));
+        }
+
+        long[] keyBuffer = new long[count];
+        int[] slotBuffer = new int[count];
+        int[] offsets = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < count; i++) {
+                offsets[(int) (keys[i] >>> shift & 0xFF) + 1]++;
+            }
+            // A byte every key shares leaves the order as it is
+            if (count == 0 || offsets[(int) (keys[0] >>> shift & 0xFF) + 1] == count) {
+                continue;
+            }
+            for (int digit = 0; digit < 256; digit++) {
+                offsets[digit + 1] += offsets[digit];
+            }
+            for (int i = 0; i < count; i++) {
+                int position = offsets[(int) (keys[i] >>> shift & 0xFF)]++;
+                keyBuffer[position] = keys[i];
+                slotBuffer[position] = ordered[i];
+            }
+            long[] sortedKeys = keyBuffer;
+            keyBuffer = keys;
+            keys = sortedKeys;
+            int[] sortedSlots = slotBuffer;
+            slotBuffer = ordered;
+            ordered = sortedSlots;
+        }
+
+        values = new double[Math.max(16, count)];
+        slots = new int[values.length];
+        for (int i = 0; i < count; i++) {
+            slots[i] = ordered[i];
+            values[i] = fromSortableBits(keys[i]);
+        }
+        size = count;
+    }
+
+    /**
+     * @return the bits of the value, changed so that comparing them as unsigned longs orders them like
+     * {@link Double#compare}: a negative value has every bit flipped, any other only its sign bit
+     */
+    static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ (bits >> 63 | Long.MIN_VALUE);
+    }
+
+    static double fromSortableBits(long key) {
+        return Double.longBitsToDouble(key ^ (~key >> 63 | Long.MIN_VALUE));
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
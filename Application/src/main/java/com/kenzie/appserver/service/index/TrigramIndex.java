@@ -0,0 +1,108 @@
+package com.kenzie.appserver.service.index;
+
+import java.util.Arrays;
+
+/**
+ * An inverted index from each trigram of a text column of the {@link ListingIndex} to the slots whose text contains
+ * it. Each posting list is a sorted int array, grown by doubling, so a list costs four bytes a slot and is read
+ * without any boxing. The owning index updates it in place as listings change and guards it with its own lock.
+ */
+class TrigramIndex {
+    private final Postings[] postingsByTrigram = new Postings[Trigrams.COUNT];
+
+    void add(int slot, String text) {
+        for (int trigram : Trigrams.of(Trigrams.normalize(text), true)) {
+            Postings postings = postingsByTrigram[trigram];
+            if (postings == null) {
+                postings = new Postings();
+                postingsByTrigram[trigram] = postings;
+            }
+            postings.add(slot);
+        }
+    }
+
+    void remove(int slot, String text) {
+        for (int trigram : Trigrams.of(Trigrams.normalize(text), true)) {
+            Postings postings = postingsByTrigram[trigram];
+            if (postings != null) {
+                postings.remove(slot);
+                if (postings.size == 0) {
+                    postingsByTrigram[trigram] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts how many of the trigrams each slot's text contains. The posting lists of the trigrams are copied into
+     * one array and sorted, so a slot's count is the length of its run and the memory taken is proportional to the
+     * postings read rather than to the number of slots.
+     * @param trigrams distinct trigram codes
+     * @param hits receives every slot whose text contains at least one of the trigrams, in increasing slot order
+     */
+    void countHits(int[] trigrams, HitConsumer hits) {
+        int total = 0;
+        for (int trigram : trigrams) {
+            Postings postings = postingsByTrigram[trigram];
+            if (postings != null) {
+                total += postings.size;
+            }
+        }
+        int[] slots = new int[total];
+        int length = 0;
+        for (int trigram : trigrams) {
+            Postings postings = postingsByTrigram[trigram];
+            if (postings != null) {
+                System.arraycopy(postings.slots, 0, slots, length, postings.size);
+                length += postings.size;
+            }
+        }
+        Arrays.sort(slots);
+
+        for (int start = 0; start < length; ) {
+            int end = start + 1;
+            while (end < length && slots[end] == slots[start]) {
+                end++;
+            }
+            hits.accept(slots[start], end - start);
+            start = end;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(postingsByTrigram, null);
+    }
+
+    @FunctionalInterface
+    interface HitConsumer {
+        void accept(int slot, int hits);
+    }
+
+    private static class Postings {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            // Slots are mostly handed out in increasing order, so this is usually an append
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            slots[position] = slot;
+            size++;
+        }
+
+        void remove(int slot) {
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position >= 0) {
+                System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.kenzie.appserver.service.index;
+
+import java.util.Arrays;
+
+/**
+ * Splits text into the three character sequences indexed by {@link TrigramIndex}. Text is lower cased and every run
+ * of characters other than ASCII letters and digits becomes a single space, so each character fits in one of
+ * {@link #ALPHABET} codes and a trigram packs into a small int that can index an array directly.
+ */
+final class Trigrams {
+    static final int ALPHABET = 37;
+    static final int COUNT = ALPHABET * ALPHABET * ALPHABET;
+
+    private Trigrams() {
+    }
+
+    /**
+     * @return the text lower cased, with every other run of characters than letters and digits as one space, trimmed
+     */
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                normalized.append(c);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int length = normalized.length();
+        return space && length > 0 ? normalized.substring(0, length - 1) : normalized.toString();
+    }
+
+    /**
+     * Lists the distinct trigrams of the normalized text's words. Every word is padded with a space in front, so
+     * " ma" marks a word starting with "ma", and, when padEnd is set, with a space behind too. Queries leave the end
+     * unpadded so a partly typed last word still matches.
+     * @param normalized text from {@link #normalize}
+     * @return the trigram codes in ascending order
+     */
+    static int[] of(String normalized, boolean padEnd) {
+        String padded = " " + normalized + (padEnd ? " " : "");
+        int[] trigrams = new int[Math.max(0, padded.length() - 2)];
+        int count = 0;
+        for (int i = 0; i + 2 < padded.length(); i++) {
+            // A trigram spanning two words says nothing about either
+            if (padded.charAt(i + 1) == ' ') {
+                continue;
+            }
+            trigrams[count++] = (code(padded.charAt(i)) * ALPHABET + code(padded.charAt(i + 1))) * ALPHABET
+                    + code(padded.charAt(i + 2));
+        }
+
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static int code(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.kenzie.appserver.service.model;
+
+/**
+ * The number of listings whose value of an attribute lies in a bucket. Both ends of the bucket are inclusive; for an
+ * attribute counted per value they are equal.
+ */
+public class FacetCount {
+    private final double min;
+    private final double max;
+    private final long count;
+
+    public FacetCount(double min, double max, long count) {
+        this.min = min;
+        this.max = max;
+        this.count = count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,25 @@
+package com.kenzie.appserver.service.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The number of listings matching a search, broken down by bucket for each attribute, in attribute order.
+ */
+public class ListingFacets {
+    private final long total;
+    private final Map<String, List<FacetCount>> facets;
+
+    public ListingFacets(long total, Map<String, List<FacetCount>> facets) {
+        this.total = total;
+        this.facets = facets;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<String, List<FacetCount>> getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,24 @@
+package com.kenzie.appserver.service.model;
+
+import java.util.List;
+
+/**
+ * One page of listings. The next cursor is null when there are no more pages.
+ */
+public class ListingPage {
+    private final List<Listing> listings;
+    private final String nextCursor;
+
+    public ListingPage(List<Listing> listings, String nextCursor) {
+        this.listings = listings;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Listing> getListings() {
+        return listings;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -8,4 +8,21 @@ public enum ListingStatus {
     private ListingStatus(String label) {
         this.label = label;
     }
+
+    /**
+     * Looks up a status by its label, ignoring case the same way the rest of the service compares statuses.
+     * @param label the status label, e.g. "For Sale"
+     * @return the matching status, or null if the label is not one of the known statuses
+     */
+    public static ListingStatus fromLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        for (ListingStatus status : values()) {
+            if (status.label.equalsIgnoreCase(label)) {
+                return status;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,109 @@
+package com.kenzie.appserver.service.model;
+
+import java.util.Objects;
+
+/**
+ * The parts of a listing address written as "street, city, state, ZIP", the form every generated listing uses.
+ */
+public class PostalAddress {
+    private final String street;
+    private final String city;
+    private final String state;
+    private final String zipCode;
+
+    public PostalAddress(String street, String city, String state, String zipCode) {
+        this.street = street;
+        this.city = city;
+        this.state = state;
+        this.zipCode = zipCode;
+    }
+
+    /**
+     * Splits the address on its last three commas. A ZIP+4 code is cut down to its first five digits.
+     * @param address the address as entered
+     * @return the parsed address, or null if it does not end in ", city, state, ZIP" with a five digit ZIP
+     */
+    public static PostalAddress parse(String address) {
+        if (address == null) {
+            return null;
+        }
+        int zipStart = address.lastIndexOf(',');
+        int stateStart = zipStart > 0 ? address.lastIndexOf(',', zipStart - 1) : -1;
+        int cityStart = stateStart > 0 ? address.lastIndexOf(',', stateStart - 1) : -1;
+        if (cityStart <= 0) {
+            return null;
+        }
+
+        String zipCode = normalizeZipCode(address.substring(zipStart + 1).trim());
+        String state = address.substring(stateStart + 1, zipStart).trim();
+        String city = address.substring(cityStart + 1, stateStart).trim();
+        String street = address.substring(0, cityStart).trim();
+        if (zipCode == null || state.isEmpty() || city.isEmpty()) {
+            return null;
+        }
+        return new PostalAddress(street, city, state, zipCode);
+    }
+
+    /**
+     * @return the five digit ZIP code, or null if the value is neither a ZIP nor a ZIP+4 code
+     */
+    public static String normalizeZipCode(String zipCode) {
+        if (zipCode == null) {
+            return null;
+        }
+        String trimmed = zipCode.trim();
+        if (trimmed.length() == 10 && trimmed.charAt(5) == '-' && isDigits(trimmed.substring(6))) {
+            trimmed = trimmed.substring(0, 5);
+        }
+        return trimmed.length() == 5 && isDigits(trimmed) ? trimmed : null;
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getStreet() {
+        return street;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getZipCode() {
+        return zipCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PostalAddress)) return false;
+        PostalAddress that = (PostalAddress) o;
+        return Objects.equals(street, that.street) && Objects.equals(city, that.city)
+                && Objects.equals(state, that.state) && Objects.equals(zipCode, that.zipCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(street, city, state, zipCode);
+    }
+
+    @Override
+    public String toString() {
+        return "PostalAddress{" +
+                "street='" + street + '\'' +
+                ", city='" + city + '\'' +
+                ", state='" + state + '\'' +
+                ", zipCode='" + zipCode + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+package com.kenzie.appserver.service.model;
+
+/**
+ * Market statistics over the listings for sale in one state or ZIP code. Quantiles are approximate, within 1% of a
+ * listing's actual value; the price per square foot is null when no listing in the region has a floor area.
+ */
+public class RegionStatistics {
+    private final String region;
+    private final long listings;
+    private final double averagePrice;
+    private final double lowerQuartilePrice;
+    private final double medianPrice;
+    private final double upperQuartilePrice;
+    private final Double averagePricePerSquareFootage;
+    private final Double medianPricePerSquareFootage;
+
+    public RegionStatistics(String region, long listings, double averagePrice, double lowerQuartilePrice,
+                            double medianPrice, double upperQuartilePrice, Double averagePricePerSquareFootage,
+                            Double medianPricePerSquareFootage) {
+        this.region = region;
+        this.listings = listings;
+        this.averagePrice = averagePrice;
+        this.lowerQuartilePrice = lowerQuartilePrice;
+        this.medianPrice = medianPrice;
+        this.upperQuartilePrice = upperQuartilePrice;
+        this.averagePricePerSquareFootage = averagePricePerSquareFootage;
+        this.medianPricePerSquareFootage = medianPricePerSquareFootage;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getListings() {
+        return listings;
+    }
+
+    public double getAveragePrice() {
+        return averagePrice;
+    }
+
+    public double getLowerQuartilePrice() {
+        return lowerQuartilePrice;
+    }
+
+    public double getMedianPrice() {
+        return medianPrice;
+    }
+
+    public double getUpperQuartilePrice() {
+        return upperQuartilePrice;
+    }
+
+    public Double getAveragePricePerSquareFootage() {
+        return averagePricePerSquareFootage;
+    }
+
+    public Double getMedianPricePerSquareFootage() {
+        return medianPricePerSquareFootage;
+    }
+}
@@ -0,0 +1,249 @@
+package com.kenzie.appserver.service.stats;
+
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.PostalAddress;
+import com.kenzie.appserver.service.model.RegionStatistics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Running market statistics for the listings for sale in every state and ZIP code: the number of listings, their
+ * price and floor area totals, and a {@link QuantileSketch} each of their price and price per square foot. Every
+ * write through the service updates the regions of the listing as it was and as it is now, so reading a region's
+ * statistics costs a walk over a few hundred sketch buckets at most, whatever the size of the table.
+ *
+ * What each listing contributed is remembered by listing number, so a write only needs the new copy of the listing.
+ * Like the {@link com.kenzie.appserver.service.index.ListingIndex}, the statistics are filled in by one pass over
+ * the table at start-up, and writes that arrive while that pass is running win over the loaded copy.
+ */
+@Component
+public class MarketStatistics {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Contribution> contributions = new HashMap<>();
+    private final Map<String, Region> regionsByState = new TreeMap<>();
+    private final Map<String, Region> regionsByZipCode = new HashMap<>();
+
+    private volatile boolean loaded;
+    private Set<String> writtenDuringLoad;
+
+    /**
+     * Empties the statistics and marks them as not loaded ahead of a series of {@link #load} calls.
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            contributions.clear();
+            regionsByState.clear();
+            regionsByZipCode.clear();
+            writtenDuringLoad = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds listings read by a rebuild. Safe to call from several threads.
+     */
+    public void load(Iterable<Listing> listings) {
+        lock.writeLock().lock();
+        try {
+            for (Listing listing : listings) {
+                if (writtenDuringLoad != null && !writtenDuringLoad.contains(listing.getListingNumber())) {
+                    apply(listing);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param completed whether every listing was loaded; if not the statistics stay unloaded
+     */
+    public void endRebuild(boolean completed) {
+        lock.writeLock().lock();
+        try {
+            writtenDuringLoad = null;
+            loaded = completed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Counts the listing in its regions if it is for sale, replacing what an earlier copy of it contributed.
+     */
+    public void put(Listing listing) {
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringLoad != null) {
+                writtenDuringLoad.add(listing.getListingNumber());
+            }
+            apply(listing);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String listingNumber) {
+        lock.writeLock().lock();
+        try {
+            if (writtenDuringLoad != null) {
+                writtenDuringLoad.add(listingNumber);
+            }
+            withdraw(listingNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the statistics for the state, or null if it has no listings for sale
+     */
+    public RegionStatistics forState(String state) {
+        lock.readLock().lock();
+        try {
+            Region region = regionsByState.get(state);
+            return region != null ? region.statistics(state) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the statistics for the ZIP code, or null if it has no listings for sale
+     */
+    public RegionStatistics forZipCode(String zipCode) {
+        lock.readLock().lock();
+        try {
+            Region region = regionsByZipCode.get(zipCode);
+            return region != null ? region.statistics(zipCode) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the statistics for every state with listings for sale, in state order
+     */
+    public List<RegionStatistics> forEveryState() {
+        lock.readLock().lock();
+        try {
+            List<RegionStatistics> statistics = new ArrayList<>(regionsByState.size());
+            regionsByState.forEach((state, region) -> statistics.add(region.statistics(state)));
+            return statistics;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Listing listing) {
+        withdraw(listing.getListingNumber());
+        PostalAddress address = PostalAddress.parse(listing.getAddress());
+        // Only the listings on the market count, and only those with a price and a region to count them in
+        if (address == null || listing.getPrice() < 1
+                || !ListingStatus.FOR_SALE.label.equalsIgnoreCase(listing.getListingStatus())) {
+            return;
+        }
+
+        Contribution contribution = new Contribution(address.getState(), address.getZipCode(), listing.getPrice(),
+                listing.getSquareFootage());
+        contributions.put(listing.getListingNumber(), contribution);
+        regionsByState.computeIfAbsent(contribution.state, state -> new Region()).add(contribution);
+        regionsByZipCode.computeIfAbsent(contribution.zipCode, zipCode -> new Region()).add(contribution);
+    }
+
+    private void withdraw(String listingNumber) {
+        Contribution contribution = contributions.remove(listingNumber);
+        if (contribution == null) {
+            return;
+        }
+        if (regionsByState.get(contribution.state).remove(contribution)) {
+            regionsByState.remove(contribution.state);
+        }
+        if (regionsByZipCode.get(contribution.zipCode).remove(contribution)) {
+            regionsByZipCode.remove(contribution.zipCode);
+        }
+    }
+
+    private static class Contribution {
+        private final String state;
+        private final String zipCode;
+        private final int price;
+        private final int squareFootage;
+
+        Contribution(String state, String zipCode, int price, int squareFootage) {
+            this.state = state;
+            this.zipCode = zipCode;
+            this.price = price;
+            this.squareFootage = squareFootage;
+        }
+
+        boolean hasFloorArea() {
+            return squareFootage > 0;
+        }
+
+        double pricePerSquareFootage() {
+            return (double) price / squareFootage;
+        }
+    }
+
+    private static class Region {
+        private final QuantileSketch prices = new QuantileSketch();
+        private final QuantileSketch pricesPerSquareFootage = new QuantileSketch();
+        private long listings;
+        private long priceTotal;
+        // Only the listings with a floor area count towards the average price per square foot
+        private long pricedAreaPriceTotal;
+        private long squareFootageTotal;
+
+        void add(Contribution contribution) {
+            listings++;
+            priceTotal += contribution.price;
+            prices.add(contribution.price);
+            if (contribution.hasFloorArea()) {
+                pricedAreaPriceTotal += contribution.price;
+                squareFootageTotal += contribution.squareFootage;
+                pricesPerSquareFootage.add(contribution.pricePerSquareFootage());
+            }
+        }
+
+        /**
+         * @return whether the region has no listings left
+         */
+        boolean remove(Contribution contribution) {
+            listings--;
+            priceTotal -= contribution.price;
+            prices.remove(contribution.price);
+            if (contribution.hasFloorArea()) {
+                pricedAreaPriceTotal -= contribution.price;
+                squareFootageTotal -= contribution.squareFootage;
+                pricesPerSquareFootage.remove(contribution.pricePerSquareFootage());
+            }
+            return listings == 0;
+        }
+
+        RegionStatistics statistics(String name) {
+            boolean hasFloorArea = squareFootageTotal > 0;
+            return new RegionStatistics(name, listings, (double) priceTotal / listings, prices.quantile(0.25),
+                    prices.quantile(0.5), prices.quantile(0.75),
+                    hasFloorArea ? (double) pricedAreaPriceTotal / squareFootageTotal : null,
+                    hasFloorArea ? pricesPerSquareFootage.quantile(0.5) : null);
+        }
+    }
+}
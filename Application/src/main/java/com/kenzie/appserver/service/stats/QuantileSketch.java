@@ -0,0 +1,81 @@
+package com.kenzie.appserver.service.stats;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A quantile sketch of positive values in the style of DDSketch. Each value is counted in a bucket whose bounds grow
+ * by a factor of {@link #GAMMA}, so every quantile it reports is within {@link #RELATIVE_ACCURACY} of a value that
+ * was added, and its size grows with the logarithm of the range of values rather than with their number. Unlike a
+ * t-digest, removing a value is exactly as precise as adding it, so the sketch can follow listings whose price
+ * changes or that leave the market. Not thread safe; {@link MarketStatistics} guards it with its own lock.
+ */
+class QuantileSketch {
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final NavigableMap<Integer, long[]> countsByBucket = new TreeMap<>();
+    private long count;
+
+    /**
+     * @param value a value greater than zero
+     */
+    void add(double value) {
+        countsByBucket.computeIfAbsent(bucket(value), key -> new long[1])[0]++;
+        count++;
+    }
+
+    /**
+     * Removes one occurrence of a value that was added before; a value that was never added is ignored.
+     */
+    void remove(double value) {
+        int bucket = bucket(value);
+        long[] bucketCount = countsByBucket.get(bucket);
+        if (bucketCount == null) {
+            return;
+        }
+        if (--bucketCount[0] == 0) {
+            countsByBucket.remove(bucket);
+        }
+        count--;
+    }
+
+    long count() {
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.5 for the median
+     * @return a value within the relative accuracy of the value at that rank, or NaN if the sketch is empty
+     */
+    double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(quantile * (count - 1));
+        long seen = 0;
+        for (Map.Entry<Integer, long[]> entry : countsByBucket.entrySet()) {
+            seen += entry.getValue()[0];
+            if (seen > rank) {
+                return value(entry.getKey());
+            }
+        }
+        return value(countsByBucket.lastKey());
+    }
+
+    /**
+     * Bucket k holds the values in (GAMMA^(k-1), GAMMA^k].
+     */
+    private static int bucket(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    /**
+     * The point of the bucket whose relative distance to both of its bounds is the same.
+     */
+    private static double value(int bucket) {
+        return 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+    }
+}
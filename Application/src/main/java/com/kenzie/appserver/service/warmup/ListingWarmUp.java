@@ -0,0 +1,236 @@
+package com.kenzie.appserver.service.warmup;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+import com.kenzie.appserver.repositories.ListingQueryRepository;
+import com.kenzie.appserver.service.ListingService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms the listing cache and the in-memory index after a deploy, so the first minutes of traffic are not served by
+ * a cold cache and full table scans. The most requested listings, named one per line in listing.warmup.hotListings,
+ * are loaded into the cache first; then the index, market statistics and listing number filter are rebuilt with one
+ * parallel scan, which also caches every listing for sale. Every read comes out of a budget of
+ * listing.warmup.readCapacityFraction of the table's provisioned read capacity, so the warm-up cannot starve the
+ * live traffic sharing the table. A table billed on demand has no provisioned capacity to share, and is read
+ * unthrottled.
+ *
+ * As the "listingWarmUp" health indicator, which the readiness group includes, it keeps the readiness probe out of
+ * service until the warm-up finishes or has run for listing.warmup.timeBudgetSeconds, whichever comes first. The
+ * warm-up carries on after the budget; traffic is just no longer held back for it. A warm-up that fails still lets
+ * traffic in, since every search falls back to DynamoDB.
+ *
+ * Progress is reported as listing.warmup.listings, the listings read so far by each phase, listing.warmup.progress,
+ * the fraction read of the hot listings and the table together, and listing.warmup.duration.
+ */
+@Component
+public class ListingWarmUp implements HealthIndicator, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(ListingWarmUp.class);
+
+    enum State { PENDING, RUNNING, COMPLETED, FAILED }
+
+    private final ListingService listingService;
+    private final ListingQueryRepository listingQueryRepository;
+    private final ResourceLoader resourceLoader;
+    private final boolean enabled;
+    private final String hotListingsLocation;
+    private final double readCapacityFraction;
+    private final long timeBudgetNanos;
+    private final Ticker ticker;
+
+    private volatile State state = State.PENDING;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile int hotListings;
+    private volatile long expectedListings;
+    private final AtomicLong hotListingsLoaded = new AtomicLong();
+    private final AtomicLong listingsScanned = new AtomicLong();
+
+    @Autowired
+    public ListingWarmUp(ListingService listingService, ListingQueryRepository listingQueryRepository,
+                         ResourceLoader resourceLoader,
+                         @Value("${listing.warmup.enabled:true}") boolean enabled,
+                         @Value("${listing.warmup.hotListings:}") String hotListingsLocation,
+                         @Value("${listing.warmup.readCapacityFraction:0.5}") double readCapacityFraction,
+                         @Value("${listing.warmup.timeBudgetSeconds:120}") long timeBudgetSeconds) {
+        this(listingService, listingQueryRepository, resourceLoader, enabled, hotListingsLocation,
+                readCapacityFraction, timeBudgetSeconds, Ticker.systemTicker());
+    }
+
+    ListingWarmUp(ListingService listingService, ListingQueryRepository listingQueryRepository,
+                  ResourceLoader resourceLoader, boolean enabled, String hotListingsLocation,
+                  double readCapacityFraction, long timeBudgetSeconds, Ticker ticker) {
+        this.listingService = listingService;
+        this.listingQueryRepository = listingQueryRepository;
+        this.resourceLoader = resourceLoader;
+        this.enabled = enabled;
+        this.hotListingsLocation = hotListingsLocation;
+        this.readCapacityFraction = readCapacityFraction;
+        this.timeBudgetNanos = TimeUnit.SECONDS.toNanos(timeBudgetSeconds);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Runs the warm-up on the calling thread. When it is disabled only the index is rebuilt, at full speed, and
+     * readiness is not held back.
+     */
+    public void run() {
+        startedAt = ticker.read();
+        state = State.RUNNING;
+        try {
+            if (!enabled) {
+                listingService.rebuildIndex();
+            } else {
+                RateLimiter readCapacity = readCapacity();
+                List<String> listingNumbers = readHotListings();
+                hotListings = listingNumbers.size();
+                expectedListings = listingQueryRepository.tableItemCount();
+                for (String listingNumber : listingNumbers) {
+                    if (readCapacity != null) {
+                        readCapacity.acquire();
+                    }
+                    listingService.findByListingNumber(listingNumber);
+                    hotListingsLoaded.incrementAndGet();
+                }
+                listingService.rebuildIndex(readCapacity, listingsScanned::addAndGet);
+            }
+            state = State.COMPLETED;
+        } catch (RuntimeException e) {
+            state = State.FAILED;
+            log.error("Listing warm-up failed, searches fall back to DynamoDB", e);
+        } finally {
+            finishedAt = ticker.read();
+        }
+        log.info("Listing warm-up {} in {} ms: {} hot listings, {} listings scanned", state,
+                TimeUnit.NANOSECONDS.toMillis(finishedAt - startedAt), hotListingsLoaded.get(), listingsScanned.get());
+    }
+
+    /**
+     * @return whether traffic should be let in: the warm-up is disabled, has finished or has used up its time budget
+     */
+    public boolean isReady() {
+        State current = state;
+        return !enabled || current == State.COMPLETED || current == State.FAILED
+                || current == State.RUNNING && ticker.read() - startedAt >= timeBudgetNanos;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = isReady() ? Health.up() : Health.outOfService();
+        return health.withDetail("state", state)
+                .withDetail("hotListingsLoaded", hotListingsLoaded.get())
+                .withDetail("listingsScanned", listingsScanned.get())
+                .withDetail("progress", progress())
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("listing.warmup.listings", hotListingsLoaded, AtomicLong::get)
+                .tag("phase", "hot")
+                .description("The hot listings loaded into the cache by the warm-up")
+                .register(registry);
+        FunctionCounter.builder("listing.warmup.listings", listingsScanned, AtomicLong::get)
+                .tag("phase", "scan")
+                .description("The listings read by the warm-up's scan of the table")
+                .register(registry);
+        Gauge.builder("listing.warmup.progress", this, ListingWarmUp::progress)
+                .description("The fraction of the warm-up's reads done, 1 once it has finished")
+                .register(registry);
+        TimeGauge.builder("listing.warmup.duration", this, TimeUnit.NANOSECONDS, ListingWarmUp::elapsedNanos)
+                .description("How long the warm-up has run, or ran")
+                .register(registry);
+    }
+
+    State getState() {
+        return state;
+    }
+
+    /**
+     * @return the fraction of the hot listings and the table read so far; the table's size is DynamoDB's estimate,
+     * so this is capped just short of 1 until the warm-up finishes
+     */
+    double progress() {
+        State current = state;
+        if (current == State.COMPLETED || current == State.FAILED) {
+            return 1;
+        }
+        long expected = hotListings + expectedListings;
+        if (current == State.PENDING || expected == 0) {
+            return 0;
+        }
+        return Math.min(0.99, (double) (hotListingsLoaded.get() + listingsScanned.get()) / expected);
+    }
+
+    private double elapsedNanos() {
+        State current = state;
+        if (current == State.PENDING) {
+            return 0;
+        }
+        return (current == State.RUNNING ? ticker.read() : finishedAt) - startedAt;
+    }
+
+    /**
+     * @return a limiter allowing the configured fraction of the table's provisioned reads a second, or null to leave
+     * the reads unthrottled when the fraction is 0 or the table is billed on demand
+     */
+    private RateLimiter readCapacity() {
+        if (readCapacityFraction <= 0) {
+            return null;
+        }
+        long provisioned = listingQueryRepository.provisionedReadCapacityUnits();
+        if (provisioned == 0) {
+            return null;
+        }
+        return RateLimiter.create(readCapacityFraction * provisioned);
+    }
+
+    /**
+     * @return the listing numbers in the hot listings file, skipping blank lines and # comments, or none if no file
+     * is configured or it cannot be read
+     */
+    private List<String> readHotListings() {
+        if (hotListingsLocation == null || hotListingsLocation.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        Resource resource = resourceLoader.getResource(hotListingsLocation);
+        List<String> listingNumbers = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    listingNumbers.add(line);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read the hot listings from {}, warming up without them", hotListingsLocation, e);
+            return Collections.emptyList();
+        }
+        return listingNumbers;
+    }
+}
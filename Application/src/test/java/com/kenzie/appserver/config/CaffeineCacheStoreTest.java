@@ -0,0 +1,258 @@
+package com.kenzie.appserver.config;
+
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CaffeineCacheStoreTest {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void add_moreThanMaximumWeight_evictsDownToTheBound() {
+        Listing first = listing(0, 250000);
+        int weight = CaffeineCacheStore.weigh(first.getListingNumber(), first);
+        CaffeineCacheStore cacheStore = cacheStore(10L * weight);
+
+        for (int i = 0; i < 1000; i++) {
+            Listing listing = listing(i, 250000);
+            cacheStore.add(listing.getListingNumber(), listing);
+        }
+
+        Assertions.assertTrue(cacheStore.size() <= 10, "The cache holds " + cacheStore.size() + " listings");
+    }
+
+    @Test
+    void load_repeatedAndMissing_loadsOnceAndDoesNotCacheMissingListings() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            return key.startsWith("LIST") ? listing(1, 250000) : null;
+        });
+
+        cacheStore.load("LIST0001");
+        Listing cached = cacheStore.load("LIST0001");
+        Assertions.assertNull(cacheStore.load("MISSING"));
+
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertEquals("LIST0001", cached.getListingNumber());
+        Assertions.assertNull(cacheStore.get("MISSING"));
+    }
+
+    @Test
+    void load_missingListing_isRememberedUntilAddedOrExpired() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        cacheStore.load("LIST0001");
+        cacheStore.load("LIST0001");
+        Assertions.assertEquals(1, loads.get(), "The miss was remembered");
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        cacheStore.load("LIST0001");
+        Assertions.assertEquals(2, loads.get(), "The remembered miss expired");
+
+        cacheStore.add("LIST0001", listing(1, 250000));
+        Assertions.assertEquals(250000, cacheStore.load("LIST0001").getPrice());
+    }
+
+    @Test
+    void write_olderVersionAfterNewer_keepsTheNewerListing() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        long older = cacheStore.nextVersion();
+        long newer = cacheStore.nextVersion();
+
+        cacheStore.write("LIST0001", listing(1, 300000), newer);
+        cacheStore.write("LIST0001", listing(1, 250000), older);
+
+        Assertions.assertEquals(300000, cacheStore.get("LIST0001").getPrice());
+    }
+
+    @Test
+    void write_versionTakenBeforeAnEvict_doesNotBringTheListingBack() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        long beforeDelete = cacheStore.nextVersion();
+
+        cacheStore.evict("LIST0001");
+        cacheStore.write("LIST0001", listing(1, 250000), beforeDelete);
+        Assertions.assertNull(cacheStore.get("LIST0001"));
+
+        cacheStore.write("LIST0001", listing(1, 275000), cacheStore.nextVersion());
+        Assertions.assertEquals(275000, cacheStore.get("LIST0001").getPrice(), "A write after the evict is cached");
+    }
+
+    @Test
+    void load_missWhileAnotherListingIsWritten_isStillRemembered() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            cacheStore.add("LIST0002", listing(2, 300000));
+            return null;
+        });
+
+        Assertions.assertNull(cacheStore.load("MISSING"));
+        Assertions.assertNull(cacheStore.load("MISSING"));
+
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void write_afterRememberedMiss_isReadWithoutLoading() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        AtomicInteger loads = new AtomicInteger();
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        cacheStore.load("LIST0001");
+
+        cacheStore.write("LIST0001", listing(1, 250000), cacheStore.nextVersion());
+
+        Assertions.assertEquals(250000, cacheStore.load("LIST0001").getPrice());
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void load_refreshAfterWrite_keepsTheWriteVersion() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        cacheStore.setLoader(key -> listing(1, 300000));
+        long older = cacheStore.nextVersion();
+        cacheStore.write("LIST0001", listing(1, 275000), cacheStore.nextVersion());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        cacheStore.load("LIST0001");
+        cacheStore.write("LIST0001", listing(1, 250000), older);
+
+        Assertions.assertEquals(300000, cacheStore.get("LIST0001").getPrice());
+    }
+
+    @Test
+    void load_pastRefreshAge_returnsCachedListingAndReloadsIt() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        AtomicInteger price = new AtomicInteger(250000);
+        cacheStore.setLoader(key -> listing(1, price.get()));
+        cacheStore.load("LIST0001");
+
+        price.set(275000);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        Assertions.assertEquals(250000, cacheStore.load("LIST0001").getPrice(), "The stale copy is returned");
+        Assertions.assertEquals(275000, cacheStore.load("LIST0001").getPrice(), "The reload replaced it");
+    }
+
+    @Test
+    void get_pastHardExpiry_isDropped() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        cacheStore.add("LIST0001", listing(1, 250000));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(121));
+
+        Assertions.assertNull(cacheStore.get("LIST0001"));
+    }
+
+    @Test
+    void load_concurrentMisses_shareOneReadAndCountCoalescedLoads() throws Exception {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cacheStore.bindTo(registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch finishRead = new CountDownLatch(1);
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            readStarted.countDown();
+            try {
+                finishRead.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return listing(1, 250000);
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Listing>> results = new ArrayList<>();
+            results.add(callers.submit(() -> cacheStore.load("LIST0001")));
+            readStarted.await();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> cacheStore.load("LIST0001")));
+            }
+            FunctionCounter coalesced = registry.get(CacheStore.COALESCED_LOADS_METER).functionCounter();
+            while (coalesced.count() < 4) {
+                Thread.sleep(1);
+            }
+            finishRead.countDown();
+
+            for (Future<Listing> result : results) {
+                Assertions.assertEquals("LIST0001", result.get(5, TimeUnit.SECONDS).getListingNumber());
+            }
+            Assertions.assertEquals(1, loads.get());
+            Assertions.assertEquals(4, coalesced.count());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void bindTo_registry_recordsHitsAndMisses() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        cacheStore.setLoader(key -> listing(1, 250000));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cacheStore.bindTo(registry);
+
+        cacheStore.load("LIST0001");
+        cacheStore.get("LIST0001");
+        cacheStore.get("LIST0002");
+
+        Assertions.assertEquals(1, registry.get("cache.gets").tag("cache", CacheStore.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(2, registry.get("cache.gets").tag("cache", CacheStore.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void bindTo_registry_reportsHeapBytesPerListing() {
+        CaffeineCacheStore cacheStore = cacheStore(1 << 20);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cacheStore.bindTo(registry);
+        Listing listing = listing(1, 250000);
+
+        cacheStore.add(listing.getListingNumber(), listing);
+        cacheStore.size();
+
+        Assertions.assertEquals(CaffeineCacheStore.weigh(listing.getListingNumber(), listing),
+                registry.get(CacheStore.HEAP_BYTES_PER_LISTING_METER).gauge().value());
+    }
+
+    /**
+     * Refreshes after 60 seconds, expires after 120 and forgets misses after 30, running reloads on the calling
+     * thread.
+     */
+    private CaffeineCacheStore cacheStore(long maximumWeight) {
+        return new CaffeineCacheStore(maximumWeight, 60, 120, 30, TimeUnit.SECONDS, Runnable::run, nanos::get);
+    }
+
+    private static Listing listing(int number, int price) {
+        return new Listing(String.format("LIST%04d", number), number + " Oak Street, Dayton, Ohio, 45402",
+                1800, price, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+    }
+}
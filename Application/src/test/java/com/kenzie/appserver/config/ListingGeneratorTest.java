@@ -0,0 +1,24 @@
+package com.kenzie.appserver.config;
+
+import com.kenzie.appserver.service.geo.ZipCodeCentroids;
+import com.kenzie.appserver.service.model.PostalAddress;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+public class ListingGeneratorTest {
+
+    @Test
+    void generateListing_anyListing_hasAZipCodeInTheBundledCentroidTable() {
+        ZipCodeCentroids centroids = new ZipCodeCentroids(new DefaultResourceLoader(),
+                "classpath:geo/zip-centroids.txt");
+        ListingGenerator generator = new ListingGenerator();
+
+        for (int i = 0; i < 100; i++) {
+            String address = generator.generateListing().getAddress();
+            PostalAddress postalAddress = PostalAddress.parse(address);
+            Assertions.assertNotNull(postalAddress, address);
+            Assertions.assertTrue(centroids.contains(postalAddress.getZipCode()), address);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.kenzie.appserver.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+public class MulticastCacheInvalidationBroadcasterTest {
+
+    @Test
+    void encode_thenDecode_roundTripsTheInvalidation() {
+        UUID sender = UUID.randomUUID();
+
+        ByteBuffer datagram = ByteBuffer.wrap(MulticastCacheInvalidationBroadcaster.encode(sender, "LIST0001", 42));
+
+        Assertions.assertEquals(sender, new UUID(datagram.getLong(), datagram.getLong()));
+        MulticastCacheInvalidationBroadcaster.Invalidation invalidation =
+                MulticastCacheInvalidationBroadcaster.decode(datagram);
+        Assertions.assertEquals("LIST0001", invalidation.listingNumber);
+        Assertions.assertEquals(42, invalidation.version);
+    }
+
+    @Test
+    void decode_truncatedDatagram_returnsNull() {
+        byte[] encoded = MulticastCacheInvalidationBroadcaster.encode(UUID.randomUUID(), "LIST0001", 42);
+        ByteBuffer truncated = ByteBuffer.wrap(encoded, 0, encoded.length - 3);
+        truncated.position(16);
+
+        Assertions.assertNull(MulticastCacheInvalidationBroadcaster.decode(truncated));
+    }
+
+    @Test
+    void encode_listingNumberLongerThanADatagram_returnsNull() {
+        StringBuilder listingNumber = new StringBuilder();
+        for (int i = 0; i < MulticastCacheInvalidationBroadcaster.MAX_DATAGRAM_BYTES; i++) {
+            listingNumber.append('L');
+        }
+
+        Assertions.assertNull(MulticastCacheInvalidationBroadcaster.encode(UUID.randomUUID(),
+                listingNumber.toString(), 42));
+    }
+
+    @Test
+    void backoffMillis_repeatedFailures_doublesUpToTheCap() {
+        Assertions.assertEquals(10, MulticastCacheInvalidationBroadcaster.backoffMillis(1));
+        Assertions.assertEquals(20, MulticastCacheInvalidationBroadcaster.backoffMillis(2));
+        Assertions.assertEquals(2560, MulticastCacheInvalidationBroadcaster.backoffMillis(9));
+        Assertions.assertEquals(5000, MulticastCacheInvalidationBroadcaster.backoffMillis(10));
+        Assertions.assertEquals(5000, MulticastCacheInvalidationBroadcaster.backoffMillis(Integer.MAX_VALUE));
+    }
+}
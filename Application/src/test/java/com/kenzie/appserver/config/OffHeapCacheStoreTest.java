@@ -0,0 +1,169 @@
+package com.kenzie.appserver.config;
+
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OffHeapCacheStoreTest {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void load_repeatedAndMissing_loadsOnceAndRemembersTheMiss() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        AtomicInteger loads = new AtomicInteger();
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            return key.startsWith("LIST") ? listing(1, 250000) : null;
+        });
+
+        cacheStore.load("LIST0001");
+        Listing cached = cacheStore.load("LIST0001");
+        Assertions.assertNull(cacheStore.load("MISSING"));
+        Assertions.assertNull(cacheStore.load("MISSING"));
+
+        Assertions.assertEquals(2, loads.get());
+        Assertions.assertEquals("LIST0001", cached.getListingNumber());
+        Assertions.assertEquals(1, cacheStore.size());
+    }
+
+    @Test
+    void load_writeToAnotherListingDuringTheRead_stillCachesTheListing() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        AtomicInteger loads = new AtomicInteger();
+        cacheStore.setLoader(key -> {
+            loads.incrementAndGet();
+            cacheStore.add("LIST0002", listing(2, 300000));
+            return listing(1, 250000);
+        });
+
+        cacheStore.load("LIST0001");
+        cacheStore.load("LIST0001");
+
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void load_evictOfTheSameListingDuringTheRead_doesNotCacheWhatWasRead() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        cacheStore.setLoader(key -> {
+            cacheStore.evict(key);
+            return listing(1, 250000);
+        });
+
+        Assertions.assertEquals(250000, cacheStore.load("LIST0001").getPrice());
+
+        Assertions.assertNull(cacheStore.get("LIST0001"));
+    }
+
+    @Test
+    void write_olderVersionAfterNewer_keepsTheNewerListing() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        long older = cacheStore.nextVersion();
+        long newer = cacheStore.nextVersion();
+
+        cacheStore.write("LIST0001", listing(1, 300000), newer);
+        cacheStore.write("LIST0001", listing(1, 250000), older);
+
+        Assertions.assertEquals(300000, cacheStore.get("LIST0001").getPrice());
+    }
+
+    @Test
+    void write_versionTakenBeforeAnEvict_doesNotBringTheListingBack() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        long beforeDelete = cacheStore.nextVersion();
+
+        cacheStore.evict("LIST0001");
+        cacheStore.write("LIST0001", listing(1, 250000), beforeDelete);
+        Assertions.assertNull(cacheStore.get("LIST0001"));
+
+        cacheStore.write("LIST0001", listing(1, 275000), cacheStore.nextVersion());
+        Assertions.assertEquals(275000, cacheStore.get("LIST0001").getPrice(), "A write after the evict is cached");
+    }
+
+    @Test
+    void load_pastRefreshAge_returnsCachedListingAndReloadsItKeepingTheVersion() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        cacheStore.setLoader(key -> listing(1, 300000));
+        long older = cacheStore.nextVersion();
+        cacheStore.write("LIST0001", listing(1, 275000), cacheStore.nextVersion());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        Assertions.assertEquals(275000, cacheStore.load("LIST0001").getPrice(), "The stale copy is returned");
+        cacheStore.write("LIST0001", listing(1, 250000), older);
+
+        Assertions.assertEquals(300000, cacheStore.get("LIST0001").getPrice(), "The reload replaced it");
+    }
+
+    @Test
+    void load_evictedAndRefilledWhileARefreshIsPending_keepsTheRefill() {
+        List<Runnable> pending = new ArrayList<>();
+        OffHeapCacheStore cacheStore = new OffHeapCacheStore(16, 60, 120, 30, TimeUnit.SECONDS, pending::add,
+                nanos::get);
+        AtomicInteger price = new AtomicInteger(250000);
+        cacheStore.setLoader(key -> listing(1, price.get()));
+        cacheStore.load("LIST0001");
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        cacheStore.load("LIST0001");
+
+        cacheStore.evict("LIST0001");
+        price.set(300000);
+        cacheStore.load("LIST0001");
+        // The pending reload read the table before the evict
+        price.set(250000);
+        pending.forEach(Runnable::run);
+
+        Assertions.assertEquals(300000, cacheStore.get("LIST0001").getPrice());
+    }
+
+    @Test
+    void get_pastHardExpiry_isDropped() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        cacheStore.add("LIST0001", listing(1, 250000));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(121));
+
+        Assertions.assertNull(cacheStore.get("LIST0001"));
+    }
+
+    @Test
+    void bindTo_registry_recordsHitsMissesAndMemory() {
+        OffHeapCacheStore cacheStore = cacheStore(16);
+        cacheStore.setLoader(key -> listing(1, 250000));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cacheStore.bindTo(registry);
+
+        cacheStore.load("LIST0001");
+        cacheStore.get("LIST0001");
+        cacheStore.get("LIST0002");
+
+        Assertions.assertEquals(1, registry.get("cache.gets").tag("cache", CacheStore.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(2, registry.get("cache.gets").tag("cache", CacheStore.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count());
+        Assertions.assertEquals(16 * OffHeapListingTable.SLOT_BYTES,
+                registry.get(OffHeapCacheStore.OFF_HEAP_BYTES_METER).gauge().value());
+        Assertions.assertTrue(registry.get(CacheStore.HEAP_BYTES_PER_LISTING_METER).gauge().value() > 0);
+    }
+
+    /**
+     * Refreshes after 60 seconds, expires after 120 and forgets misses after 30, running reloads on the calling
+     * thread.
+     */
+    private OffHeapCacheStore cacheStore(int maximumListings) {
+        return new OffHeapCacheStore(maximumListings, 60, 120, 30, TimeUnit.SECONDS, Runnable::run, nanos::get);
+    }
+
+    private static Listing listing(int number, int price) {
+        return new Listing(String.format("LIST%04d", number), number + " Oak Street, Dayton, Ohio, 45402",
+                1800, price, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+    }
+}
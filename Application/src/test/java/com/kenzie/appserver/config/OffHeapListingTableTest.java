@@ -0,0 +1,97 @@
+package com.kenzie.appserver.config;
+
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class OffHeapListingTableTest {
+
+    @Test
+    void put_thenRead_decodesEveryField() {
+        OffHeapListingTable table = new OffHeapListingTable(16);
+        Listing listing = new Listing("LIST0001", "12 Rue de l'\u00c9glise, Montr\u00e9al", 1800, 250000, 3, 2.5, 0.75,
+                null);
+
+        Assertions.assertTrue(table.put("LIST0001", listing, 7, 42));
+        int slot = table.find("LIST0001");
+        Listing read = table.read(slot);
+
+        Assertions.assertEquals("LIST0001", read.getListingNumber());
+        Assertions.assertEquals("12 Rue de l'\u00c9glise, Montr\u00e9al", read.getAddress());
+        Assertions.assertEquals(1800, read.getSquareFootage());
+        Assertions.assertEquals(250000, read.getPrice());
+        Assertions.assertEquals(3, read.getNumBedrooms());
+        Assertions.assertEquals(2.5, read.getNumBathrooms());
+        Assertions.assertEquals(0.75, read.getLotSize());
+        Assertions.assertNull(read.getListingStatus());
+        Assertions.assertEquals(7, table.version(slot));
+        Assertions.assertEquals(42, table.writtenAt(slot));
+    }
+
+    @Test
+    void remove_amongManyKeys_leavesTheOthersFindable() {
+        OffHeapListingTable table = new OffHeapListingTable(1000);
+        for (int i = 0; i < 1000; i++) {
+            table.put(key(i), listing(i), 0, 0);
+        }
+
+        for (int i = 0; i < 1000; i += 2) {
+            table.remove(table.find(key(i)));
+        }
+
+        Assertions.assertEquals(500, table.size());
+        for (int i = 0; i < 1000; i++) {
+            int slot = table.find(key(i));
+            if (i % 2 == 0) {
+                Assertions.assertEquals(-1, slot, key(i));
+            } else {
+                Assertions.assertEquals(key(i), table.read(slot).getListingNumber());
+            }
+        }
+    }
+
+    @Test
+    void put_whenFull_evictsAListingNotReadSinceTheSweepPassed() {
+        OffHeapListingTable table = new OffHeapListingTable(4);
+        for (int i = 0; i < 4; i++) {
+            table.put(key(i), listing(i), 0, 0);
+        }
+        // The first sweep clears every reference bit and evicts the first slot
+        table.put(key(4), listing(4), 0, 0);
+        table.read(table.find(key(1)));
+
+        table.put(key(5), listing(5), 0, 0);
+
+        Assertions.assertEquals(4, table.size());
+        Assertions.assertEquals(2, table.evictions());
+        Assertions.assertEquals(-1, table.find(key(0)));
+        Assertions.assertTrue(table.find(key(1)) >= 0, "The listing read since the sweep passed is kept");
+        Assertions.assertEquals(-1, table.find(key(2)));
+    }
+
+    @Test
+    void put_tooLongForASlot_isRejectedAndDropsTheOldListing() {
+        OffHeapListingTable table = new OffHeapListingTable(4);
+        table.put("LIST0001", listing(1), 0, 0);
+        StringBuilder address = new StringBuilder();
+        for (int i = 0; i < OffHeapListingTable.SLOT_BYTES; i++) {
+            address.append('x');
+        }
+        Listing tooLong = new Listing("LIST0001", address.toString(), 1800, 250000, 3, 2.0, 0.5,
+                ListingStatus.FOR_SALE.label);
+
+        Assertions.assertFalse(table.put("LIST0001", tooLong, 1, 0));
+        Assertions.assertEquals(-1, table.find("LIST0001"));
+        Assertions.assertEquals(0, table.size());
+    }
+
+    private static String key(int number) {
+        return String.format("LIST%04d", number);
+    }
+
+    private static Listing listing(int number) {
+        return new Listing(key(number), number + " Oak Street, Dayton, Ohio, 45402", 1800, 250000, 3, 2.0, 0.5,
+                ListingStatus.FOR_SALE.label);
+    }
+}
@@ -0,0 +1,83 @@
+package com.kenzie.appserver.config;
+
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class QueryResultCacheTest {
+    private static final Listing OPEN_THREE_BEDROOM = new Listing("LIST0001", "1 Oak Street, Dayton, Ohio, 45402",
+            1800, 250000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+
+    @Test
+    void getEventuallyConsistent_pastItsExpiry_searchesAgainWhileAConsistentResultStays() {
+        AtomicLong nanos = new AtomicLong();
+        QueryResultCache cache = new QueryResultCache(100, 5, TimeUnit.SECONDS, nanos::get);
+        ListingCriteria fromIndex = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        ListingCriteria fromTable = ListingCriteria.withStatus(ListingStatus.SOLD.label);
+        AtomicInteger searches = new AtomicInteger();
+        cache.get(fromIndex, () -> {
+            searches.incrementAndGet();
+            return Collections.emptyList();
+        });
+        cache.getEventuallyConsistent(fromTable, () -> {
+            searches.incrementAndGet();
+            return Collections.emptyList();
+        });
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        cache.get(fromIndex, () -> {
+            throw new AssertionError("The consistent result should still be cached");
+        });
+        cache.getEventuallyConsistent(fromTable, () -> {
+            searches.incrementAndGet();
+            return Collections.emptyList();
+        });
+
+        Assertions.assertEquals(3, searches.get());
+    }
+
+    @Test
+    void get_writeDuringSearch_doesNotCacheResult() {
+        QueryResultCache cache = new QueryResultCache(100);
+        ListingCriteria criteria = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        AtomicInteger searches = new AtomicInteger();
+
+        cache.get(criteria, () -> {
+            searches.incrementAndGet();
+            cache.invalidate(null, OPEN_THREE_BEDROOM);
+            return Collections.emptyList();
+        });
+        cache.get(criteria, () -> {
+            searches.incrementAndGet();
+            return Collections.singletonList(OPEN_THREE_BEDROOM);
+        });
+        List<Listing> cached = cache.get(criteria, () -> {
+            throw new AssertionError("The second result should have been cached");
+        });
+
+        Assertions.assertEquals(2, searches.get());
+        Assertions.assertEquals(Collections.singletonList(OPEN_THREE_BEDROOM), cached);
+    }
+
+    @Test
+    void matches_criteriaOnEveryAttribute_matchesOnlyListingsInsideThem() {
+        ListingCriteria criteria = ListingCriteria.fromQueryParameters(1500, 300000, 3, 2.0, 0.5, "for sale");
+        criteria.setState("Ohio");
+
+        Assertions.assertTrue(QueryResultCache.matches(criteria, OPEN_THREE_BEDROOM));
+        criteria.setZipCodes(Collections.singleton("45403"));
+        Assertions.assertFalse(QueryResultCache.matches(criteria, OPEN_THREE_BEDROOM));
+        Assertions.assertFalse(QueryResultCache.matches(
+                ListingCriteria.fromQueryParameters(0, 250000, 0, 0, 0, null), OPEN_THREE_BEDROOM),
+                "The legacy price is an exclusive upper bound");
+        Assertions.assertFalse(QueryResultCache.matches(criteria, null));
+    }
+}
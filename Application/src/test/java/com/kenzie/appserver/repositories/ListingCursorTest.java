@@ -0,0 +1,43 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ListingCursorTest {
+
+    @Test
+    void fromLastEvaluatedKey_roundTripsThroughToExclusiveStartKey() {
+        Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+        lastEvaluatedKey.put("listingNumber", new AttributeValue().withS("AB12CD34"));
+        lastEvaluatedKey.put("listingStatus", new AttributeValue().withS("For Sale"));
+        lastEvaluatedKey.put("price", new AttributeValue().withN("349000"));
+
+        String cursor = ListingCursor.fromLastEvaluatedKey(lastEvaluatedKey);
+
+        Assertions.assertFalse(ListingCursor.isIndexCursor(cursor));
+        Assertions.assertEquals(lastEvaluatedKey, ListingCursor.toExclusiveStartKey(cursor));
+    }
+
+    @Test
+    void fromLastEvaluatedKey_lastPage_returnsNull() {
+        Assertions.assertNull(ListingCursor.fromLastEvaluatedKey(null));
+    }
+
+    @Test
+    void afterListingNumber_roundTripsThroughToListingNumber() {
+        String cursor = ListingCursor.afterListingNumber("AB12CD34");
+
+        Assertions.assertTrue(ListingCursor.isIndexCursor(cursor));
+        Assertions.assertEquals("AB12CD34", ListingCursor.toListingNumber(cursor));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ListingCursor.toExclusiveStartKey(cursor));
+    }
+
+    @Test
+    void toExclusiveStartKey_malformedCursor_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ListingCursor.toExclusiveStartKey("not a cursor!"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.kenzie.appserver.repositories;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.repositories.model.ListingRecord;
+import com.kenzie.appserver.service.model.ListingStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class ListingQueryBuilderTest {
+
+    @Test
+    void query_statusAndAllBounds_usesKeyConditionsAndOneFilterExpression() {
+        ListingCriteria criteria = ListingCriteria.fromQueryParameters(1600, 350000, 3, 2.0, 0.5,
+                ListingStatus.FOR_SALE.label);
+
+        DynamoDBQueryExpression<ListingRecord> query = ListingQueryBuilder.query(criteria);
+
+        Assertions.assertEquals(ListingRecord.STATUS_PRICE_INDEX, query.getIndexName());
+        Assertions.assertFalse(query.isConsistentRead(), "Global secondary indexes only support eventual consistency");
+        Assertions.assertEquals("#listingStatus = :listingStatus AND #price <= :priceMax", query.getKeyConditionExpression());
+        Assertions.assertEquals("#squareFootage >= :squareFootageMin AND #numBedrooms >= :numBedroomsMin" +
+                " AND #numBathrooms >= :numBathroomsMin AND #lotSize >= :lotSizeMin", query.getFilterExpression());
+        Assertions.assertEquals("For Sale", query.getExpressionAttributeValues().get(":listingStatus").getS());
+        Assertions.assertEquals("349999", query.getExpressionAttributeValues().get(":priceMax").getN());
+        Assertions.assertEquals("0.5", query.getExpressionAttributeValues().get(":lotSizeMin").getN());
+        for (String attribute : ListingQueryBuilder.LISTING_ATTRIBUTES) {
+            Assertions.assertTrue(query.getProjectionExpression().contains("#" + attribute));
+            Assertions.assertEquals(attribute, query.getExpressionAttributeNames().get("#" + attribute));
+        }
+    }
+
+    @Test
+    void query_statusOnly_hasNoFilterExpression() {
+        DynamoDBQueryExpression<ListingRecord> query = ListingQueryBuilder.query(
+                ListingCriteria.withStatus(ListingStatus.FOR_SALE.label));
+
+        Assertions.assertEquals("#listingStatus = :listingStatus", query.getKeyConditionExpression());
+        Assertions.assertNull(query.getFilterExpression());
+    }
+
+    @Test
+    void query_withoutStatus_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ListingQueryBuilder.query(ListingCriteria.fromQueryParameters(1600, 0, 0, 0, 0, null)));
+    }
+
+    @Test
+    void countQuery_statusAndBounds_hasNoProjectionOrUnusedNames() {
+        DynamoDBQueryExpression<ListingRecord> query = ListingQueryBuilder.countQuery(
+                ListingCriteria.fromQueryParameters(1600, 350000, 0, 0, 0, ListingStatus.FOR_SALE.label));
+
+        Assertions.assertNull(query.getProjectionExpression());
+        Assertions.assertEquals("#listingStatus = :listingStatus AND #price <= :priceMax", query.getKeyConditionExpression());
+        Assertions.assertEquals("#squareFootage >= :squareFootageMin", query.getFilterExpression());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("#listingStatus", "#price", "#squareFootage")),
+                query.getExpressionAttributeNames().keySet());
+    }
+
+    @Test
+    void countScan_noBounds_sendsNoExpressions() {
+        DynamoDBScanExpression scan = ListingQueryBuilder.countScan(new ListingCriteria());
+
+        Assertions.assertNull(scan.getProjectionExpression());
+        Assertions.assertNull(scan.getFilterExpression());
+        Assertions.assertNull(scan.getExpressionAttributeNames());
+        Assertions.assertNull(scan.getExpressionAttributeValues());
+    }
+
+    @Test
+    void query_fields_projectsOnlyThoseAndTheListingNumber() {
+        ListingCriteria criteria = ListingCriteria.fromQueryParameters(1600, 0, 0, 0, 0, ListingStatus.FOR_SALE.label);
+        criteria.setFields(new LinkedHashSet<>(Arrays.asList("address", "price")));
+
+        DynamoDBQueryExpression<ListingRecord> query = ListingQueryBuilder.query(criteria);
+
+        Assertions.assertEquals("#listingNumber, #address, #price", query.getProjectionExpression());
+        Assertions.assertEquals("#squareFootage >= :squareFootageMin", query.getFilterExpression());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("#listingStatus", "#squareFootage", "#listingNumber",
+                "#address", "#price")), query.getExpressionAttributeNames().keySet());
+    }
+
+    @Test
+    void scan_fieldsWithZipCodesLeftOut_alsoProjectsTheLocation() {
+        Set<String> zipCodes = new HashSet<>();
+        for (int i = 0; i <= ListingQueryBuilder.MAX_ZIP_CODES_IN_FILTER; i++) {
+            zipCodes.add(String.format("%05d", i));
+        }
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setZipCodes(zipCodes);
+        criteria.setFields(new LinkedHashSet<>(Arrays.asList("price")));
+
+        DynamoDBScanExpression scan = ListingQueryBuilder.scan(criteria);
+
+        Assertions.assertEquals("#listingNumber, #price, #state, #zipCode", scan.getProjectionExpression());
+    }
+
+    @Test
+    void scan_withoutStatus_filtersEveryBound() {
+        DynamoDBScanExpression scan = ListingQueryBuilder.scan(
+                ListingCriteria.fromQueryParameters(0, 500000, 2, 0, 0, null));
+
+        Assertions.assertEquals("#price <= :priceMax AND #numBedrooms >= :numBedroomsMin", scan.getFilterExpression());
+        Assertions.assertEquals("499999", scan.getExpressionAttributeValues().get(":priceMax").getN());
+    }
+
+    @Test
+    void query_twoSidedRanges_usesBetween() {
+        ListingCriteria criteria = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        criteria.setMinPrice(300000);
+        criteria.setMaxPrice(450000);
+        criteria.setMinSquareFootage(1500);
+        criteria.setMaxSquareFootage(2500);
+        criteria.setMaxNumBathrooms(2.5);
+
+        DynamoDBQueryExpression<ListingRecord> query = ListingQueryBuilder.query(criteria);
+
+        Assertions.assertEquals("#listingStatus = :listingStatus AND #price BETWEEN :priceMin AND :priceMax",
+                query.getKeyConditionExpression());
+        Assertions.assertEquals("#squareFootage BETWEEN :squareFootageMin AND :squareFootageMax" +
+                " AND #numBathrooms <= :numBathroomsMax", query.getFilterExpression());
+        Assertions.assertEquals("300000", query.getExpressionAttributeValues().get(":priceMin").getN());
+        Assertions.assertEquals("2500", query.getExpressionAttributeValues().get(":squareFootageMax").getN());
+    }
+
+    @Test
+    void query_stateAndZipCodes_filtersWithEqualityAndIn() {
+        ListingCriteria criteria = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        criteria.setState("New Jersey");
+        criteria.setZipCodes(new LinkedHashSet<>(Arrays.asList("07030", "07302")));
+
+        DynamoDBQueryExpression<ListingRecord> query = ListingQueryBuilder.query(criteria);
+
+        Assertions.assertEquals("#state = :state AND #zipCode IN (:zipCode0, :zipCode1)", query.getFilterExpression());
+        Assertions.assertEquals("07302", query.getExpressionAttributeValues().get(":zipCode1").getS());
+        Assertions.assertEquals("state", query.getExpressionAttributeNames().get("#state"));
+    }
+
+    @Test
+    void scan_moreZipCodesThanOneInConditionAllows_leavesThemOut() {
+        Set<String> zipCodes = new HashSet<>();
+        for (int i = 0; i <= ListingQueryBuilder.MAX_ZIP_CODES_IN_FILTER; i++) {
+            zipCodes.add(String.format("%05d", i));
+        }
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setZipCodes(zipCodes);
+
+        Assertions.assertNull(ListingQueryBuilder.scan(criteria).getFilterExpression());
+    }
+}
@@ -0,0 +1,41 @@
+package com.kenzie.appserver.repositories.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ListingSortTest {
+
+    @Test
+    void parse_fieldOnly_isAscending() {
+        ListingSort sort = ListingSort.parse("squareFootage");
+
+        Assertions.assertEquals(ListingSort.Field.SQUARE_FOOTAGE, sort.getField());
+        Assertions.assertFalse(sort.isDescending());
+    }
+
+    @Test
+    void parse_withDirection_readsDirection() {
+        Assertions.assertTrue(ListingSort.parse("price,desc").isDescending());
+        Assertions.assertFalse(ListingSort.parse("lotSize,ASC").isDescending());
+        Assertions.assertEquals(ListingSort.Field.PRICE_PER_SQUARE_FOOT, ListingSort.parse("pricePerSquareFoot").getField());
+    }
+
+    @Test
+    void parse_unknownFieldOrDirection_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ListingSort.parse("numBedrooms"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ListingSort.parse("price,down"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ListingSort.parse("price,desc,asc"));
+    }
+
+    @Test
+    void compareKeys_missingPricePerSquareFoot_comesLastInEitherDirection() {
+        ListingSort ascending = ListingSort.parse("pricePerSquareFoot");
+        ListingSort descending = ListingSort.parse("pricePerSquareFoot,desc");
+        double missing = ascending.sortKey(0, 300000, 0.5);
+
+        Assertions.assertTrue(Double.isNaN(missing));
+        Assertions.assertTrue(ascending.compareKeys(missing, 150.0) > 0);
+        Assertions.assertTrue(descending.compareKeys(missing, 150.0) > 0);
+        Assertions.assertTrue(descending.compareKeys(200.0, 150.0) < 0);
+    }
+}
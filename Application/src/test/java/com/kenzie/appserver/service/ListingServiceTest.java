@@ -1,35 +1,73 @@
 package com.kenzie.appserver.service;
 
 import com.kenzie.appserver.config.CacheStore;
+import com.kenzie.appserver.config.CaffeineCacheStore;
+import com.kenzie.appserver.config.LoopbackCacheInvalidationBroadcaster;
 import com.kenzie.appserver.config.ListingGenerator;
+import com.kenzie.appserver.config.QueryResultCache;
+import com.kenzie.appserver.repositories.ListingQueryRepository;
 import com.kenzie.appserver.repositories.ListingRepository;
+import com.kenzie.appserver.repositories.ListingCursor;
+import com.kenzie.appserver.repositories.model.ListingCriteria;
 import com.kenzie.appserver.repositories.model.ListingRecord;
+import com.kenzie.appserver.repositories.model.ListingRecordPage;
+import com.kenzie.appserver.repositories.model.ListingSort;
+import com.kenzie.appserver.service.geo.ZipCodeCentroids;
 import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingFacets;
+import com.kenzie.appserver.service.model.ListingPage;
+import com.kenzie.appserver.service.index.ListingIndex;
+import com.kenzie.appserver.service.index.ListingNumberFilter;
 import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.RegionStatistics;
+import com.kenzie.appserver.service.stats.MarketStatistics;
+import com.google.common.util.concurrent.RateLimiter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.mockito.Mockito.*;
 
 public class ListingServiceTest {
     private ListingRepository listingServiceRepository;
+    private ListingQueryRepository listingQueryRepository;
     private ListingService listingService;
 
     private CacheStore cacheStore;
+    private ListingIndex listingIndex;
+    private ZipCodeCentroids zipCodeCentroids;
+    private QueryResultCache queryResultCache;
+    private MarketStatistics marketStatistics;
+    private ListingNumberFilter listingNumberFilter;
+    private LoopbackCacheInvalidationBroadcaster invalidationBroadcaster;
     private ListingGenerator generator = new ListingGenerator();
     private Listing listing1;
     private List<ListingRecord> expected = new ArrayList<>();
 
     @BeforeEach
-    void setup() {
-        cacheStore = mock(CacheStore.class);
+    void setup() throws IOException {
+        cacheStore = new CaffeineCacheStore(1 << 20, 60, 120, 30, TimeUnit.SECONDS, Runnable::run);
         listingServiceRepository = mock(ListingRepository.class);
-        listingService = new ListingService(listingServiceRepository, cacheStore);
+        listingQueryRepository = mock(ListingQueryRepository.class);
+        listingIndex = new ListingIndex();
+        // Manhattan, Hoboken (about 2 miles away) and Beverly Hills
+        zipCodeCentroids = new ZipCodeCentroids(new StringReader("GEOID\tINTPTLAT\tINTPTLONG\n" +
+                "10001\t40.751\t-73.997\n" +
+                "07030\t40.745\t-74.032\n" +
+                "90210\t34.101\t-118.415\n"));
+        queryResultCache = new QueryResultCache(1000);
+        marketStatistics = new MarketStatistics();
+        listingNumberFilter = new ListingNumberFilter(1000);
+        invalidationBroadcaster = new LoopbackCacheInvalidationBroadcaster();
+        listingService = new ListingService(listingServiceRepository, listingQueryRepository, cacheStore, listingIndex,
+                zipCodeCentroids, queryResultCache, marketStatistics, listingNumberFilter, invalidationBroadcaster);
 
         listing1 = new Listing(generator.generateId(),
                 "123 Main St, City, State 11111",
@@ -58,7 +96,7 @@ public class ListingServiceTest {
         records.add(record1);
         records.add(record2);
 
-        when(listingServiceRepository.findAll()).thenReturn(records);
+        givenTableContains(records);
 
         List<Listing> actualListings = listingService.findAllListings();
 
@@ -135,7 +173,7 @@ public class ListingServiceTest {
                 1,
                 "For sale");
 
-        when(cacheStore.get(listingNumber)).thenReturn(listing);
+        cacheStore.add(listingNumber, listing);
 
         Listing actualListing = listingService.findByListingNumber(listingNumber);
 
@@ -174,6 +212,167 @@ public class ListingServiceTest {
         Assertions.assertNull(actual);
     }
 
+    @Test
+    void findByListingNumber_unknownNumberAfterRebuild_readsRepositoryOnce() {
+        givenTableContains(Collections.singletonList(createListingRecord(listing1)));
+        listingService.rebuildIndex();
+        when(listingServiceRepository.findById("ZZZZZZZZ")).thenReturn(Optional.empty());
+
+        Assertions.assertNull(listingService.findByListingNumber("ZZZZZZZZ"));
+        Assertions.assertNull(listingService.findByListingNumber("ZZZZZZZZ"));
+
+        verify(listingServiceRepository, times(1)).findById("ZZZZZZZZ");
+    }
+
+    @Test
+    void findByListingNumber_createdElsewhereWithoutABroadcast_isFoundAndAddedToTheFilter() {
+        givenTableContains(Collections.emptyList());
+        listingService.rebuildIndex();
+        when(listingServiceRepository.findById(listing1.getListingNumber()))
+                .thenReturn(Optional.of(createListingRecord(listing1)));
+
+        Assertions.assertNotNull(listingService.findByListingNumber(listing1.getListingNumber()));
+
+        Assertions.assertTrue(listingNumberFilter.mightContain(listing1.getListingNumber()));
+    }
+
+    @Test
+    void findByListingNumber_forSaleAfterRebuild_isServedFromTheCache() {
+        Listing forSale = new Listing("SALE0001", "4821 Maple Avenue, Springfield, Illinois, 62701",
+                1500, 300000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        Listing sold = new Listing("SOLD0001", "7 Birch Road, Dayton, Ohio, 45402",
+                1200, 180000, 2, 1.0, 0.25, ListingStatus.SOLD.label);
+        givenTableContains(Arrays.asList(createListingRecord(forSale), createListingRecord(sold)));
+        when(listingServiceRepository.findById(sold.getListingNumber()))
+                .thenReturn(Optional.of(createListingRecord(sold)));
+        listingService.rebuildIndex();
+
+        Assertions.assertEquals(forSale.getAddress(),
+                listingService.findByListingNumber(forSale.getListingNumber()).getAddress());
+        Assertions.assertEquals(sold.getAddress(),
+                listingService.findByListingNumber(sold.getListingNumber()).getAddress());
+
+        verify(listingServiceRepository, never()).findById(forSale.getListingNumber());
+        verify(listingServiceRepository).findById(sold.getListingNumber());
+    }
+
+    @Test
+    void findByListingNumber_priceUpdatedByAnotherInstance_readsTheNewPrice() {
+        ListingService otherInstance = otherInstance();
+        String listingNumber = listing1.getListingNumber();
+        when(listingServiceRepository.existsById(listingNumber)).thenReturn(true);
+        when(listingServiceRepository.findById(listingNumber)).thenReturn(Optional.of(createListingRecord(listing1)));
+        Assertions.assertEquals(349000, listingService.findByListingNumber(listingNumber).getPrice());
+
+        ListingRecord updated = createListingRecord(listing1);
+        updated.setPrice(325000);
+        when(listingQueryRepository.findConsistently(listingNumber)).thenReturn(updated);
+        otherInstance.updatePrice(listingNumber, 325000);
+
+        Assertions.assertEquals(325000, listingService.findByListingNumber(listingNumber).getPrice());
+    }
+
+    @Test
+    void updatePrice_byAnotherInstance_updatesThisInstancesIndex() {
+        givenTableContains(Collections.singletonList(createListingRecord(listing1)));
+        listingService.rebuildIndex();
+        String listingNumber = listing1.getListingNumber();
+        ListingRecord updated = createListingRecord(listing1);
+        updated.setPrice(325000);
+        when(listingServiceRepository.existsById(listingNumber)).thenReturn(true);
+        when(listingServiceRepository.findById(listingNumber)).thenReturn(Optional.of(createListingRecord(listing1)));
+        when(listingQueryRepository.findConsistently(listingNumber)).thenReturn(updated);
+
+        otherInstance().updatePrice(listingNumber, 325000);
+
+        Assertions.assertEquals(325000, listingIndex.get(listingNumber).getPrice());
+    }
+
+    @Test
+    void deleteListing_byAnotherInstance_removesItFromThisInstancesIndex() {
+        givenTableContains(Collections.singletonList(createListingRecord(listing1)));
+        listingService.rebuildIndex();
+        String listingNumber = listing1.getListingNumber();
+        when(listingServiceRepository.findById(listingNumber)).thenReturn(Optional.of(createListingRecord(listing1)));
+
+        otherInstance().deleteListing(listingNumber);
+
+        Assertions.assertNull(listingIndex.get(listingNumber));
+        Assertions.assertEquals(0, listingIndex.size());
+    }
+
+    @Test
+    void writeElsewhere_olderVersionFromTheSameSender_isIgnored() {
+        String listingNumber = listing1.getListingNumber();
+        LoopbackCacheInvalidationBroadcaster peer = invalidationBroadcaster.join();
+
+        peer.publish(listingNumber, 2);
+        peer.publish(listingNumber, 1);
+        peer.publish(listingNumber, 2);
+
+        verify(listingQueryRepository, times(1)).findConsistently(listingNumber);
+    }
+
+    @Test
+    void writeElsewhere_copySavedBeforeTheWrite_isNotAppliedAndTheListingIsReadAgainConsistently() {
+        givenTableContains(Collections.singletonList(createListingRecord(listing1)));
+        listingService.rebuildIndex();
+        String listingNumber = listing1.getListingNumber();
+        LoopbackCacheInvalidationBroadcaster peer = invalidationBroadcaster.join();
+        ListingRecord older = createListingRecord(listing1);
+        older.setPrice(325000);
+        older.setWrittenBy(peer.instanceId().toString());
+        older.setWriteVersion(1L);
+        when(listingQueryRepository.findConsistently(listingNumber)).thenReturn(older);
+
+        peer.publish(listingNumber, 2);
+
+        Assertions.assertEquals(349000, listingIndex.get(listingNumber).getPrice());
+        listingService.findByListingNumber(listingNumber);
+        verify(listingQueryRepository, times(2)).findConsistently(listingNumber);
+        verify(listingServiceRepository, never()).findById(listingNumber);
+    }
+
+    @Test
+    void findByListingNumber_createdByAnotherInstanceAfterRebuild_isFound() {
+        givenTableContains(Collections.emptyList());
+        listingService.rebuildIndex();
+
+        when(listingQueryRepository.findConsistently(listing1.getListingNumber()))
+                .thenReturn(createListingRecord(listing1));
+        otherInstance().createNewListing(listing1);
+
+        Assertions.assertEquals(listing1.getAddress(),
+                listingService.findByListingNumber(listing1.getListingNumber()).getAddress());
+    }
+
+    @Test
+    void findByListingNumber_createdAfterRebuild_isFound() {
+        givenTableContains(Collections.emptyList());
+        listingService.rebuildIndex();
+        Assertions.assertNull(listingService.findByListingNumber(listing1.getListingNumber()));
+
+        listingService.createNewListing(listing1);
+        when(listingServiceRepository.findById(listing1.getListingNumber()))
+                .thenReturn(Optional.of(createListingRecord(listing1)));
+
+        Assertions.assertEquals(listing1.getAddress(),
+                listingService.findByListingNumber(listing1.getListingNumber()).getAddress());
+    }
+
+    @Test
+    void updatePrice_thenFindByListingNumber_readsTheWrittenListingFromCache() {
+        ListingRecord record = createListingRecord(listing1);
+        when(listingServiceRepository.existsById(listing1.getListingNumber())).thenReturn(true);
+        when(listingServiceRepository.findById(listing1.getListingNumber())).thenReturn(Optional.of(record));
+
+        listingService.updatePrice(listing1.getListingNumber(), 400000);
+        Listing updated = listingService.findByListingNumber(listing1.getListingNumber());
+
+        Assertions.assertEquals(400000, updated.getPrice());
+        verify(listingServiceRepository, times(1)).findById(listing1.getListingNumber());
+    }
+
     @Test
     void findAllOpenListings() {
         Listing listing1 = new Listing(generator.generateId(),
@@ -202,7 +401,7 @@ public class ListingServiceTest {
         records.add(record1);
         records.add(record2);
 
-        when(listingServiceRepository.findAll()).thenReturn(records);
+        when(listingQueryRepository.find(ListingCriteria.withStatus(ListingStatus.FOR_SALE.label))).thenReturn(Collections.singletonList(record1));
 
         List<Listing> actualList = listingService.findAllOpenListings();
 
@@ -306,6 +505,26 @@ public class ListingServiceTest {
         Assertions.assertEquals(listing.getListingStatus(), actual.getListingStatus());
     }
 
+    @Test
+    void createNewListing_statusInDifferentCase_savesStatusLabel() {
+        Listing listing = new Listing(generator.generateId(),
+                "111 Test St., City, State, 11111",
+                1900,
+                450000,
+                5,
+                4,
+                1.75,
+                "for sale");
+
+        ArgumentCaptor<ListingRecord> listingRecordCaptor = ArgumentCaptor.forClass(ListingRecord.class);
+
+        listingService.createNewListing(listing);
+
+        verify(listingServiceRepository).save(listingRecordCaptor.capture());
+        Assertions.assertEquals(ListingStatus.FOR_SALE.label, listingRecordCaptor.getValue().getListingStatus(),
+                "The status must match the index hash key exactly");
+    }
+
     @Test
     void createListing_invalidStatus_returnsNull() {
         Listing listing = new Listing(UUID.randomUUID().toString(),
@@ -476,6 +695,32 @@ public class ListingServiceTest {
         verify(listingServiceRepository).deleteById(listingNumber);
     }
 
+    /**
+     * @return a service with caches of its own, sharing this one's table and invalidation network
+     */
+    private ListingService otherInstance() {
+        return new ListingService(listingServiceRepository, listingQueryRepository,
+                new CaffeineCacheStore(1 << 20, 60, 120, 30, TimeUnit.SECONDS, Runnable::run), new ListingIndex(),
+                zipCodeCentroids, new QueryResultCache(1000), new MarketStatistics(), new ListingNumberFilter(1000),
+                invalidationBroadcaster.join());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenTableContains(List<ListingRecord> records) {
+        doAnswer(invocation -> {
+            ((Consumer<List<ListingRecord>>) invocation.getArguments()[0]).accept(records);
+            return null;
+        }).when(listingQueryRepository).scanAll(any(Consumer.class));
+        doAnswer(invocation -> {
+            ((Consumer<List<ListingRecord>>) invocation.getArguments()[1]).accept(records);
+            return null;
+        }).when(listingQueryRepository).scanAll((RateLimiter) any(), any(Consumer.class));
+        doAnswer(invocation -> {
+            ((Consumer<List<ListingRecord>>) invocation.getArguments()[1]).accept(records);
+            return null;
+        }).when(listingQueryRepository).scanAll(any(ListingCriteria.class), any(Consumer.class));
+    }
+
     public ListingRecord createListingRecord(Listing listing) {
         ListingRecord record = new ListingRecord();
         record.setListingNumber(listing.getListingNumber());
@@ -493,7 +738,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_allParametersEntered_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1600, 350000, 3, 2.0, 0.5)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(1600, 350000, 3, 2.0,0.5, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(1600, 350000, 3, 2.0,0.5);
 
@@ -512,7 +757,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_onlySquareFootageEntered_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqual(1100)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(1100, 0, 0, 0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(1100, 0, 0, 0, 0.0);
 
@@ -531,7 +776,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_BedBathSquareFootPrice_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(100, 1000000, 1, 1.5)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 1000000, 1, 1.5, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 1000000, 1, 1.5, 0.0);
 
@@ -550,7 +795,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootPriceBedLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(100, 1000000, 1, 0.3)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 1000000, 1, 0.0, 0.3, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 1000000, 1, 0.0, 0.3);
 
@@ -569,7 +814,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootPriceBathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(100, 700000, 1.5, 0.3)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 700000, 0, 1.5, 0.3, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 700000, 0, 1.5, 0.3);
 
@@ -588,7 +833,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootBedBathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(100, 1, 1.5, 0.3)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 1, 1.5, 0.3, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 1, 1.5, 0.3);
 
@@ -607,7 +852,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootPriceBed_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBedroomsGreaterThanEqual(100, 1000000, 1)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 1000000, 1, 0, 0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 1000000, 1, 0, 0);
 
@@ -626,7 +871,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootPriceBath_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndNumBathroomsGreaterThanEqual(100, 1000000, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 1000000, 0, 1.0, 0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 1000000, 0, 1.0, 0);
 
@@ -645,7 +890,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootPriceLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThanAndLotSizeGreaterThanEqual(100, 1000000, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 1000000, 0, 0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 1000000, 0, 0, 1.0);
 
@@ -664,7 +909,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootBedBath_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(100, 1, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 1, 1.0, 0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 1, 1.0, 0);
 
@@ -683,7 +928,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootBedLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(100, 1, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 1, 0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 1, 0, 1.0);
 
@@ -702,7 +947,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootBathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(100, 1.0, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 0, 1.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 0, 1.0, 1.0);
 
@@ -721,7 +966,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootPrice_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndPriceLessThan(100, 1000000)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 1000000, 0, 0, 0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 1000000, 0, 0, 0);
 
@@ -740,7 +985,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootBath_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndNumBathroomsGreaterThanEqual(100, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 0, 1.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 0, 1.0, 0.0);
 
@@ -759,7 +1004,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceBed_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqual(1000000, 1)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 1, 0.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 1, 0.0, 0.0);
 
@@ -778,7 +1023,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceBath_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndNumBathroomsGreaterThanEqual(1000000, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 0, 1.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 0, 1.0, 0.0);
 
@@ -797,7 +1042,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndLotSizeGreaterThanEqual(1000000, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 0, 0.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 0, 0.0, 1.0);
 
@@ -816,7 +1061,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootBed_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndNumBedroomsGreaterThanEqual(100, 1)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 1, 0.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 1, 0.0, 0.0);
 
@@ -835,7 +1080,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_SquareFootLot_returnsSortedList() {
 
-        when(listingServiceRepository.findBySquareFootageGreaterThanEqualAndLotSizeGreaterThanEqual(100, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(100, 0, 0, 0.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(100, 0, 0, 0.0, 1.0);
 
@@ -854,7 +1099,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceBedBath_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(1000000, 1, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 1, 1.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 1, 1.0, 0.0);
 
@@ -873,7 +1118,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceBedLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1000000, 1, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 1, 0.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 1, 0.0, 1.0);
 
@@ -892,7 +1137,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceBathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1000000, 1.0, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 0, 1.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 0, 1.0, 1.0);
 
@@ -911,7 +1156,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_PriceBedBathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByPriceLessThanAndNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1000000, 1, 1.0, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 1000000, 1, 1.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 1000000, 1, 1.0, 1.0);
 
@@ -930,7 +1175,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_BedBath_returnsSortedList() {
 
-        when(listingServiceRepository.findByNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqual(1, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 1, 1.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 1, 1.0, 0.0);
 
@@ -949,7 +1194,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_BedLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByNumBedroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 1, 0.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 1, 0.0, 1.0);
 
@@ -968,7 +1213,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_BedBathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByNumBedroomsGreaterThanEqualAndNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1, 1.0, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 1, 1.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 1, 1.0, 1.0);
 
@@ -987,7 +1232,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_Bath_returnsSortedList() {
 
-        when(listingServiceRepository.findByNumBathroomsGreaterThanEqual(1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 0, 1.0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 0, 1.0, 0.0);
 
@@ -1006,7 +1251,7 @@ public class ListingServiceTest {
     @Test
     void findParameterizedListings_BathLot_returnsSortedList() {
 
-        when(listingServiceRepository.findByNumBathroomsGreaterThanEqualAndLotSizeGreaterThanEqual(1.0, 1.0)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 0, 1.0, 1.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 0, 1.0, 1.0);
 
@@ -1050,7 +1295,7 @@ public class ListingServiceTest {
         expected.add(record1);
         expected.add(record2);
 
-        when(listingServiceRepository.findByPriceLessThan(500000)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 500000, 0, 0, 0.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 500000, 0, 0, 0.0);
 
@@ -1102,7 +1347,7 @@ public class ListingServiceTest {
         expected.add(record1);
         expected.add(record2);
 
-        when(listingServiceRepository.findByNumBedroomsGreaterThanEqual(2)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 2, 0, 0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 2, 0, 0);
 
@@ -1143,7 +1388,7 @@ public class ListingServiceTest {
         List<ListingRecord> expected = new ArrayList<>();
         expected.add(record1);
 
-        when(listingServiceRepository.findByLotSizeGreaterThanEqual(2.00)).thenReturn(expected);
+        when(listingQueryRepository.find(ListingCriteria.fromQueryParameters(0, 0, 0, 0.0, 2.0, ListingStatus.FOR_SALE.label))).thenReturn(expected);
 
         List<Listing> actualList = listingService.findParameterizedListings(0, 0, 0, 0.0, 2.0);
 
@@ -1158,4 +1403,466 @@ public class ListingServiceTest {
         Assertions.assertEquals(listing1.getLotSize(), actualList.get(0).getLotSize());
         Assertions.assertEquals(listing1.getListingStatus(), actualList.get(0).getListingStatus());
     }
+
+    @Test
+    void findParameterizedListings_indexLoaded_answersFromIndex() {
+        Listing cheap = new Listing(generator.generateId(), "1 Oak Street, City, State, 11111",
+                1800, 250000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        Listing expensive = new Listing(generator.generateId(), "2 Oak Street, City, State, 11111",
+                2400, 900000, 4, 3.0, 1.0, ListingStatus.FOR_SALE.label);
+        Listing sold = new Listing(generator.generateId(), "3 Oak Street, City, State, 11111",
+                2000, 200000, 3, 2.5, 0.6, ListingStatus.SOLD.label);
+
+        givenTableContains(Arrays.asList(
+                createListingRecord(cheap), createListingRecord(expensive), createListingRecord(sold)));
+        listingService.rebuildIndex();
+
+        List<Listing> actualList = listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+
+        Assertions.assertEquals(1, actualList.size(), "Only the open listing under the price should match");
+        Assertions.assertEquals(cheap.getListingNumber(), actualList.get(0).getListingNumber());
+        Assertions.assertEquals(cheap.getAddress(), actualList.get(0).getAddress());
+        Assertions.assertEquals(cheap.getPrice(), actualList.get(0).getPrice());
+        verify(listingQueryRepository, never()).find(any(ListingCriteria.class));
+    }
+
+    @Test
+    void findParameterizedListings_indexLoaded_reflectsWrites() {
+        givenTableContains(new ArrayList<>());
+        listingService.rebuildIndex();
+
+        Listing listing = new Listing(generator.generateId(), "4 Oak Street, City, State, 11111",
+                1900, 450000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        listingService.createNewListing(listing);
+
+        Assertions.assertEquals(1, listingService.findParameterizedListings(0, 500000, 0, 0.0, 0.0).size());
+
+        when(listingServiceRepository.existsById(listing.getListingNumber())).thenReturn(true);
+        cacheStore.add(listing.getListingNumber(), listing);
+        listingService.updatePrice(listing.getListingNumber(), 550000);
+
+        Assertions.assertTrue(listingService.findParameterizedListings(0, 500000, 0, 0.0, 0.0).isEmpty());
+        Assertions.assertEquals(550000, listingService.findParameterizedListings(0, 600000, 0, 0.0, 0.0).get(0).getPrice());
+
+        listingService.deleteListing(listing.getListingNumber());
+
+        Assertions.assertTrue(listingService.findParameterizedListings(0, 600000, 0, 0.0, 0.0).isEmpty());
+    }
+
+    @Test
+    void findAllOpenListings_indexLoaded_pagesInListingNumberOrder() {
+        List<ListingRecord> records = new ArrayList<>();
+        for (String listingNumber : new String[]{"CCCC0003", "AAAA0001", "BBBB0002"}) {
+            records.add(createListingRecord(new Listing(listingNumber, "5 Oak Street, City, State, 11111",
+                    1500, 300000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label)));
+        }
+        givenTableContains(records);
+        listingService.rebuildIndex();
+
+        ListingPage firstPage = listingService.findAllOpenListings(2, null);
+
+        Assertions.assertEquals(2, firstPage.getListings().size());
+        Assertions.assertEquals("AAAA0001", firstPage.getListings().get(0).getListingNumber());
+        Assertions.assertEquals("BBBB0002", firstPage.getListings().get(1).getListingNumber());
+        Assertions.assertNotNull(firstPage.getNextCursor(), "A second page should follow");
+
+        ListingPage secondPage = listingService.findAllOpenListings(2, firstPage.getNextCursor());
+
+        Assertions.assertEquals(1, secondPage.getListings().size());
+        Assertions.assertEquals("CCCC0003", secondPage.getListings().get(0).getListingNumber());
+        Assertions.assertNull(secondPage.getNextCursor(), "There should be no page after the last one");
+        verify(listingQueryRepository, never()).findPage(any(ListingCriteria.class), anyInt(), anyString());
+    }
+
+    @Test
+    void findAllListings_indexNotLoaded_readsOneDynamoDbPage() {
+        when(listingQueryRepository.findPage(new ListingCriteria(), 1, "cursor1"))
+                .thenReturn(new ListingRecordPage(expected, "cursor2"));
+
+        ListingPage page = listingService.findAllListings(1, "cursor1");
+
+        Assertions.assertEquals(1, page.getListings().size());
+        Assertions.assertEquals(listing1.getListingNumber(), page.getListings().get(0).getListingNumber());
+        Assertions.assertEquals("cursor2", page.getNextCursor());
+    }
+
+    @Test
+    void findParameterizedListings_indexCursorWhileIndexNotLoaded_throwsIllegalArgumentException() {
+        String indexCursor = ListingCursor.afterListingNumber("AAAA0001");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> listingService.findParameterizedListings(0, 500000, 0, 0.0, 0.0, 10, indexCursor));
+    }
+
+    @Test
+    void streamAllOpenListings_indexNotLoaded_passesOnEachDynamoDbPage() {
+        Listing second = generator.generateListing();
+        doAnswer(invocation -> {
+            Consumer<List<ListingRecord>> pageConsumer = (Consumer<List<ListingRecord>>) invocation.getArguments()[1];
+            pageConsumer.accept(expected);
+            pageConsumer.accept(Collections.singletonList(createListingRecord(second)));
+            return null;
+        }).when(listingQueryRepository).forEachPage(eq(ListingCriteria.withStatus(ListingStatus.FOR_SALE.label)), any(Consumer.class));
+
+        List<List<Listing>> pages = new ArrayList<>();
+        listingService.streamAllOpenListings(page -> pages.add(new ArrayList<>(page)));
+
+        Assertions.assertEquals(2, pages.size(), "Each DynamoDB page should be passed on as it is read");
+        Assertions.assertEquals(listing1.getListingNumber(), pages.get(0).get(0).getListingNumber());
+        Assertions.assertEquals(second.getListingNumber(), pages.get(1).get(0).getListingNumber());
+    }
+
+    @Test
+    void streamParameterizedListings_indexLoaded_streamsMatchesFromIndex() {
+        List<ListingRecord> records = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            records.add(createListingRecord(new Listing(generator.generateId(), i + " Elm Street, City, State, 11111",
+                    1500, 100000 + i * 1000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label)));
+        }
+        givenTableContains(records);
+        listingService.rebuildIndex();
+
+        List<Listing> streamed = new ArrayList<>();
+        listingService.streamParameterizedListings(ListingCriteria.fromQueryParameters(0, 400000, 0, 0.0, 0.0, null),
+                streamed::addAll);
+
+        Assertions.assertEquals(300, streamed.size(), "Only listings under the price should be streamed");
+        for (Listing listing : streamed) {
+            Assertions.assertTrue(listing.getPrice() < 400000);
+        }
+        verify(listingQueryRepository, never()).forEachPage(any(ListingCriteria.class), any(Consumer.class));
+    }
+
+    @Test
+    void findParameterizedListings_sortedIndexLoaded_returnsTopListingsInOrder() {
+        List<ListingRecord> records = new ArrayList<>();
+        int[] prices = {450000, 150000, 300000, 600000, 250000};
+        for (int i = 0; i < prices.length; i++) {
+            records.add(createListingRecord(new Listing("LIST000" + i, i + " Pine Street, City, State, 11111",
+                    1000 + i * 500, prices[i], 3, 2.0, 0.5, ListingStatus.FOR_SALE.label)));
+        }
+        givenTableContains(records);
+        listingService.rebuildIndex();
+
+        List<Listing> cheapest = listingService.findParameterizedListings(
+                ListingCriteria.fromQueryParameters(0, 500000, 0, 0.0, 0.0, null), ListingSort.parse("price"), 3);
+        List<Listing> largest = listingService.findParameterizedListings(new ListingCriteria(),
+                ListingSort.parse("squareFootage,desc"), 2);
+
+        Assertions.assertEquals(3, cheapest.size());
+        Assertions.assertEquals(150000, cheapest.get(0).getPrice());
+        Assertions.assertEquals(250000, cheapest.get(1).getPrice());
+        Assertions.assertEquals(300000, cheapest.get(2).getPrice());
+        Assertions.assertEquals("LIST0004", largest.get(0).getListingNumber());
+        Assertions.assertEquals("LIST0003", largest.get(1).getListingNumber());
+    }
+
+    @Test
+    void findParameterizedListings_sortedByPriceIndexNotLoaded_stopsReadingAtLimit() {
+        ListingCriteria criteria = ListingCriteria.fromQueryParameters(0, 0, 0, 0.0, 0.0, ListingStatus.FOR_SALE.label);
+        Iterator<ListingRecord> inPriceOrder = mock(Iterator.class);
+        when(inPriceOrder.hasNext()).thenReturn(true);
+        when(inPriceOrder.next()).thenReturn(createListingRecord(listing1));
+        when(listingQueryRepository.findInPriceOrder(criteria, true, 2)).thenReturn(() -> inPriceOrder);
+
+        List<Listing> top = listingService.findParameterizedListings(new ListingCriteria(), ListingSort.parse("price,desc"), 2);
+
+        Assertions.assertEquals(2, top.size());
+        verify(inPriceOrder, times(2)).next();
+    }
+
+    @Test
+    void findParameterizedListings_sortedByLotSizeIndexNotLoaded_keepsBestMatchesAcrossPages() {
+        ListingCriteria criteria = ListingCriteria.fromQueryParameters(0, 0, 0, 0.0, 0.0, ListingStatus.FOR_SALE.label);
+        doAnswer(invocation -> {
+            Consumer<List<ListingRecord>> pageConsumer = (Consumer<List<ListingRecord>>) invocation.getArguments()[1];
+            double[][] pages = {{0.2, 1.5}, {0.9, 3.0}, {0.1}};
+            int number = 0;
+            for (double[] lotSizes : pages) {
+                List<ListingRecord> page = new ArrayList<>();
+                for (double lotSize : lotSizes) {
+                    page.add(createListingRecord(new Listing("LOT0000" + number++, "6 Pine Street, City, State, 11111",
+                            1500, 300000, 3, 2.0, lotSize, ListingStatus.FOR_SALE.label)));
+                }
+                pageConsumer.accept(page);
+            }
+            return null;
+        }).when(listingQueryRepository).forEachPage(eq(criteria), any(Consumer.class));
+
+        List<Listing> top = listingService.findParameterizedListings(new ListingCriteria(), ListingSort.parse("lotSize,desc"), 3);
+
+        Assertions.assertEquals(3, top.size());
+        Assertions.assertEquals(3.0, top.get(0).getLotSize());
+        Assertions.assertEquals(1.5, top.get(1).getLotSize());
+        Assertions.assertEquals(0.9, top.get(2).getLotSize());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findParameterizedListings_sortedWithFieldsIndexNotLoaded_alsoReadsTheSortKey() {
+        ListingCriteria search = new ListingCriteria();
+        search.setFields(Collections.singleton("address"));
+
+        listingService.findParameterizedListings(search, ListingSort.parse("pricePerSquareFoot"), 3);
+
+        ArgumentCaptor<ListingCriteria> criteriaCaptor = ArgumentCaptor.forClass(ListingCriteria.class);
+        verify(listingQueryRepository).forEachPage(criteriaCaptor.capture(), any(Consumer.class));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("address", "squareFootage", "price", "lotSize")),
+                criteriaCaptor.getValue().getFields());
+        Assertions.assertEquals(Collections.singleton("address"), search.getFields());
+    }
+
+    @Test
+    void findParameterizedListings_differentFields_cachedSeparately() {
+        ListingCriteria addresses = ListingCriteria.fromQueryParameters(1600, 0, 0, 0, 0, null);
+        addresses.setFields(Collections.singleton("address"));
+        ListingCriteria prices = ListingCriteria.fromQueryParameters(1600, 0, 0, 0, 0, null);
+        prices.setFields(Collections.singleton("price"));
+        when(listingQueryRepository.find(any(ListingCriteria.class))).thenReturn(Collections.emptyList());
+
+        listingService.findParameterizedListings(addresses);
+        listingService.findParameterizedListings(prices);
+        listingService.findParameterizedListings(prices);
+
+        verify(listingQueryRepository, times(2)).find(any(ListingCriteria.class));
+    }
+
+    @Test
+    void createNewListing_addressWithZipCode_savesCityStateAndZipCode() {
+        Listing listing = new Listing(generator.generateId(), "12 Elm Street, Hoboken, New Jersey, 07030",
+                1500, 600000, 2, 1.0, 0.1, ListingStatus.FOR_SALE.label);
+        ArgumentCaptor<ListingRecord> recordCaptor = ArgumentCaptor.forClass(ListingRecord.class);
+
+        listingService.createNewListing(listing);
+
+        verify(listingServiceRepository).save(recordCaptor.capture());
+        Assertions.assertEquals("Hoboken", recordCaptor.getValue().getCity());
+        Assertions.assertEquals("New Jersey", recordCaptor.getValue().getState());
+        Assertions.assertEquals("07030", recordCaptor.getValue().getZipCode());
+    }
+
+    @Test
+    void findNearbyListings_indexLoaded_returnsListingsInRadiusNearestFirst() {
+        Listing hoboken = new Listing("NEAR0001", "12 Elm Street, Hoboken, New Jersey, 07030",
+                1500, 600000, 2, 1.0, 0.1, ListingStatus.FOR_SALE.label);
+        Listing manhattan = new Listing("NEAR0002", "400 8th Avenue, New York, New York, 10001",
+                900, 1200000, 1, 1.0, 0.1, ListingStatus.FOR_SALE.label);
+        Listing soldManhattan = new Listing("NEAR0003", "410 8th Avenue, New York, New York, 10001",
+                900, 1100000, 1, 1.0, 0.1, ListingStatus.SOLD.label);
+        Listing beverlyHills = new Listing("NEAR0004", "9 Palm Drive, Beverly Hills, California, 90210",
+                3000, 1400000, 4, 3.0, 0.5, ListingStatus.FOR_SALE.label);
+        givenTableContains(Arrays.asList(createListingRecord(hoboken), createListingRecord(manhattan),
+                createListingRecord(soldManhattan), createListingRecord(beverlyHills)));
+        listingService.rebuildIndex();
+
+        List<Listing> nearby = listingService.findNearbyListings(new ListingCriteria(), "10001", 5, 10);
+
+        Assertions.assertEquals(2, nearby.size(), "Only the open listings within 5 miles should match");
+        Assertions.assertEquals(manhattan.getListingNumber(), nearby.get(0).getListingNumber());
+        Assertions.assertEquals(hoboken.getListingNumber(), nearby.get(1).getListingNumber());
+        Assertions.assertEquals(1, listingService.findNearbyListings(new ListingCriteria(), "10001", 5, 1).size());
+        Assertions.assertEquals(1, listingService.findNearbyListings(new ListingCriteria(), "10001", 1, 10).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findNearbyListings_indexNotLoaded_checksZipCodesOfDynamoDbPages() {
+        ListingRecord hoboken = createListingRecord(new Listing("NEAR0001", "12 Elm Street, Hoboken, New Jersey, 07030",
+                1500, 600000, 2, 1.0, 0.1, ListingStatus.FOR_SALE.label));
+        hoboken.setZipCode("07030");
+        ListingRecord beverlyHills = createListingRecord(new Listing("NEAR0004", "9 Palm Drive, Beverly Hills, California, 90210",
+                3000, 1400000, 4, 3.0, 0.5, ListingStatus.FOR_SALE.label));
+        beverlyHills.setZipCode("90210");
+        ArgumentCaptor<ListingCriteria> criteriaCaptor = ArgumentCaptor.forClass(ListingCriteria.class);
+        doAnswer(invocation -> {
+            ((Consumer<List<ListingRecord>>) invocation.getArguments()[1]).accept(Arrays.asList(hoboken, beverlyHills));
+            return null;
+        }).when(listingQueryRepository).forEachPage(criteriaCaptor.capture(), any(Consumer.class));
+
+        List<Listing> nearby = listingService.findNearbyListings(new ListingCriteria(), "10001", 5, 10);
+
+        Assertions.assertEquals(1, nearby.size());
+        Assertions.assertEquals("NEAR0001", nearby.get(0).getListingNumber());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("10001", "07030")), criteriaCaptor.getValue().getZipCodes());
+        Assertions.assertEquals(ListingStatus.FOR_SALE.label, criteriaCaptor.getValue().getListingStatus());
+    }
+
+    @Test
+    void findNearbyListings_unknownZipCode_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> listingService.findNearbyListings(new ListingCriteria(), "99999", 5, 10));
+    }
+
+    @Test
+    void searchListings_indexNotLoaded_scoresEveryListing() {
+        Listing maple = new Listing("SRCH0001", "4821 Maple Avenue, Springfield, Illinois, 62701",
+                1500, 300000, 3, 2.0, 0.5, ListingStatus.SOLD.label);
+        Listing oak = new Listing("SRCH0002", "12 Oak Avenue, Dayton, Ohio, 45403",
+                1500, 300000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        givenTableContains(Arrays.asList(createListingRecord(maple), createListingRecord(oak)));
+
+        List<Listing> matches = listingService.searchListings("maple ave", 10);
+
+        Assertions.assertEquals(1, matches.size());
+        Assertions.assertEquals(maple.getListingNumber(), matches.get(0).getListingNumber());
+    }
+
+    @Test
+    void searchListings_indexLoaded_answersFromIndex() {
+        Listing maple = new Listing("SRCH0001", "4821 Maple Avenue, Springfield, Illinois, 62701",
+                1500, 300000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        givenTableContains(Collections.singletonList(createListingRecord(maple)));
+        listingService.rebuildIndex();
+        listingService.createNewListing(new Listing("SRCH0002", "9 Maple Lane, Springfield, Illinois, 62703",
+                1500, 300000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label));
+
+        List<Listing> matches = listingService.searchListings("Maple", 10);
+
+        Assertions.assertEquals(2, matches.size());
+        verify(listingQueryRepository, times(1)).scanAll((RateLimiter) any(), any(Consumer.class));
+    }
+
+    @Test
+    void searchListings_noLettersOrDigits_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> listingService.searchListings(" - ", 10));
+    }
+
+    @Test
+    void findFacets_indexNotLoaded_throwsIllegalStateException() {
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> listingService.findFacets(new ListingCriteria()));
+
+        verify(listingQueryRepository, never()).find(any(ListingCriteria.class));
+        verify(listingQueryRepository, never()).forEachPage(any(ListingCriteria.class), any(Consumer.class));
+    }
+
+    @Test
+    void findFacets_indexLoaded_countsListingsForSale() {
+        listingIndex.rebuild(Arrays.asList(
+                new Listing("FACET001", "1 Oak Street, City, State, 11111", 1800, 250000, 3, 2.0, 0.5,
+                        ListingStatus.FOR_SALE.label),
+                new Listing("FACET002", "2 Oak Street, City, State, 11111", 1800, 250000, 4, 2.0, 0.5,
+                        ListingStatus.SOLD.label)));
+
+        ListingFacets facets = listingService.findFacets(new ListingCriteria());
+
+        Assertions.assertEquals(1, facets.getTotal());
+        Assertions.assertEquals(3.0, facets.getFacets().get("numBedrooms").get(0).getMin());
+        Assertions.assertEquals(1, facets.getFacets().get("numBedrooms").get(0).getCount());
+        verify(listingQueryRepository, never()).find(any(ListingCriteria.class));
+        verify(listingQueryRepository, never()).forEachPage(any(ListingCriteria.class), any(Consumer.class));
+    }
+
+    @Test
+    void countParameterizedListings_indexNotLoaded_countsInDynamoDb() {
+        when(listingQueryRepository.count(any(ListingCriteria.class))).thenReturn(42);
+        ArgumentCaptor<ListingCriteria> criteriaCaptor = ArgumentCaptor.forClass(ListingCriteria.class);
+
+        long count = listingService.countParameterizedListings(ListingCriteria.fromQueryParameters(0, 500000, 0, 0, 0, null));
+
+        Assertions.assertEquals(42, count);
+        verify(listingQueryRepository).count(criteriaCaptor.capture());
+        Assertions.assertEquals(ListingStatus.FOR_SALE.label, criteriaCaptor.getValue().getListingStatus());
+        verify(listingQueryRepository, never()).find(any(ListingCriteria.class));
+    }
+
+    @Test
+    void countListings_indexLoaded_countsWithoutReadingDynamoDb() {
+        givenTableContains(Arrays.asList(
+                createListingRecord(new Listing("COUNT001", "1 Oak Street, City, State, 11111",
+                        1800, 250000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label)),
+                createListingRecord(new Listing("COUNT002", "2 Oak Street, City, State, 11111",
+                        1800, 650000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label)),
+                createListingRecord(new Listing("COUNT003", "3 Oak Street, City, State, 11111",
+                        1800, 250000, 3, 2.0, 0.5, ListingStatus.SOLD.label))));
+        listingService.rebuildIndex();
+
+        Assertions.assertEquals(3, listingService.countAllListings());
+        Assertions.assertEquals(2, listingService.countAllOpenListings());
+        Assertions.assertEquals(1, listingService.countParameterizedListings(
+                ListingCriteria.fromQueryParameters(0, 500000, 0, 0, 0, null)));
+        verify(listingQueryRepository, never()).count(any(ListingCriteria.class));
+    }
+
+    @Test
+    void findStatistics_notLoaded_throwsIllegalStateException() {
+        Assertions.assertThrows(IllegalStateException.class, () -> listingService.findStatistics("Ohio", null));
+        Assertions.assertThrows(IllegalStateException.class, () -> listingService.findStatisticsByState());
+    }
+
+    @Test
+    void findStatistics_afterRebuildAndWrites_followsListingsForSale() {
+        Listing first = new Listing("STATS001", "1 Elm Street, Columbus, Ohio, 43004",
+                1000, 200000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        Listing second = new Listing("STATS002", "2 Elm Street, Columbus, Ohio, 43004",
+                2000, 400000, 4, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        givenTableContains(Collections.singletonList(createListingRecord(first)));
+        listingService.rebuildIndex();
+
+        listingService.createNewListing(second);
+        RegionStatistics ohio = listingService.findStatistics("Ohio", null);
+        Assertions.assertEquals(2, ohio.getListings());
+        Assertions.assertEquals(300000, ohio.getAveragePrice());
+
+        when(listingServiceRepository.existsById(first.getListingNumber())).thenReturn(true);
+        cacheStore.add(first.getListingNumber(), first);
+        listingService.updateStatus(first.getListingNumber(), ListingStatus.SOLD.label);
+
+        RegionStatistics zipCode = listingService.findStatistics(null, "43004");
+        Assertions.assertEquals(1, zipCode.getListings());
+        Assertions.assertEquals(400000, zipCode.getAveragePrice());
+        Assertions.assertEquals(1, listingService.findStatisticsByState().size());
+
+        listingService.deleteListing(second.getListingNumber());
+
+        Assertions.assertNull(listingService.findStatistics("Ohio", null));
+        Assertions.assertTrue(listingService.findStatisticsByState().isEmpty());
+    }
+
+    @Test
+    void findParameterizedListings_repeatedSearch_answersFromQueryResultCache() {
+        ListingRecord record = createListingRecord(new Listing("CACHE001", "1 Oak Street, City, State, 11111",
+                1800, 250000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label));
+        when(listingQueryRepository.find(any(ListingCriteria.class))).thenReturn(Collections.singletonList(record));
+
+        List<Listing> first = listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+        List<Listing> second = listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+
+        Assertions.assertEquals(1, second.size());
+        Assertions.assertSame(first, second);
+        verify(listingQueryRepository, times(1)).find(any(ListingCriteria.class));
+    }
+
+    @Test
+    void updatePrice_listingOutsideCachedSearch_keepsCachedResult() {
+        Listing expensive = new Listing("CACHE002", "2 Oak Street, City, State, 11111",
+                2400, 900000, 4, 3.0, 1.0, ListingStatus.FOR_SALE.label);
+        when(listingQueryRepository.find(any(ListingCriteria.class))).thenReturn(Collections.emptyList());
+        when(listingServiceRepository.existsById(expensive.getListingNumber())).thenReturn(true);
+        cacheStore.add(expensive.getListingNumber(), expensive);
+        listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+
+        listingService.updatePrice(expensive.getListingNumber(), 950000);
+        listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+        verify(listingQueryRepository, times(1)).find(any(ListingCriteria.class));
+
+        listingService.updatePrice(expensive.getListingNumber(), 280000);
+        listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+        verify(listingQueryRepository, times(2)).find(any(ListingCriteria.class));
+    }
+
+    @Test
+    void deleteListing_listingInCachedSearch_dropsCachedResult() {
+        Listing cheap = new Listing("CACHE003", "1 Oak Street, City, State, 11111",
+                1800, 250000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+        when(listingQueryRepository.find(any(ListingCriteria.class)))
+                .thenReturn(Collections.singletonList(createListingRecord(cheap)));
+        cacheStore.add(cheap.getListingNumber(), cheap);
+        listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+
+        listingService.deleteListing(cheap.getListingNumber());
+        listingService.findParameterizedListings(1500, 300000, 3, 0.0, 0.0);
+
+        verify(listingQueryRepository, times(2)).find(any(ListingCriteria.class));
+    }
 }
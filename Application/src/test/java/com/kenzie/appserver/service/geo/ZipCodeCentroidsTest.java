@@ -0,0 +1,63 @@
+package com.kenzie.appserver.service.geo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+
+public class ZipCodeCentroidsTest {
+
+    @Test
+    void within_gazetteerLayout_findsZipCodesInRadiusWithDistances() throws IOException {
+        ZipCodeCentroids centroids = new ZipCodeCentroids(new StringReader(
+                "GEOID\tALAND\tAWATER\tALAND_SQMI\tAWATER_SQMI\tINTPTLAT\tINTPTLONG                    \n" +
+                "10001\t1\t0\t1\t0\t40.751\t-73.997\n" +
+                "07030\t1\t0\t1\t0\t40.745\t-74.032\n" +
+                "08540\t1\t0\t1\t0\t40.361\t-74.660\n" +
+                "90210\t1\t0\t1\t0\t34.101\t-118.415\n"));
+
+        Map<String, Double> within = centroids.within("10001", 10);
+
+        Assertions.assertEquals(4, centroids.size());
+        Assertions.assertEquals(2, within.size());
+        Assertions.assertEquals(0.0, within.get("10001"));
+        Assertions.assertEquals(1.9, within.get("07030"), 0.1);
+        Assertions.assertTrue(centroids.within("10001", 50).containsKey("08540"));
+        Assertions.assertNull(centroids.within("99999", 10));
+    }
+
+    @Test
+    void within_randomPoints_matchesCheckingEveryZipCode() throws IOException {
+        // Points either side of many cell edges, checked against the distance to every point
+        Random random = new Random(11);
+        StringBuilder table = new StringBuilder("GEOID\tINTPTLAT\tINTPTLONG\n");
+        double[][] points = new double[500][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] {40 + random.nextDouble() * 4, -76 + random.nextDouble() * 4};
+            table.append(String.format("%05d\t%f\t%f%n", i, points[i][0], points[i][1]));
+        }
+        ZipCodeCentroids centroids = new ZipCodeCentroids(new StringReader(table.toString()));
+
+        for (double miles : new double[] {5, 30, 120}) {
+            Map<String, Double> within = centroids.within("00000", miles);
+            Map<String, Double> everything = centroids.within("00000", 100000);
+            int expected = 0;
+            for (Map.Entry<String, Double> entry : everything.entrySet()) {
+                if (entry.getValue() <= miles) {
+                    expected++;
+                    Assertions.assertEquals(entry.getValue(), within.get(entry.getKey()));
+                }
+            }
+            Assertions.assertEquals(expected, within.size(), "Radius " + miles);
+        }
+    }
+
+    @Test
+    void constructor_headerWithoutCoordinates_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ZipCodeCentroids(new StringReader("GEOID\tALAND\n10001\t1\n")));
+    }
+}
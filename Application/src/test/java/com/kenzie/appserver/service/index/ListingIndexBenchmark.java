@@ -0,0 +1,112 @@
+package com.kenzie.appserver.service.index;
+
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the bitmap backed {@link ListingIndex} against the scan-and-filter loop that searches used to run over
+ * every listing, for a filter on the low-cardinality columns only (bedrooms, bathrooms, lot size and status).
+ * Not run with the unit tests; run it with {@code ./gradlew :Application:jmh --args='ListingIndexBenchmark'} or
+ * from this class's main method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListingIndexBenchmark {
+    private static final double[] BATHROOMS = {1.0, 1.5, 2.0, 2.5, 3.0, 3.5};
+    private static final double[] LOT_SIZES = {0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 1.0, 1.2, 1.3, 1.4, 1.5,
+        1.6, 1.7, 1.8, 1.9, 2.0};
+
+    @Param({"10000", "100000"})
+    private int listingCount;
+
+    private List<Listing> listings;
+    private ListingIndex listingIndex;
+    private ListingCriteria criteria;
+
+    @Setup
+    public void setup() {
+        // The same value sets as ListingGenerator
+        Random random = new Random(17);
+        ListingStatus[] statuses = ListingStatus.values();
+        listings = new ArrayList<>(listingCount);
+        for (int i = 0; i < listingCount; i++) {
+            listings.add(new Listing(String.format("%08d", i), i + " Main Street, City, State, 11111",
+                    random.nextInt(9500) + 500, random.nextInt(1500000), random.nextInt(7) + 1,
+                    BATHROOMS[random.nextInt(BATHROOMS.length)], LOT_SIZES[random.nextInt(LOT_SIZES.length)],
+                    statuses[random.nextInt(statuses.length)].label));
+        }
+        listingIndex = new ListingIndex();
+        listingIndex.rebuild(listings);
+
+        criteria = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        criteria.setMinNumBedrooms(4);
+        criteria.setMinNumBathrooms(2.5);
+        criteria.setMinLotSize(1.5);
+    }
+
+    @Benchmark
+    public int scanAndFilterCount() {
+        int count = 0;
+        for (Listing listing : listings) {
+            if (listing.getListingStatus().equals(criteria.getListingStatus())
+                    && listing.getNumBedrooms() >= criteria.getMinNumBedrooms()
+                    && listing.getNumBathrooms() >= criteria.getMinNumBathrooms()
+                    && listing.getLotSize() >= criteria.getMinLotSize()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int bitmapCount() {
+        return listingIndex.count(criteria);
+    }
+
+    @Benchmark
+    public List<Listing> scanAndFilterFind() {
+        List<Listing> matches = new ArrayList<>();
+        for (Listing listing : listings) {
+            if (listing.getListingStatus().equals(criteria.getListingStatus())
+                    && listing.getNumBedrooms() >= criteria.getMinNumBedrooms()
+                    && listing.getNumBathrooms() >= criteria.getMinNumBathrooms()
+                    && listing.getLotSize() >= criteria.getMinLotSize()) {
+                matches.add(listing);
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public List<Listing> bitmapFind() {
+        return listingIndex.find(criteria);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ListingIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,335 @@
+package com.kenzie.appserver.service.index;
+
+import com.kenzie.appserver.repositories.model.ListingCriteria;
+import com.kenzie.appserver.repositories.model.ListingSort;
+import com.kenzie.appserver.service.model.FacetCount;
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingFacets;
+import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.PostalAddress;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class ListingIndexTest {
+    private ListingIndex listingIndex;
+
+    @BeforeEach
+    void setup() {
+        listingIndex = new ListingIndex();
+    }
+
+    @Test
+    void find_twoSidedRanges_returnsOnlyListingsInsideEveryRange() {
+        List<Listing> listings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            listings.add(listing(String.format("LIST%04d", i), 1000 + i * 20, 200000 + i * 5000, 1 + i % 5, 1.0 + i % 3, 0.1 * (i % 10)));
+        }
+        listingIndex.rebuild(listings);
+
+        ListingCriteria criteria = new ListingCriteria();
+        criteria.setMinPrice(300000);
+        criteria.setMaxPrice(450000);
+        criteria.setMinSquareFootage(1500);
+        criteria.setMaxSquareFootage(2500);
+
+        List<Listing> matches = listingIndex.find(criteria);
+
+        Assertions.assertEquals(26, matches.size());
+        for (Listing listing : matches) {
+            Assertions.assertTrue(listing.getPrice() >= 300000 && listing.getPrice() <= 450000);
+            Assertions.assertTrue(listing.getSquareFootage() >= 1500 && listing.getSquareFootage() <= 2500);
+        }
+    }
+
+    @Test
+    void find_afterRandomWrites_matchesFilteringEveryListing() {
+        Random random = new Random(42);
+        Map<String, Listing> listings = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            Listing listing = randomListing(random, "LIST" + i);
+            listings.put(listing.getListingNumber(), listing);
+        }
+        listingIndex.rebuild(new ArrayList<>(listings.values()));
+
+        for (int i = 0; i < 2000; i++) {
+            String listingNumber = "LIST" + random.nextInt(600);
+            if (random.nextInt(4) == 0) {
+                listings.remove(listingNumber);
+                listingIndex.remove(listingNumber);
+            } else {
+                Listing listing = randomListing(random, listingNumber);
+                listings.put(listingNumber, listing);
+                listingIndex.put(listing);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            ListingCriteria criteria = randomCriteria(random);
+            List<String> expected = listings.values().stream()
+                    .filter(listing -> satisfies(listing, criteria))
+                    .map(Listing::getListingNumber).sorted().collect(Collectors.toList());
+            List<String> actual = listingIndex.find(criteria).stream()
+                    .map(Listing::getListingNumber).sorted().collect(Collectors.toList());
+            Assertions.assertEquals(expected, actual, criteria.toString());
+            Assertions.assertEquals(expected.size(), listingIndex.count(criteria), criteria.toString());
+
+            ListingSort sort = new ListingSort(ListingSort.Field.values()[random.nextInt(4)], random.nextBoolean());
+            Comparator<Listing> bySortKey = (first, second) -> sort.compareKeys(
+                    sort.sortKey(first.getSquareFootage(), first.getPrice(), first.getLotSize()),
+                    sort.sortKey(second.getSquareFootage(), second.getPrice(), second.getLotSize()));
+            Comparator<Listing> inSortOrder = bySortKey.thenComparing(Listing::getListingNumber);
+            List<String> expectedTop = listings.values().stream()
+                    .filter(listing -> satisfies(listing, criteria))
+                    .sorted(inSortOrder).limit(10)
+                    .map(Listing::getListingNumber).collect(Collectors.toList());
+            List<String> actualTop = listingIndex.findTop(criteria, sort, 10).stream()
+                    .map(Listing::getListingNumber).collect(Collectors.toList());
+            Assertions.assertEquals(expectedTop, actualTop, criteria + " " + sort);
+        }
+    }
+
+    @Test
+    void findTop_tiesAtTheLimit_brokenByListingNumber() {
+        List<Listing> listings = new ArrayList<>();
+        for (String listingNumber : new String[]{"DDDD", "BBBB", "CCCC", "AAAA"}) {
+            listings.add(listing(listingNumber, 1500, 300000, 3, 2.0, 0.5));
+        }
+        listings.add(listing("EEEE", 1500, 100000, 3, 2.0, 0.5));
+        listingIndex.rebuild(listings);
+
+        List<Listing> top = listingIndex.findTop(new ListingCriteria(), ListingSort.parse("price"), 3);
+
+        Assertions.assertEquals("EEEE", top.get(0).getListingNumber());
+        Assertions.assertEquals("AAAA", top.get(1).getListingNumber());
+        Assertions.assertEquals("BBBB", top.get(2).getListingNumber());
+    }
+
+    @Test
+    void count_bitmapColumnsOnly_countsEveryMatch() {
+        List<Listing> listings = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            ListingStatus status = i % 2 == 0 ? ListingStatus.SOLD : ListingStatus.FOR_SALE;
+            listings.add(new Listing(String.format("LIST%04d", i), "1 Birch Street, City, State, 11111", 1500, 300000,
+                    1 + i % 7, 1.0 + 0.5 * (i % 6), 0.5, status.label));
+        }
+        listingIndex.rebuild(listings);
+
+        ListingCriteria criteria = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        criteria.setMinNumBedrooms(3);
+        criteria.setMaxNumBedrooms(4);
+        criteria.setMinNumBathrooms(2.0);
+
+        int expected = (int) listings.stream()
+                .filter(listing -> listing.getListingStatus().equals(ListingStatus.FOR_SALE.label)
+                        && listing.getNumBedrooms() >= 3 && listing.getNumBedrooms() <= 4
+                        && listing.getNumBathrooms() >= 2.0)
+                .count();
+        Assertions.assertEquals(expected, listingIndex.count(criteria));
+
+        listingIndex.remove("LIST0003");
+        listingIndex.put(listing("LIST0009", 1500, 300000, 1, 1.0, 0.5));
+
+        Assertions.assertEquals(expected - 2, listingIndex.count(criteria), "Bitmaps should follow removes and updates");
+    }
+
+    @Test
+    void explain_selectivePriceBound_readsPriceRangeInsteadOfEverySlot() {
+        List<Listing> listings = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            listings.add(listing(String.format("LIST%04d", i), 1000 + i, 100000 + i * 1000, i % 5, 2.0, 0.5));
+        }
+        listingIndex.rebuild(listings);
+
+        ListingCriteria selective = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        selective.setMinPrice(500000);
+        selective.setMaxPrice(510000);
+        ListingCriteria loose = ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        loose.setMinPrice(200000);
+
+        Assertions.assertEquals(QueryPlan.AccessPath.PRICE_RANGE, listingIndex.explain(selective).getAccessPath());
+        Assertions.assertEquals(11, listingIndex.explain(selective).getSlotsRead());
+        Assertions.assertEquals(11, listingIndex.find(selective).size());
+        Assertions.assertEquals(QueryPlan.AccessPath.FULL_SCAN, listingIndex.explain(loose).getAccessPath());
+    }
+
+    @Test
+    void facets_afterRandomWrites_matchBucketingEveryMatch() {
+        Random random = new Random(7);
+        Map<String, Listing> listings = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            Listing listing = randomListing(random, "LIST" + i);
+            listings.put(listing.getListingNumber(), listing);
+        }
+        listingIndex.rebuild(new ArrayList<>(listings.values()));
+        for (int i = 0; i < 500; i++) {
+            String listingNumber = "LIST" + random.nextInt(400);
+            if (random.nextInt(4) == 0) {
+                listings.remove(listingNumber);
+                listingIndex.remove(listingNumber);
+            } else {
+                Listing listing = randomListing(random, listingNumber);
+                listings.put(listingNumber, listing);
+                listingIndex.put(listing);
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            ListingCriteria criteria = randomCriteria(random);
+            List<Listing> matches = listings.values().stream()
+                    .filter(listing -> satisfies(listing, criteria)).collect(Collectors.toList());
+            ListingFacets facets = listingIndex.facets(criteria);
+
+            Assertions.assertEquals(matches.size(), facets.getTotal(), criteria.toString());
+            assertFacet(facets, "price", matches,
+                    listing -> Math.floor(listing.getPrice() / (double) ListingIndex.PRICE_BUCKET)
+                            * ListingIndex.PRICE_BUCKET);
+            assertFacet(facets, "squareFootage", matches,
+                    listing -> Math.floor(listing.getSquareFootage() / (double) ListingIndex.SQUARE_FOOTAGE_BUCKET)
+                            * ListingIndex.SQUARE_FOOTAGE_BUCKET);
+            assertFacet(facets, "numBedrooms", matches, listing -> (double) listing.getNumBedrooms());
+            assertFacet(facets, "numBathrooms", matches, Listing::getNumBathrooms);
+            assertFacet(facets, "lotSize", matches, Listing::getLotSize);
+        }
+    }
+
+    @Test
+    void facets_priceBucket_coversItsWholeRange() {
+        listingIndex.rebuild(Arrays.asList(listing("LIST0001", 1200, 100000, 2, 1.0, 0.25),
+                listing("LIST0002", 1499, 199999, 2, 1.0, 0.25),
+                listing("LIST0003", 1500, 200000, 3, 2.0, 0.25)));
+
+        List<FacetCount> price = listingIndex.facets(new ListingCriteria()).getFacets().get("price");
+
+        Assertions.assertEquals(2, price.size());
+        Assertions.assertEquals(100000, price.get(0).getMin());
+        Assertions.assertEquals(199999, price.get(0).getMax());
+        Assertions.assertEquals(2, price.get(0).getCount());
+        Assertions.assertEquals(200000, price.get(1).getMin());
+        Assertions.assertEquals(1, price.get(1).getCount());
+    }
+
+    private static void assertFacet(ListingFacets facets, String attribute, List<Listing> matches,
+                                    Function<Listing, Double> bucket) {
+        Map<Double, Long> expected = matches.stream()
+                .collect(Collectors.groupingBy(bucket, Collectors.counting()));
+        Map<Double, Long> actual = new HashMap<>();
+        for (FacetCount count : facets.getFacets().get(attribute)) {
+            if (count.getCount() > 0) {
+                actual.put(count.getMin(), count.getCount());
+            }
+        }
+        Assertions.assertEquals(expected, actual, attribute);
+    }
+
+    @Test
+    void search_partialStreetNames_ranksClosestAddressesFirst() {
+        listingIndex.rebuild(Arrays.asList(
+                addressed("LIST0001", "4821 Maple Avenue, Springfield, Illinois, 62701"),
+                addressed("LIST0002", "17 Maple Street, Springfield, Illinois, 62702"),
+                addressed("LIST0003", "300 Germantown Drive, Dayton, Ohio, 45402"),
+                addressed("LIST0004", "12 Oak Avenue, Dayton, Ohio, 45403")));
+
+        Assertions.assertEquals(Arrays.asList("LIST0001", "LIST0002"), searchFor("maple ave"));
+        Assertions.assertEquals(Arrays.asList("LIST0003"), searchFor("GERMANTOWN"));
+        Assertions.assertEquals(Arrays.asList("LIST0003"), searchFor("germantwn"), "A typo should still match");
+        Assertions.assertEquals(Collections.emptyList(), searchFor("birch"));
+        Assertions.assertTrue(listingIndex.search(new AddressQuery("?!"), 10).isEmpty());
+    }
+
+    @Test
+    void search_afterWrites_followsAddressChanges() {
+        listingIndex.rebuild(Arrays.asList(
+                addressed("LIST0001", "4821 Maple Avenue, Springfield, Illinois, 62701"),
+                addressed("LIST0002", "17 Maple Street, Springfield, Illinois, 62702")));
+
+        listingIndex.remove("LIST0001");
+        listingIndex.put(addressed("LIST0002", "17 Cedar Street, Springfield, Illinois, 62702"));
+        listingIndex.put(addressed("LIST0003", "9 Maple Lane, Springfield, Illinois, 62703"));
+
+        Assertions.assertEquals(Arrays.asList("LIST0003"), searchFor("maple"));
+        Assertions.assertEquals(Arrays.asList("LIST0002"), searchFor("cedar st"));
+    }
+
+    private List<String> searchFor(String query) {
+        return listingIndex.search(new AddressQuery(query), 10).stream()
+                .map(match -> match.getListing().getListingNumber()).collect(Collectors.toList());
+    }
+
+    private static Listing addressed(String listingNumber, String address) {
+        return new Listing(listingNumber, address, 1500, 300000, 3, 2.0, 0.5, ListingStatus.FOR_SALE.label);
+    }
+
+    private static Listing listing(String listingNumber, int squareFootage, int price, int numBedrooms,
+                                   double numBathrooms, double lotSize) {
+        return new Listing(listingNumber, "1 Birch Street, City, State, 11111", squareFootage, price, numBedrooms,
+                numBathrooms, lotSize, ListingStatus.FOR_SALE.label);
+    }
+
+    private static Listing randomListing(Random random, String listingNumber) {
+        ListingStatus status = ListingStatus.values()[random.nextInt(ListingStatus.values().length)];
+        String address = String.format("1 Birch Street, City, State%d, %05d", random.nextInt(3), random.nextInt(8));
+        return new Listing(listingNumber, address, random.nextInt(40) * 100,
+                100000 + random.nextInt(50) * 10000, random.nextInt(6), random.nextInt(8) * 0.5,
+                random.nextInt(20) * 0.25, status.label);
+    }
+
+    private static ListingCriteria randomCriteria(Random random) {
+        ListingCriteria criteria = random.nextBoolean() ? new ListingCriteria()
+                : ListingCriteria.withStatus(ListingStatus.FOR_SALE.label);
+        if (random.nextBoolean()) {
+            criteria.setMinPrice(100000 + random.nextInt(30) * 10000);
+        }
+        if (random.nextBoolean()) {
+            criteria.setMaxPrice(300000 + random.nextInt(30) * 10000);
+        }
+        if (random.nextBoolean()) {
+            criteria.setMinSquareFootage(random.nextInt(20) * 100);
+            criteria.setMaxSquareFootage(criteria.getMinSquareFootage() + random.nextInt(20) * 100);
+        }
+        if (random.nextInt(3) == 0) {
+            criteria.setMaxNumBedrooms(random.nextInt(6));
+        }
+        if (random.nextInt(3) == 0) {
+            criteria.setMinNumBathrooms(random.nextInt(8) * 0.5);
+        }
+        if (random.nextInt(3) == 0) {
+            criteria.setMaxLotSize(random.nextInt(20) * 0.25);
+        }
+        if (random.nextInt(4) == 0) {
+            criteria.setState("State" + random.nextInt(3));
+        }
+        if (random.nextInt(4) == 0) {
+            criteria.setZipCodes(new HashSet<>(Arrays.asList(String.format("%05d", random.nextInt(8)),
+                    String.format("%05d", random.nextInt(8)))));
+        }
+        return criteria;
+    }
+
+    private static boolean satisfies(Listing listing, ListingCriteria criteria) {
+        return within(listing.getSquareFootage(), criteria.getMinSquareFootage(), criteria.getMaxSquareFootage())
+                && within(listing.getPrice(), criteria.getMinPrice(), criteria.getMaxPrice())
+                && within(listing.getNumBedrooms(), criteria.getMinNumBedrooms(), criteria.getMaxNumBedrooms())
+                && within(listing.getNumBathrooms(), criteria.getMinNumBathrooms(), criteria.getMaxNumBathrooms())
+                && within(listing.getLotSize(), criteria.getMinLotSize(), criteria.getMaxLotSize())
+                && (criteria.getListingStatus() == null || criteria.getListingStatus().equals(listing.getListingStatus()))
+                && criteria.matchesLocation(PostalAddress.parse(listing.getAddress()).getState(),
+                        PostalAddress.parse(listing.getAddress()).getZipCode());
+    }
+
+    private static boolean within(double value, Number min, Number max) {
+        return (min == null || value >= min.doubleValue()) && (max == null || value <= max.doubleValue());
+    }
+}
@@ -0,0 +1,57 @@
+package com.kenzie.appserver.service.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ListingNumberFilterTest {
+
+    @Test
+    void mightContain_beforeRebuildCompletes_letsEveryNumberThrough() {
+        ListingNumberFilter filter = new ListingNumberFilter(1000);
+        filter.beginRebuild(0);
+        filter.load(Collections.singletonList("LIST0001"));
+
+        Assertions.assertTrue(filter.mightContain("NOTALIST"));
+    }
+
+    @Test
+    void mightContain_afterRebuild_rejectsMostUnknownNumbers() {
+        ListingNumberFilter filter = new ListingNumberFilter(1000);
+        List<String> listingNumbers = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            listingNumbers.add(String.format("L%07d", i));
+        }
+        filter.beginRebuild(listingNumbers.size());
+        filter.load(listingNumbers);
+        filter.endRebuild(true);
+
+        for (String listingNumber : listingNumbers) {
+            Assertions.assertTrue(filter.mightContain(listingNumber), listingNumber);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(String.format("U%07d", i))) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives < 10000 * 2 * ListingNumberFilter.FALSE_POSITIVE_PROBABILITY,
+                falsePositives + " false positives");
+    }
+
+    @Test
+    void put_duringRebuild_isKept() {
+        ListingNumberFilter filter = new ListingNumberFilter(1000);
+        filter.beginRebuild(0);
+        filter.put("NEW00001");
+        filter.load(Arrays.asList("LIST0001", "LIST0002"));
+        filter.endRebuild(true);
+
+        Assertions.assertTrue(filter.mightContain("NEW00001"));
+        Assertions.assertTrue(filter.mightContain("LIST0002"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.kenzie.appserver.service.index;
+
+import com.kenzie.appserver.service.index.QueryPlan.AccessPath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class QueryPlannerTest {
+
+    @Test
+    void choose_noSelectiveBound_scansEverySlot() {
+        QueryPlanner planner = new QueryPlanner(10000, 10200);
+        planner.addRange(AccessPath.SQUARE_FOOTAGE_RANGE, 10000);
+        planner.addRange(AccessPath.PRICE_RANGE, 6000);
+
+        QueryPlan plan = planner.choose();
+
+        Assertions.assertEquals(AccessPath.FULL_SCAN, plan.getAccessPath());
+        Assertions.assertEquals(10200, plan.getSlotsRead());
+        Assertions.assertEquals(6000, plan.getEstimatedMatches());
+    }
+
+    @Test
+    void choose_selectivePriceBound_readsPriceRange() {
+        QueryPlanner planner = new QueryPlanner(10000, 10000);
+        planner.addRange(AccessPath.SQUARE_FOOTAGE_RANGE, 10000);
+        planner.addRange(AccessPath.PRICE_RANGE, 40);
+        planner.addBitmap(2500);
+
+        QueryPlan plan = planner.choose();
+
+        Assertions.assertEquals(AccessPath.PRICE_RANGE, plan.getAccessPath());
+        Assertions.assertEquals(40, plan.getSlotsRead());
+        Assertions.assertEquals(10, plan.getEstimatedMatches());
+    }
+
+    @Test
+    void choose_selectiveBitmaps_readsIntersection() {
+        QueryPlanner planner = new QueryPlanner(10000, 10000);
+        planner.addRange(AccessPath.PRICE_RANGE, 5000);
+        planner.addBitmap(1000);
+        planner.addBitmap(500);
+
+        QueryPlan plan = planner.choose();
+
+        Assertions.assertEquals(AccessPath.BITMAP_INTERSECTION, plan.getAccessPath());
+        Assertions.assertEquals(50, plan.getSlotsRead());
+        Assertions.assertEquals(25, plan.getEstimatedMatches());
+    }
+
+    @Test
+    void chooseInOrder_manyMatches_walksSortedRange() {
+        QueryPlanner planner = new QueryPlanner(10000, 10000);
+        planner.addRange(AccessPath.PRICE_RANGE, 10000);
+        planner.addBitmap(5000);
+
+        QueryPlan plan = planner.chooseInOrder(10000, 10);
+
+        Assertions.assertEquals(AccessPath.SORTED_WALK, plan.getAccessPath());
+        Assertions.assertEquals(20, plan.getSlotsRead());
+    }
+
+    @Test
+    void chooseInOrder_fewMatches_readsThemAllInstead() {
+        QueryPlanner planner = new QueryPlanner(10000, 10000);
+        planner.addRange(AccessPath.PRICE_RANGE, 10000);
+        planner.addBitmap(5);
+
+        QueryPlan plan = planner.chooseInOrder(10000, 10);
+
+        Assertions.assertEquals(AccessPath.BITMAP_INTERSECTION, plan.getAccessPath());
+    }
+}
@@ -0,0 +1,37 @@
+package com.kenzie.appserver.service.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RangeIndexTest {
+
+    @Test
+    void load_mixedValues_ordersThemLikeDoubleCompareKeepingTiesInSlotOrder() {
+        double[] column = {2.5, -1.0, 0.0, 350000, 2.5, -0.0, -250.75, 0.5};
+        RangeIndex index = new RangeIndex();
+
+        index.load(new int[] {0, 1, 2, 3, 4, 5, 6, 7, 99}, 8, slot -> column[slot]);
+
+        int[] expectedSlots = {6, 1, 5, 2, 7, 0, 4, 3};
+        Assertions.assertEquals(8, index.size());
+        for (int position = 0; position < expectedSlots.length; position++) {
+            Assertions.assertEquals(expectedSlots[position], index.slotAt(position));
+            Assertions.assertEquals(column[expectedSlots[position]], index.valueAt(position));
+        }
+        Assertions.assertEquals(5, index.lowerBound(2.5));
+        Assertions.assertEquals(7, index.upperBound(2.5));
+    }
+
+    @Test
+    void sortableBits_unsignedOrder_matchesDoubleCompare() {
+        double[] ascending = {Double.NEGATIVE_INFINITY, -1e9, -1.5, -0.0, 0.0, Double.MIN_VALUE, 1.5, 1e9,
+                Double.POSITIVE_INFINITY};
+
+        for (int i = 0; i + 1 < ascending.length; i++) {
+            Assertions.assertTrue(Long.compareUnsigned(RangeIndex.sortableBits(ascending[i]),
+                    RangeIndex.sortableBits(ascending[i + 1])) < 0, ascending[i] + " before " + ascending[i + 1]);
+            Assertions.assertEquals(ascending[i],
+                    RangeIndex.fromSortableBits(RangeIndex.sortableBits(ascending[i])));
+        }
+    }
+}
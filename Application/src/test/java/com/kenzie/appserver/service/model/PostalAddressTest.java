@@ -0,0 +1,33 @@
+package com.kenzie.appserver.service.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PostalAddressTest {
+
+    @Test
+    void parse_generatedAddress_splitsStreetCityStateAndZipCode() {
+        PostalAddress address = PostalAddress.parse("4821 Maple Boulevard, Winston-Salem, North Carolina, 02134");
+
+        Assertions.assertEquals(new PostalAddress("4821 Maple Boulevard", "Winston-Salem", "North Carolina", "02134"),
+                address);
+    }
+
+    @Test
+    void parse_zipPlusFourAndCommaInStreet_keepsFiveDigitZipCode() {
+        PostalAddress address = PostalAddress.parse("Unit 4, 12 Elm Street, Hoboken, NJ, 07030-1234");
+
+        Assertions.assertEquals("Unit 4, 12 Elm Street", address.getStreet());
+        Assertions.assertEquals("Hoboken", address.getCity());
+        Assertions.assertEquals("NJ", address.getState());
+        Assertions.assertEquals("07030", address.getZipCode());
+    }
+
+    @Test
+    void parse_withoutCityStateAndZipCode_returnsNull() {
+        Assertions.assertNull(PostalAddress.parse("123 Main St, City, State 11111"));
+        Assertions.assertNull(PostalAddress.parse("123 Main St, City, State, 1111"));
+        Assertions.assertNull(PostalAddress.parse(", City, State, 11111"));
+        Assertions.assertNull(PostalAddress.parse(null));
+    }
+}
@@ -0,0 +1,98 @@
+package com.kenzie.appserver.service.stats;
+
+import com.kenzie.appserver.service.model.Listing;
+import com.kenzie.appserver.service.model.ListingStatus;
+import com.kenzie.appserver.service.model.RegionStatistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MarketStatisticsTest {
+    private MarketStatistics marketStatistics;
+
+    @BeforeEach
+    void setup() {
+        marketStatistics = new MarketStatistics();
+        marketStatistics.beginRebuild();
+        marketStatistics.load(Arrays.asList(
+                listing("LIST0001", "Ohio", "43004", 100000, 1000, ListingStatus.FOR_SALE),
+                listing("LIST0002", "Ohio", "43004", 200000, 1000, ListingStatus.FOR_SALE),
+                listing("LIST0003", "Ohio", "43210", 600000, 2000, ListingStatus.FOR_SALE),
+                listing("LIST0004", "Ohio", "43210", 900000, 3000, ListingStatus.SOLD),
+                listing("LIST0005", "Texas", "73301", 300000, 0, ListingStatus.FOR_SALE)));
+        marketStatistics.endRebuild(true);
+    }
+
+    @Test
+    void forState_loadedListings_summarisesListingsForSale() {
+        RegionStatistics ohio = marketStatistics.forState("Ohio");
+
+        Assertions.assertEquals(3, ohio.getListings());
+        Assertions.assertEquals(300000, ohio.getAveragePrice());
+        Assertions.assertEquals(200000, ohio.getMedianPrice(), 200000 * QuantileSketch.RELATIVE_ACCURACY);
+        Assertions.assertEquals(225, ohio.getAveragePricePerSquareFootage());
+        Assertions.assertEquals(200, ohio.getMedianPricePerSquareFootage(), 200 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    void forState_noFloorArea_hasNoPricePerSquareFootage() {
+        RegionStatistics texas = marketStatistics.forState("Texas");
+
+        Assertions.assertEquals(1, texas.getListings());
+        Assertions.assertNull(texas.getAveragePricePerSquareFootage());
+        Assertions.assertNull(texas.getMedianPricePerSquareFootage());
+    }
+
+    @Test
+    void put_writes_moveListingsBetweenRegions() {
+        marketStatistics.put(listing("LIST0003", "Texas", "73301", 500000, 2000, ListingStatus.FOR_SALE));
+        marketStatistics.put(listing("LIST0004", "Ohio", "43210", 900000, 3000, ListingStatus.FOR_SALE));
+        marketStatistics.put(listing("LIST0005", "Texas", "73301", 300000, 0, ListingStatus.WITHDRAWN));
+        marketStatistics.remove("LIST0001");
+
+        Assertions.assertEquals(2, marketStatistics.forState("Ohio").getListings());
+        Assertions.assertEquals(550000, marketStatistics.forState("Ohio").getAveragePrice());
+        Assertions.assertEquals(200, marketStatistics.forZipCode("43004").getAveragePricePerSquareFootage());
+        Assertions.assertEquals(1, marketStatistics.forZipCode("43210").getListings());
+        Assertions.assertEquals(1, marketStatistics.forState("Texas").getListings());
+        Assertions.assertEquals(500000, marketStatistics.forState("Texas").getAveragePrice());
+    }
+
+    @Test
+    void forEveryState_lastListingRemoved_dropsTheState() {
+        marketStatistics.remove("LIST0005");
+
+        List<String> states = marketStatistics.forEveryState().stream()
+                .map(RegionStatistics::getRegion).collect(Collectors.toList());
+        Assertions.assertEquals(Collections.singletonList("Ohio"), states);
+        Assertions.assertNull(marketStatistics.forZipCode("73301"));
+    }
+
+    @Test
+    void load_listingWrittenDuringRebuild_keepsTheWrite() {
+        marketStatistics.beginRebuild();
+        marketStatistics.put(listing("LIST0001", "Ohio", "43004", 400000, 1000, ListingStatus.FOR_SALE));
+        marketStatistics.remove("LIST0002");
+        marketStatistics.load(Arrays.asList(
+                listing("LIST0001", "Ohio", "43004", 100000, 1000, ListingStatus.FOR_SALE),
+                listing("LIST0002", "Ohio", "43004", 200000, 1000, ListingStatus.FOR_SALE)));
+        Assertions.assertFalse(marketStatistics.isLoaded());
+        marketStatistics.endRebuild(true);
+
+        RegionStatistics zipCode = marketStatistics.forZipCode("43004");
+        Assertions.assertTrue(marketStatistics.isLoaded());
+        Assertions.assertEquals(1, zipCode.getListings());
+        Assertions.assertEquals(400000, zipCode.getAveragePrice());
+    }
+
+    private static Listing listing(String listingNumber, String state, String zipCode, int price, int squareFootage,
+                                   ListingStatus status) {
+        return new Listing(listingNumber, "1 Main Street, City, " + state + ", " + zipCode, squareFootage, price,
+                3, 2.0, 0.5, status.label);
+    }
+}
@@ -0,0 +1,56 @@
+package com.kenzie.appserver.service.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class QuantileSketchTest {
+
+    @Test
+    void quantile_randomPrices_withinRelativeAccuracyOfExactQuantile() {
+        Random random = new Random(11);
+        QuantileSketch sketch = new QuantileSketch();
+        List<Integer> prices = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            int price = 50000 + random.nextInt(2000000);
+            prices.add(price);
+            sketch.add(price);
+        }
+        Collections.sort(prices);
+
+        for (double quantile : new double[] {0, 0.25, 0.5, 0.75, 0.9, 1}) {
+            int exact = prices.get((int) Math.floor(quantile * (prices.size() - 1)));
+            Assertions.assertEquals(exact, sketch.quantile(quantile), exact * QuantileSketch.RELATIVE_ACCURACY,
+                    "quantile " + quantile);
+        }
+    }
+
+    @Test
+    void remove_previouslyAddedValues_leavesSketchOfTheRest() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int price = 100000; price <= 900000; price += 100000) {
+            sketch.add(price);
+        }
+
+        sketch.remove(100000);
+        sketch.remove(200000);
+        sketch.remove(123456);
+
+        Assertions.assertEquals(7, sketch.count());
+        Assertions.assertEquals(600000, sketch.quantile(0.5), 600000 * QuantileSketch.RELATIVE_ACCURACY);
+        Assertions.assertEquals(300000, sketch.quantile(0), 300000 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    void quantile_emptySketch_isNaN() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(250000);
+        sketch.remove(250000);
+
+        Assertions.assertTrue(Double.isNaN(sketch.quantile(0.5)));
+    }
+}
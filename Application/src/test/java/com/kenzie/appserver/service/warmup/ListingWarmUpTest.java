@@ -0,0 +1,141 @@
+package com.kenzie.appserver.service.warmup;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+import com.kenzie.appserver.repositories.ListingQueryRepository;
+import com.kenzie.appserver.service.ListingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import static org.mockito.Mockito.*;
+
+public class ListingWarmUpTest {
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    private ListingService listingService;
+    private ListingQueryRepository listingQueryRepository;
+    private ResourceLoader resourceLoader;
+
+    @BeforeEach
+    void setup() {
+        listingService = mock(ListingService.class);
+        listingQueryRepository = mock(ListingQueryRepository.class);
+        resourceLoader = mock(ResourceLoader.class);
+        when(resourceLoader.getResource("classpath:hot-listings.txt")).thenReturn(new ByteArrayResource(
+                "# Most requested last week\nHOT00001\n\nHOT00002\n".getBytes(StandardCharsets.UTF_8)));
+        when(listingQueryRepository.tableItemCount()).thenReturn(8L);
+        when(listingQueryRepository.provisionedReadCapacityUnits()).thenReturn(2000L);
+    }
+
+    @Test
+    void run_hotListingsThenScan_loadsBothAndReportsProgress() {
+        ListingWarmUp warmUp = warmUp(true);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        warmUp.bindTo(registry);
+        doAnswer(invocation -> {
+            ((IntConsumer) invocation.getArguments()[1]).accept(4);
+            Assertions.assertEquals(0.6, registry.get("listing.warmup.progress").gauge().value());
+            ((IntConsumer) invocation.getArguments()[1]).accept(4);
+            return null;
+        }).when(listingService).rebuildIndex((RateLimiter) any(), any(IntConsumer.class));
+
+        warmUp.run();
+
+        verify(listingService).findByListingNumber("HOT00001");
+        verify(listingService).findByListingNumber("HOT00002");
+        Assertions.assertEquals(ListingWarmUp.State.COMPLETED, warmUp.getState());
+        Assertions.assertEquals(2, registry.get("listing.warmup.listings").tag("phase", "hot")
+                .functionCounter().count());
+        Assertions.assertEquals(8, registry.get("listing.warmup.listings").tag("phase", "scan")
+                .functionCounter().count());
+        Assertions.assertEquals(1, registry.get("listing.warmup.progress").gauge().value());
+    }
+
+    @Test
+    void health_whileRunning_isOutOfServiceUntilTheTimeBudgetRunsOut() {
+        ListingWarmUp warmUp = warmUp(true);
+        Assertions.assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus(), "Not started yet");
+        doAnswer(invocation -> {
+            Assertions.assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus());
+            nanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+            Assertions.assertEquals(Status.UP, warmUp.health().getStatus(), "The time budget ran out");
+            return null;
+        }).when(listingService).rebuildIndex((RateLimiter) any(), any(IntConsumer.class));
+
+        warmUp.run();
+
+        Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+    }
+
+    @Test
+    void run_scanFails_letsTrafficIn() {
+        ListingWarmUp warmUp = warmUp(true);
+        doThrow(new IllegalStateException("Throughput exceeded"))
+                .when(listingService).rebuildIndex((RateLimiter) any(), any(IntConsumer.class));
+
+        warmUp.run();
+
+        Assertions.assertEquals(ListingWarmUp.State.FAILED, warmUp.getState());
+        Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+    }
+
+    @Test
+    void run_provisionedTable_readsAtTheConfiguredFractionOfItsCapacity() {
+        when(listingQueryRepository.provisionedReadCapacityUnits()).thenReturn(10L);
+        ListingWarmUp warmUp = warmUp(true);
+        doAnswer(invocation -> {
+            Assertions.assertEquals(5, ((RateLimiter) invocation.getArguments()[0]).getRate(), 1e-9);
+            return null;
+        }).when(listingService).rebuildIndex((RateLimiter) any(), any(IntConsumer.class));
+
+        warmUp.run();
+
+        Assertions.assertEquals(ListingWarmUp.State.COMPLETED, warmUp.getState());
+    }
+
+    @Test
+    void run_onDemandTable_readsUnthrottled() {
+        when(listingQueryRepository.provisionedReadCapacityUnits()).thenReturn(0L);
+        ListingWarmUp warmUp = warmUp(true);
+
+        warmUp.run();
+
+        verify(listingService).rebuildIndex((RateLimiter) isNull(), any(IntConsumer.class));
+    }
+
+    @Test
+    void run_disabled_onlyRebuildsTheIndex() {
+        ListingWarmUp warmUp = warmUp(false);
+        Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+
+        warmUp.run();
+
+        verify(listingService).rebuildIndex();
+        verify(listingService, never()).findByListingNumber(anyString());
+    }
+
+    /**
+     * Reads at half the table's provisioned capacity, 1000 units a second, with a time budget of 30 seconds.
+     */
+    private ListingWarmUp warmUp(boolean enabled) {
+        return new ListingWarmUp(listingService, listingQueryRepository, resourceLoader, enabled,
+                "classpath:hot-listings.txt", 0.5, 30, ticker);
+    }
+}
@@ -0,0 +1,92 @@
+package com.kenzie.appserver.benchmark;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.kenzie.appserver.IntegrationTest;
+import com.kenzie.appserver.config.ListingGenerator;
+import com.kenzie.appserver.repositories.ListingQueryRepository;
+import com.kenzie.appserver.repositories.model.ListingRecord;
+import com.kenzie.appserver.service.model.Listing;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares a sequential full-table scan with parallel segmented scans of the same table.
+ * Not part of the integration-test workflow; run it on its own with
+ * gradle :IntegrationTests:test --tests '*ParallelScanBenchmark'
+ */
+@IntegrationTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ParallelScanBenchmark {
+    private static final int LISTINGS = 5000;
+    private static final int RUNS = 5;
+
+    @Autowired
+    private ListingQueryRepository listingQueryRepository;
+    @Autowired
+    private DynamoDBMapper mapper;
+    private List<ListingRecord> records;
+
+    @BeforeAll
+    public void setup() {
+        ListingGenerator listingGenerator = new ListingGenerator();
+        records = new ArrayList<>();
+        for (int i = 0; i < LISTINGS; i++) {
+            Listing listing = listingGenerator.generateListing();
+            ListingRecord record = new ListingRecord();
+            record.setListingNumber(listing.getListingNumber());
+            record.setAddress(listing.getAddress());
+            record.setSquareFootage(listing.getSquareFootage());
+            record.setPrice(listing.getPrice());
+            record.setNumBedrooms(listing.getNumBedrooms());
+            record.setNumBathrooms(listing.getNumBathrooms());
+            record.setLotSize(listing.getLotSize());
+            record.setListingStatus(listing.getListingStatus());
+            records.add(record);
+        }
+        mapper.batchSave(records);
+    }
+
+    @AfterAll
+    public void cleanUp() {
+        mapper.batchDelete(records);
+    }
+
+    @Test
+    public void scanAll_bySegmentCount() {
+        long sequentialMillis = 0;
+        for (int totalSegments : new int[]{1, 2, 4}) {
+            // One untimed run so every variant starts with warm connections
+            int count = scan(totalSegments);
+            long[] timings = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                assertEquals(count, scan(totalSegments), "Every run should read the whole table");
+                timings[run] = (System.nanoTime() - start) / 1_000_000;
+            }
+            Arrays.sort(timings);
+            long medianMillis = timings[RUNS / 2];
+            if (totalSegments == 1) {
+                sequentialMillis = medianMillis;
+            }
+
+            System.out.printf("scanAll segments=%d items=%d median=%dms speedup=%.2fx%n", totalSegments, count,
+                    medianMillis, (double) sequentialMillis / Math.max(1, medianMillis));
+        }
+    }
+
+    private int scan(int totalSegments) {
+        AtomicInteger count = new AtomicInteger();
+        listingQueryRepository.scanAll(totalSegments, page -> count.addAndGet(page.size()));
+        return count.get();
+    }
+}
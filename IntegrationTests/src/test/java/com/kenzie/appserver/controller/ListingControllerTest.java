@@ -25,10 +25,14 @@ import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @IntegrationTest
@@ -159,6 +163,103 @@ class ListingControllerTest {
 
     }
 
+    @Test
+    public void getAllOpenListings_acceptNdjson_streamsOneListingPerLine() throws Exception {
+        // GIVEN
+        // Already created newListings in setup()
+
+        // WHEN
+        MvcResult asyncResult = mvc.perform(get("/listing/allOpen")
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult streamedResult = mvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson")).andReturn();
+
+        // THEN
+        String[] lines = streamedResult.getResponse().getContentAsString().split("\n");
+        assertThat(lines).isNotEmpty();
+        for (String line : lines) {
+            ListingResponse listingResponse = mapper.readValue(line, ListingResponse.class);
+            assertThat(listingResponse.getListingStatus()).isEqualToIgnoringCase("For Sale");
+        }
+    }
+
+    @Test
+    public void getParameterizedListings_streamTrue_streamsOneListingPerLine() throws Exception {
+        // GIVEN
+        int price = 500000;
+
+        // WHEN
+        MvcResult asyncResult = mvc.perform(get("/listing/query?price={price}&stream=true", price)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult streamedResult = mvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN
+        String content = streamedResult.getResponse().getContentAsString();
+        for (String line : content.split("\n")) {
+            if (!line.isEmpty()) {
+                assertThat(mapper.readValue(line, ListingResponse.class).getPrice()).isLessThan(price);
+            }
+        }
+    }
+
+    @Test
+    public void getParameterizedListings_sortByPriceWithLimit_returnsCheapestInOrder() throws Exception {
+        // GIVEN
+        // Already created newListings in setup()
+
+        // WHEN
+        MvcResult sortedResult = mvc.perform(get("/listing/query?sort=price&limit=20")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+
+        // THEN
+        String response = sortedResult.getResponse().getContentAsString();
+        List<ListingResponse> sortedListings = mapper.readValue(response, new TypeReference<List<ListingResponse>>() {});
+        assertThat(sortedListings).isNotEmpty().hasSizeLessThanOrEqualTo(20);
+        for (int i = 1; i < sortedListings.size(); i++) {
+            assertThat(sortedListings.get(i).getPrice()).isGreaterThanOrEqualTo(sortedListings.get(i - 1).getPrice());
+        }
+    }
+
+    @Test
+    public void getParameterizedListings_sortWithCursor_badRequest() throws Exception {
+        mvc.perform(get("/listing/query?sort=price&cursor=abc")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getParameterizedListings_minAndMaxRanges_returnsListingsInsideRanges() throws Exception {
+        // GIVEN
+        // Already created newListings in setup()
+
+        // WHEN
+        MvcResult rangeResult = mvc.perform(get("/listing/query?minPrice=300000&maxPrice=450000&minSquareFootage=1500&maxSquareFootage=2500")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        // THEN
+        String response = rangeResult.getResponse().getContentAsString();
+        if (!response.isEmpty()) {
+            List<ListingResponse> rangeListings = mapper.readValue(response, new TypeReference<List<ListingResponse>>() {});
+            for (ListingResponse listingResponse : rangeListings) {
+                assertThat(listingResponse.getPrice()).isBetween(300000, 450000);
+                assertThat(listingResponse.getSquareFootage()).isBetween(1500, 2500);
+            }
+        }
+    }
+
+    @Test
+    public void getParameterizedListings_minAboveMax_badRequest() throws Exception {
+        mvc.perform(get("/listing/query?minPrice=450000&maxPrice=300000")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void getParameterizedListings_byPriceLessThan_givenPrice_successful() throws Exception {
         // GIVEN
@@ -392,5 +493,141 @@ class ListingControllerTest {
                         .value(is(listingStatus)))
                 .andExpect(status().isOk());
     }
-}
 
+    @Test
+    public void getNearbyListings_listingInZipCode_isReturned() throws Exception {
+        Listing listing = new Listing(UUID.randomUUID().toString(), "400 8th Avenue, New York, New York, 10001",
+                900, 1200000, 1, 1.0, 0.1, "For Sale");
+        newListings.add(listingService.createNewListing(listing));
+
+        mvc.perform(get("/listing/nearby")
+                        .param("zipCode", "07030")
+                        .param("miles", "5")
+                        .param("limit", "1000")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].listingNumber", hasItem(listing.getListingNumber())));
+
+        mvc.perform(get("/listing/query")
+                        .param("state", "New York")
+                        .param("zipCode", "10001")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].listingNumber", hasItem(listing.getListingNumber())));
+    }
+
+    @Test
+    public void getNearbyListings_unknownZipCodeOrRadius_returnsBadRequest() throws Exception {
+        mvc.perform(get("/listing/nearby").param("zipCode", "99999").param("miles", "5"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/listing/nearby").param("zipCode", "10001").param("miles", "0"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/listing/nearby").param("zipCode", "not a zip").param("miles", "5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void searchListings_partialStreetName_findsListing() throws Exception {
+        String street = "Quillfeather";
+        Listing listing = new Listing(UUID.randomUUID().toString(), "77 " + street + " Avenue, Springfield, Illinois, 62701",
+                1500, 300000, 3, 2.0, 0.5, "Sold");
+        newListings.add(listingService.createNewListing(listing));
+
+        mvc.perform(get("/listing/search")
+                        .param("q", "quillfeather ave")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].listingNumber").value(is(listing.getListingNumber())));
+
+        mvc.perform(get("/listing/search").param("q", "--"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getListingFacets_listingForSale_isCountedInItsBuckets() throws Exception {
+        Listing listing = new Listing(UUID.randomUUID().toString(), "12 Facet Lane, Springfield, Illinois, 62701",
+                1550, 987654, 7, 4.5, 2.0, "For Sale");
+        newListings.add(listingService.createNewListing(listing));
+        listingService.rebuildIndex();
+
+        mvc.perform(get("/listing/facets")
+                        .param("minPrice", "987654")
+                        .param("maxPrice", "987654")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("total", greaterThanOrEqualTo(1)))
+                .andExpect(jsonPath("facets.price[?(@.min == 900000.0)].count", hasItem(greaterThanOrEqualTo(1))))
+                .andExpect(jsonPath("facets.numBedrooms[?(@.min == 7.0)].count", hasItem(greaterThanOrEqualTo(1))));
+
+        mvc.perform(get("/listing/facets").param("minPrice", "500000").param("maxPrice", "100000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getZipCodeStatistics_listingForSale_isCounted() throws Exception {
+        Listing listing = new Listing(UUID.randomUUID().toString(), "9 Ledger Court, Juneau, Alaska, 99801",
+                2000, 500000, 3, 2.0, 0.5, "For Sale");
+        newListings.add(listingService.createNewListing(listing));
+        listingService.rebuildIndex();
+
+        mvc.perform(get("/listing/stats/zipCodes/{zipCode}", "99801")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("region").value(is("99801")))
+                .andExpect(jsonPath("listings", greaterThanOrEqualTo(1)));
+
+        mvc.perform(get("/listing/stats/states")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].region", hasItem("Alaska")));
+
+        mvc.perform(get("/listing/stats/zipCodes/{zipCode}", "not a zip"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void countParameterizedListings_countMode_returnsOnlyTheCount() throws Exception {
+        Listing listing = new Listing(UUID.randomUUID().toString(), "5 Tally Road, Springfield, Illinois, 62701",
+                1500, 876543, 3, 2.0, 0.5, "For Sale");
+        newListings.add(listingService.createNewListing(listing));
+
+        mvc.perform(get("/listing/query")
+                        .param("minPrice", "876543")
+                        .param("maxPrice", "876543")
+                        .param("count", "true")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("count", greaterThanOrEqualTo(1)))
+                .andExpect(jsonPath("$[0]").doesNotExist());
+
+        mvc.perform(get("/listing/allOpen").param("count", "true").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("count", greaterThanOrEqualTo(1)));
+
+        mvc.perform(get("/listing").param("count", "true").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("count", greaterThanOrEqualTo(1)));
+    }
+
+    @Test
+    public void getParameterizedListings_fields_returnsOnlyThoseFields() throws Exception {
+        Listing listing = new Listing(UUID.randomUUID().toString(), "8 Field Lane, Springfield, Illinois, 62701",
+                1500, 765432, 3, 2.0, 0.5, "For Sale");
+        newListings.add(listingService.createNewListing(listing));
+
+        mvc.perform(get("/listing/query")
+                        .param("minPrice", "765432")
+                        .param("maxPrice", "765432")
+                        .param("fields", "address,price")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].listingNumber").exists())
+                .andExpect(jsonPath("$[0].address").exists())
+                .andExpect(jsonPath("$[0].price").value(is(765432)))
+                .andExpect(jsonPath("$[0].squareFootage").doesNotExist())
+                .andExpect(jsonPath("$[0].listingStatus").doesNotExist());
+
+        mvc.perform(get("/listing/allOpen").param("fields", "address,bogus").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+}